@@ -20,6 +20,9 @@ import java.text.ParseException;
 
 public class Client {
 
+    // Quantas transações o extrato busca por vez (as demais páginas vêm sob demanda)
+    private static final int TAMANHO_PAGINA_EXTRATO = 50;
+
     private Connection connection;
     private final ObjectMapper objectMapper;
     private String token; // Armazena o token de sessão do usuário logado
@@ -320,6 +323,7 @@ public class Client {
             req.put("token", token);
             req.put("data_inicial", diIso);
             req.put("data_final", dfIso);
+            req.put("limite", TAMANHO_PAGINA_EXTRATO);
 
             // obter dados do usuário e extrato para formatar
             new Thread(() -> {
@@ -329,7 +333,7 @@ public class Client {
                     try {
                         JsonNode resp = objectMapper.readTree(responseJson);
                         JsonNode respUsuario = objectMapper.readTree(dadosUsuarioJson);
-                        SwingUtilities.invokeLater(() -> formatAndShowExtrato(resp, respUsuario));
+                        SwingUtilities.invokeLater(() -> formatAndShowExtrato(resp, respUsuario, req));
                     } catch (JsonProcessingException ex) {
                         appendConsole("[ERROR] falha ao parsear JSON: " + ex.getMessage());
                     }
@@ -604,60 +608,129 @@ public class Client {
         }
     }
 
-    private void formatAndShowExtrato(JsonNode resp, JsonNode respUsuario) {
+    private void formatAndShowExtrato(JsonNode resp, JsonNode respUsuario, ObjectNode req) {
         if (!resp.path("status").asBoolean(false)) {
             showHtmlPopup("Extrato - Erro", htmlWrap("<p><strong>Erro:</strong> " + escapeHtml(resp.path("info").asText()) + "</p>"));
             return;
         }
         JsonNode transacoes = resp.path("transacoes");
-        StringBuilder sb = new StringBuilder();
         if (transacoes == null || transacoes.size() == 0) {
-            sb.append("<p>Não foram encontradas transações para esse período.</p>");
-        } else {
-            sb.append("<table style='width:100%; border-collapse:collapse;'>");
-                sb.append("<tr style='background:#3a3a3a;color:#e6e6e6;'><th style='padding:6px;border:1px solid #4a4a4a;color:#e6e6e6;'>Tipo</th><th style='padding:6px;border:1px solid #4a4a4a;color:#e6e6e6;'>Data</th><th style='padding:6px;border:1px solid #4a4a4a;color:#e6e6e6;'>Valor</th><th style='padding:6px;border:1px solid #4a4a4a;color:#e6e6e6;'>Contra</th></tr>");
-            for (JsonNode t : transacoes) {
-                String id = t.path("id").asText();
-                double valor = t.path("valor_enviado").asDouble();
-                JsonNode e = t.path("usuario_enviador");
-                JsonNode r = t.path("usuario_recebedor");
-                String cpfE = e.path("cpf").asText();
-                String cpfR = r.path("cpf").asText();
-                String criado = t.path("criado_em").asText();
-                if (criado.length() >= 10) criado = criado.substring(0,10);
-
-                String tipo = "";
-                if (cpfR.equals(cpfE)) tipo = "DEPOSITO";
-                else if (respUsuario.path("usuario").path("cpf").asText().equals(cpfR)) tipo = "RECEBIMENTO";
-                else tipo = "ENVIO";
-
-                String tipoColor = "#FFFFFF";
-                if (tipo.equals("DEPOSITO")) tipoColor = "#2a7ae2"; // blue
-                else if (tipo.equals("ENVIO")) tipoColor = "#e02a2a"; // red
-                else if (tipo.equals("RECEBIMENTO")) tipoColor = "#2ae07a"; // green
-
-                String contra = "";
-                if (!tipo.equals("DEPOSITO")) {
-                    if (tipo.equals("RECEBIMENTO")) {
-                        contra = "Origem: " + escapeHtml(e.path("nome").asText()) + " (" + escapeHtml(cpfE) + ")";
-                    } else {
-                        contra = "Destino: " + escapeHtml(r.path("nome").asText()) + " (" + escapeHtml(cpfR) + ")";
-                    }
+            showHtmlPopup("Extrato", htmlWrap("<p>Não foram encontradas transações para esse período.</p>"), new Dimension(560, 320));
+            return;
+        }
+
+        String cpfUsuario = respUsuario.path("usuario").path("cpf").asText();
+        StringBuilder linhas = new StringBuilder();
+        appendLinhasExtrato(linhas, transacoes, cpfUsuario);
+        showExtratoPopup(linhas, resp.path("proximo_cursor").asText(null), req, cpfUsuario);
+    }
+
+    private String renderExtratoHtml(StringBuilder linhas) {
+        return htmlWrap("<table style='width:100%; border-collapse:collapse;'>"
+                + "<tr style='background:#3a3a3a;color:#e6e6e6;'><th style='padding:6px;border:1px solid #4a4a4a;color:#e6e6e6;'>Tipo</th><th style='padding:6px;border:1px solid #4a4a4a;color:#e6e6e6;'>Data</th><th style='padding:6px;border:1px solid #4a4a4a;color:#e6e6e6;'>Valor</th><th style='padding:6px;border:1px solid #4a4a4a;color:#e6e6e6;'>Contra</th></tr>"
+                + linhas + "</table>");
+    }
+
+    private void appendLinhasExtrato(StringBuilder linhas, JsonNode transacoes, String cpfUsuario) {
+        for (JsonNode t : transacoes) {
+            String id = t.path("id").asText();
+            double valor = t.path("valor_enviado").asDouble();
+            JsonNode e = t.path("usuario_enviador");
+            JsonNode r = t.path("usuario_recebedor");
+            String cpfE = e.path("cpf").asText();
+            String cpfR = r.path("cpf").asText();
+            String criado = t.path("criado_em").asText();
+            if (criado.length() >= 10) criado = criado.substring(0,10);
+
+            String tipo = "";
+            if (cpfR.equals(cpfE)) tipo = "DEPOSITO";
+            else if (cpfUsuario.equals(cpfR)) tipo = "RECEBIMENTO";
+            else tipo = "ENVIO";
+
+            String tipoColor = "#FFFFFF";
+            if (tipo.equals("DEPOSITO")) tipoColor = "#2a7ae2"; // blue
+            else if (tipo.equals("ENVIO")) tipoColor = "#e02a2a"; // red
+            else if (tipo.equals("RECEBIMENTO")) tipoColor = "#2ae07a"; // green
+
+            String contra = "";
+            if (!tipo.equals("DEPOSITO")) {
+                if (tipo.equals("RECEBIMENTO")) {
+                    contra = "Origem: " + escapeHtml(e.path("nome").asText()) + " (" + escapeHtml(cpfE) + ")";
                 } else {
-                    contra = "-";
+                    contra = "Destino: " + escapeHtml(r.path("nome").asText()) + " (" + escapeHtml(cpfR) + ")";
                 }
-
-                sb.append("<tr>");
-                sb.append("<td style='padding:6px;border:1px solid #ddd;'><strong style='color:").append(tipoColor).append(";'>").append(tipo).append("</strong><br/><small>ID: ").append(escapeHtml(id)).append("</small></td>");
-                sb.append("<td style='padding:6px;border:1px solid #ddd;'>").append(escapeHtml(criado)).append("</td>");
-                sb.append("<td style='padding:6px;border:1px solid #ddd;'>R$ ").append(String.format("%.2f", valor)).append("</td>");
-                sb.append("<td style='padding:6px;border:1px solid #ddd;'>").append(contra).append("</td>");
-                sb.append("</tr>");
+            } else {
+                contra = "-";
             }
-            sb.append("</table>");
+
+            linhas.append("<tr>");
+            linhas.append("<td style='padding:6px;border:1px solid #ddd;'><strong style='color:").append(tipoColor).append(";'>").append(tipo).append("</strong><br/><small>ID: ").append(escapeHtml(id)).append("</small></td>");
+            linhas.append("<td style='padding:6px;border:1px solid #ddd;'>").append(escapeHtml(criado)).append("</td>");
+            linhas.append("<td style='padding:6px;border:1px solid #ddd;'>R$ ").append(String.format("%.2f", valor)).append("</td>");
+            linhas.append("<td style='padding:6px;border:1px solid #ddd;'>").append(contra).append("</td>");
+            linhas.append("</tr>");
         }
+    }
 
-        showHtmlPopup("Extrato", htmlWrap(sb.toString()), new Dimension(560, 320));
+    /**
+     * Exibe o extrato paginado: a primeira página já vem pronta e as seguintes
+     * só são buscadas no servidor quando o usuário pede ("Carregar mais").
+     */
+    private void showExtratoPopup(StringBuilder linhas, String primeiroCursor, ObjectNode req, String cpfUsuario) {
+        JDialog dialog = new JDialog(frame, "Extrato", true);
+        dialog.getContentPane().setBackground(new Color(43,43,43));
+        JEditorPane pane = new JEditorPane("text/html", renderExtratoHtml(linhas));
+        pane.setEditable(false);
+        pane.putClientProperty(JEditorPane.HONOR_DISPLAY_PROPERTIES, Boolean.TRUE);
+        pane.setBackground(new Color(43,43,43));
+        pane.setForeground(new Color(230,230,230));
+        pane.setCaretPosition(0);
+        JScrollPane scroll = new JScrollPane(pane);
+        scroll.getViewport().setBackground(new Color(43,43,43));
+        scroll.setPreferredSize(new Dimension(560, 320));
+        dialog.getContentPane().add(scroll, BorderLayout.CENTER);
+
+        JButton carregarMais = new JButton("Carregar mais");
+        String[] cursor = {primeiroCursor};
+        carregarMais.setEnabled(cursor[0] != null);
+        carregarMais.addActionListener(ev -> {
+            carregarMais.setEnabled(false);
+            ObjectNode proximaPagina = req.deepCopy();
+            proximaPagina.put("cursor", cursor[0]);
+            new Thread(() -> {
+                String responseJson = runRawRequestBlocking(proximaPagina.toString());
+                if (responseJson == null) {
+                    SwingUtilities.invokeLater(() -> carregarMais.setEnabled(true));
+                    return;
+                }
+                try {
+                    JsonNode resp = objectMapper.readTree(responseJson);
+                    SwingUtilities.invokeLater(() -> {
+                        if (!resp.path("status").asBoolean(false)) {
+                            carregarMais.setEnabled(true);
+                            appendConsole("[ERROR] falha ao carregar extrato: " + resp.path("info").asText());
+                            return;
+                        }
+                        appendLinhasExtrato(linhas, resp.path("transacoes"), cpfUsuario);
+                        cursor[0] = resp.path("proximo_cursor").asText(null);
+                        pane.setText(renderExtratoHtml(linhas));
+                        carregarMais.setEnabled(cursor[0] != null);
+                    });
+                } catch (JsonProcessingException ex) {
+                    appendConsole("[ERROR] falha ao parsear JSON: " + ex.getMessage());
+                    SwingUtilities.invokeLater(() -> carregarMais.setEnabled(true));
+                }
+            }).start();
+        });
+        JPanel botoes = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        botoes.setBackground(new Color(43,43,43));
+        botoes.add(carregarMais);
+        dialog.getContentPane().add(botoes, BorderLayout.SOUTH);
+
+        dialog.pack();
+        dialog.setResizable(false);
+        dialog.setLocationRelativeTo(frame);
+        dialog.setVisible(true);
     }
 
     /**
@@ -0,0 +1,48 @@
+package common.models;
+
+/**
+ * Requisição do cliente já validada, com os campos tipados de cada operação.
+ * Produzida por {@link common.validator.Validator#validateClient(String)}.
+ * O campo 'operacao' guarda o texto exatamente como o cliente enviou, para ser ecoado na resposta.
+ */
+public sealed interface Requisicao {
+
+    String operacao();
+
+    record Conectar(String operacao) implements Requisicao {}
+
+    record UsuarioLogin(String operacao, String cpf, String senha) implements Requisicao {}
+
+    record UsuarioLogout(String operacao, String token) implements Requisicao {}
+
+    record UsuarioCriar(String operacao, String nome, String cpf, String senha) implements Requisicao {}
+
+    record UsuarioLer(String operacao, String token) implements Requisicao {}
+
+    /**
+     * @param nome Novo nome, ou null se não for alterado.
+     * @param senha Nova senha, ou null se não for alterada.
+     */
+    record UsuarioAtualizar(String operacao, String token, String nome, String senha) implements Requisicao {}
+
+    record UsuarioDeletar(String operacao, String token) implements Requisicao {}
+
+    /**
+     * @param valorCentavos Valor do PIX em centavos.
+     */
+    record TransacaoCriar(String operacao, String token, long valorCentavos, String cpfDestino) implements Requisicao {}
+
+    /**
+     * @param limite Tamanho da página pedida, ou 0 para o extrato completo.
+     * @param cursor Cursor da página anterior, ou null para a primeira página.
+     */
+    record TransacaoLer(String operacao, String token, String dataInicial, String dataFinal,
+                        int limite, String cursor) implements Requisicao {}
+
+    /**
+     * @param valorCentavos Valor depositado em centavos.
+     */
+    record Depositar(String operacao, String token, long valorCentavos) implements Requisicao {}
+
+    record ErroServidor(String operacao, String operacaoEnviada, String info) implements Requisicao {}
+}
@@ -11,8 +11,11 @@ public class Transacao {
     private int id; // O ID será gerado pelo banco de dados (autoincremento)
     private String cpfRemetente;
     private String cpfDestinatario;
-    private double valor;
+    private long valorCentavos;
     private LocalDateTime dataTransacao;
+    // Nomes das partes, preenchidos apenas nas consultas de extrato (null se o usuário não existe mais)
+    private String nomeRemetente;
+    private String nomeDestinatario;
 
     public Transacao() {
     }
@@ -22,12 +25,12 @@ public class Transacao {
      * A data da transação é definida para o momento da criação do objeto.
      * @param cpfRemetente O CPF do usuário que está enviando o dinheiro.
      * @param cpfDestinatario O CPF do usuário que está recebendo o dinheiro.
-     * @param valor O valor que está sendo transferido.
+     * @param valorCentavos O valor que está sendo transferido, em centavos.
      */
-    public Transacao(String cpfRemetente, String cpfDestinatario, double valor) {
+    public Transacao(String cpfRemetente, String cpfDestinatario, long valorCentavos) {
         this.cpfRemetente = cpfRemetente;
         this.cpfDestinatario = cpfDestinatario;
-        this.valor = valor;
+        this.valorCentavos = valorCentavos;
         this.dataTransacao = LocalDateTime.now(); // Define a data/hora atual
     }
 
@@ -57,12 +60,15 @@ public class Transacao {
         this.cpfDestinatario = cpfDestinatario;
     }
 
-    public double getValor() {
-        return valor;
+    /**
+     * @return o valor em centavos.
+     */
+    public long getValorCentavos() {
+        return valorCentavos;
     }
 
-    public void setValor(double valor) {
-        this.valor = valor;
+    public void setValorCentavos(long valorCentavos) {
+        this.valorCentavos = valorCentavos;
     }
 
     public LocalDateTime getDataTransacao() {
@@ -72,4 +78,20 @@ public class Transacao {
     public void setDataTransacao(LocalDateTime dataTransacao) {
         this.dataTransacao = dataTransacao;
     }
-}
\ No newline at end of file
+
+    public String getNomeRemetente() {
+        return nomeRemetente;
+    }
+
+    public void setNomeRemetente(String nomeRemetente) {
+        this.nomeRemetente = nomeRemetente;
+    }
+
+    public String getNomeDestinatario() {
+        return nomeDestinatario;
+    }
+
+    public void setNomeDestinatario(String nomeDestinatario) {
+        this.nomeDestinatario = nomeDestinatario;
+    }
+}
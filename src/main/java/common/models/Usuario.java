@@ -1,5 +1,7 @@
 package common.models;
 
+import common.util.Dinheiro;
+
 /**
  * Representa a entidade Usuário no sistema.
  * Contém informações pessoais, credenciais e saldo.
@@ -9,7 +11,7 @@ public class Usuario {
     private String nome;
     private String cpf;
     private String senha;
-    private double saldo;
+    private long saldoCentavos;
 
     public Usuario() {
     }
@@ -20,11 +22,11 @@ public class Usuario {
      * @param cpf O CPF do usuário (formato "000.000.000-00").
      * @param senha A senha de acesso do usuário.
      */
-    public Usuario(String nome, String cpf, String senha, double saldo) {
+    public Usuario(String nome, String cpf, String senha, long saldoCentavos) {
         this.nome = nome;
         this.cpf = cpf;
         this.senha = senha;
-        this.saldo = saldo;
+        this.saldoCentavos = saldoCentavos;
     }
 
     // Getters e Setters
@@ -53,39 +55,42 @@ public class Usuario {
         this.senha = senha;
     }
 
-    public double getSaldo() {
-        return saldo;
+    /**
+     * @return o saldo em centavos.
+     */
+    public long getSaldoCentavos() {
+        return saldoCentavos;
     }
 
-    public void setSaldo(double saldo) {
-        this.saldo = saldo;
+    public void setSaldoCentavos(long saldoCentavos) {
+        this.saldoCentavos = saldoCentavos;
     }
 
     // Métodos de negócio (opcional, mas recomendado)
 
     /**
      * Adiciona um valor ao saldo do usuário.
-     * @param valor O valor a ser depositado (deve ser positivo).
+     * @param centavos O valor a ser depositado, em centavos (deve ser positivo).
      */
-    public void depositar(double valor) {
-        if (valor > 0) {
-            this.saldo += valor;
+    public void depositar(long centavos) {
+        if (centavos > 0) {
+            this.saldoCentavos += centavos;
         }
     }
 
     /**
      * Remove um valor do saldo do usuário.
-     * @param valor O valor a ser sacado (deve ser positivo).
+     * @param centavos O valor a ser sacado, em centavos (deve ser positivo).
      * @throws IllegalArgumentException se o saldo for insuficiente.
      */
-    public void sacar(double valor) {
-        if (valor <= 0) {
+    public void sacar(long centavos) {
+        if (centavos <= 0) {
             throw new IllegalArgumentException("O valor do saque deve ser positivo.");
         }
-        if (this.saldo < valor) {
+        if (this.saldoCentavos < centavos) {
             throw new IllegalArgumentException("Saldo insuficiente para realizar o saque.");
         }
-        this.saldo -= valor;
+        this.saldoCentavos -= centavos;
     }
 
     @Override
@@ -94,7 +99,7 @@ public class Usuario {
         return "Usuario{" +
                 "nome='" + nome + '\'' +
                 ", cpf='" + cpf + '\'' +
-                ", saldo=" + saldo +
+                ", saldo=" + Dinheiro.formatar(saldoCentavos) +
                 '}';
     }
 }
\ No newline at end of file
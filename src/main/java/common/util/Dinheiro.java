@@ -0,0 +1,113 @@
+package common.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Valores monetários em centavos (long): é assim que saldos e transações são guardados e somados,
+ * sem o arredondamento acumulado do double. No protocolo os valores continuam em reais com casas
+ * decimais (ex: 70.25); a conversão acontece só na leitura e na escrita do JSON.
+ */
+public final class Dinheiro {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private Dinheiro() {}
+
+    /**
+     * Devolvido por {@link #centavos} quando o número não é um valor exato em centavos.
+     */
+    public static final long INVALIDO = Long.MIN_VALUE;
+
+    // Acima disso a parte inteira pode estourar o long ao multiplicar por 100; vai pelo BigDecimal
+    private static final int MAX_DIGITOS_RAPIDO = 16;
+
+    /**
+     * Converte o texto de um número JSON em reais (ex: "70.25", "100", "1e2") para centavos.
+     * Casas além da segunda só são aceitas se forem zeros.
+     * @return os centavos, ou {@link #INVALIDO} se o valor tiver frações de centavo, não couber em um long
+     *         ou não for um número.
+     */
+    public static long centavos(char[] texto, int inicio, int tamanho) {
+        int i = inicio;
+        int fim = inicio + tamanho;
+        boolean negativo = i < fim && texto[i] == '-';
+        if (negativo) i++;
+
+        long inteiro = 0;
+        int digitos = 0;
+        while (i < fim && texto[i] >= '0' && texto[i] <= '9') {
+            inteiro = inteiro * 10 + (texto[i++] - '0');
+            digitos++;
+        }
+        long fracao = 0;
+        int casas = 0;
+        if (i < fim && texto[i] == '.') {
+            for (i++; i < fim && texto[i] >= '0' && texto[i] <= '9'; i++) {
+                int d = texto[i] - '0';
+                if (casas < 2) {
+                    fracao = fracao * 10 + d;
+                } else if (d != 0) {
+                    return INVALIDO;
+                }
+                casas++;
+            }
+        }
+        if (i != fim || digitos == 0 || digitos > MAX_DIGITOS_RAPIDO) {
+            // Expoente, número muito grande ou texto inesperado: caminho lento e exato
+            return centavosPorBigDecimal(new String(texto, inicio, tamanho));
+        }
+
+        long centavos = inteiro * 100 + (casas == 0 ? 0 : casas == 1 ? fracao * 10 : fracao);
+        return negativo ? -centavos : centavos;
+    }
+
+    /**
+     * @see #centavos(char[], int, int)
+     */
+    public static long centavos(String texto) {
+        return centavos(texto.toCharArray(), 0, texto.length());
+    }
+
+    private static long centavosPorBigDecimal(String texto) {
+        try {
+            return new BigDecimal(texto).movePointRight(2).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return INVALIDO;
+        }
+    }
+
+    /**
+     * Arredonda um valor em reais para centavos (ex: dados antigos gravados como REAL).
+     */
+    public static long deReais(double reais) {
+        return Math.round(reais * 100);
+    }
+
+    /**
+     * @return o valor em reais como double, só para exibição (ex: formatação com %.2f no cliente).
+     */
+    public static double paraReais(long centavos) {
+        return centavos / 100.0;
+    }
+
+    /**
+     * Formata os centavos como o número decimal do protocolo, sem passar por double:
+     * 7025 -> "70.25", 7020 -> "70.2", 10000 -> "100.0", -5 -> "-0.05".
+     */
+    public static String formatar(long centavos) {
+        StringBuilder sb = new StringBuilder(24);
+        long absoluto = centavos;
+        if (centavos < 0) {
+            sb.append('-');
+            absoluto = -centavos; // Long.MIN_VALUE não é um saldo possível
+        }
+        long reais = absoluto / 100;
+        int resto = (int) (absoluto % 100);
+        sb.append(reais).append('.').append(resto / 10);
+        if (resto % 10 != 0) {
+            sb.append(resto % 10);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package common.util;
+
+import java.util.Arrays;
+
+/**
+ * Cronômetro das etapas de uma requisição (validação, sessão, repositório, serialização da resposta),
+ * acumulado por thread: a requisição é atendida inteira pela thread que a leu, então não há nada compartilhado
+ * e o registro não usa lock nem atomics.
+ * <p>
+ * Cada trecho medido fica entre {@link #iniciar} e {@link #concluir}. Trechos podem se aninhar: enquanto
+ * o interno roda, o externo fica pausado, então cada nanossegundo conta para uma única etapa (ex: as leituras do
+ * repositório no meio da escrita do extrato não contam como serialização). Fora de uma requisição medida
+ * ({@link #comecar}) as chamadas só consultam a ThreadLocal e não leem o relógio.
+ */
+public final class Etapas {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private Etapas() {}
+
+    public enum Etapa { VALIDACAO, SESSAO, REPOSITORIO, SERIALIZACAO }
+
+    private static final Etapa[] ETAPAS = Etapa.values();
+    // Retornos de iniciar(): thread fora de uma medição, ou nenhuma etapa em andamento antes do trecho
+    private static final int FORA = -2;
+    private static final int NENHUMA = -1;
+
+    private static final class Acumulador {
+        final long[] nanos = new long[ETAPAS.length];
+        final int[] entradas = new int[ETAPAS.length];
+        boolean medindo;
+        int atual = NENHUMA;
+        long desde;
+
+        /**
+         * Fecha o intervalo da etapa atual e passa a contar o tempo para 'proxima'.
+         */
+        void trocar(int proxima, long agora) {
+            if (atual != NENHUMA) nanos[atual] += agora - desde;
+            atual = proxima;
+            desde = agora;
+        }
+    }
+
+    private static final ThreadLocal<Acumulador> acumuladores = ThreadLocal.withInitial(Acumulador::new);
+
+    /**
+     * Começa a medir uma requisição nesta thread, zerando o que houver da anterior.
+     */
+    public static void comecar() {
+        Acumulador a = acumuladores.get();
+        Arrays.fill(a.nanos, 0);
+        Arrays.fill(a.entradas, 0);
+        a.atual = NENHUMA;
+        a.medindo = true;
+    }
+
+    /**
+     * Encerra a medição da requisição; os totais continuam disponíveis em {@link #getNanos} até o próximo começo.
+     */
+    public static void terminar() {
+        Acumulador a = acumuladores.get();
+        if (!a.medindo) return;
+        a.trocar(NENHUMA, System.nanoTime());
+        a.medindo = false;
+    }
+
+    /**
+     * Marca o início de um trecho da etapa. O valor devolvido deve ser passado ao {@link #concluir} correspondente.
+     */
+    public static int iniciar(Etapa etapa) {
+        Acumulador a = acumuladores.get();
+        if (!a.medindo) return FORA;
+        int anterior = a.atual;
+        a.trocar(etapa.ordinal(), System.nanoTime());
+        a.entradas[etapa.ordinal()]++;
+        return anterior;
+    }
+
+    /**
+     * Marca o fim do trecho aberto pelo {@link #iniciar} que devolveu 'marca', retomando a etapa que estava
+     * em andamento antes dele.
+     */
+    public static void concluir(int marca) {
+        if (marca == FORA) return;
+        Acumulador a = acumuladores.get();
+        if (a.medindo) a.trocar(marca, System.nanoTime());
+    }
+
+    /**
+     * @return o tempo (ns) gasto na etapa pela última requisição medida nesta thread.
+     */
+    public static long getNanos(Etapa etapa) {
+        return acumuladores.get().nanos[etapa.ordinal()];
+    }
+
+    /**
+     * @return false se a última requisição medida nesta thread não passou pela etapa.
+     */
+    public static boolean passouPor(Etapa etapa) {
+        return acumuladores.get().entradas[etapa.ordinal()] > 0;
+    }
+}
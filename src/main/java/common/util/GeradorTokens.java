@@ -0,0 +1,77 @@
+package common.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Gera os tokens de sessão a partir de várias fontes criptograficamente seguras independentes, em vez
+ * do SecureRandom único compartilhado pelo UUID.randomUUID(), que vira um gargalo em picos de login.
+ * Cada fonte é um DRBG com semente própria (vinda da entropia do sistema) e um buffer de bytes
+ * preenchido em bloco; a thread usa a fonte escolhida pelo seu id. Com virtual threads (uma por conexão)
+ * uma fonte por thread significaria um DRBG por conexão, daí o número fixo de fontes.
+ */
+public final class GeradorTokens {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private GeradorTokens() {}
+
+    private static final int TOKENS_POR_BLOCO = 32;
+
+    private static final Fonte[] fontes;
+    private static final int mascara;
+
+    static {
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        fontes = new Fonte[n];
+        for (int i = 0; i < n; i++) {
+            fontes[i] = new Fonte();
+        }
+        mascara = n - 1;
+    }
+
+    /**
+     * @return um token novo (128 bits aleatórios).
+     */
+    public static TokenSessao gerar() {
+        long id = Thread.currentThread().threadId();
+        return fontes[(int) (id ^ (id >>> 32)) & mascara].proximo();
+    }
+
+    private static final class Fonte {
+        private final SecureRandom random = criarRandom();
+        private final byte[] bloco = new byte[TOKENS_POR_BLOCO * 16];
+        private int posicao = bloco.length;
+
+        synchronized TokenSessao proximo() {
+            if (posicao == bloco.length) {
+                random.nextBytes(bloco);
+                posicao = 0;
+            }
+            long alto = lerLong(posicao);
+            long baixo = lerLong(posicao + 8);
+            // Os bytes entregues não ficam no buffer
+            Arrays.fill(bloco, posicao, posicao + 16, (byte) 0);
+            posicao += 16;
+            return new TokenSessao(alto, baixo);
+        }
+
+        private long lerLong(int inicio) {
+            long v = 0;
+            for (int i = inicio; i < inicio + 8; i++) {
+                v = (v << 8) | (bloco[i] & 0xFF);
+            }
+            return v;
+        }
+
+        private static SecureRandom criarRandom() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom();
+            }
+        }
+    }
+}
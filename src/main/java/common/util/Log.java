@@ -0,0 +1,244 @@
+package common.util;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log assíncrono do servidor. Quem registra só coloca o evento numa fila sem lock; uma única thread
+ * ("pix-log") formata e escreve no System.out/System.err, então as threads de atendimento não disputam
+ * o lock do PrintStream.
+ * <p>
+ * Configuração (propriedades de sistema):
+ * <ul>
+ *     <li>pix.log.nivel: DEBUG, INFO (padrão), AVISO ou ERRO;</li>
+ *     <li>pix.log.amostragemPayload: registra o JSON de 1 a cada N requisições (padrão 1, todas; 0 nenhuma);</li>
+ *     <li>pix.log.fila: eventos aguardando escrita; com a fila cheia os novos são descartados (e contados).</li>
+ * </ul>
+ * A mensagem é um formato com "{}" no lugar de cada argumento, montada só na thread de escrita.
+ * Uma chamada com o nível desligado não aloca nada (há sobrecargas com 1, 2 e 3 argumentos, sem varargs).
+ */
+public final class Log {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private Log() {}
+
+    public enum Nivel { DEBUG, INFO, AVISO, ERRO }
+
+    private record Evento(long instante, Nivel nivel, String categoria, String formato,
+                          Object a1, Object a2, Object a3, Throwable erro) {}
+
+    private static final Nivel NIVEL = lerNivel(System.getProperty("pix.log.nivel", "INFO"));
+    private static final int AMOSTRAGEM_PAYLOAD = Integer.getInteger("pix.log.amostragemPayload", 1);
+    private static final int CAPACIDADE = Integer.getInteger("pix.log.fila", 65_536);
+
+    private static final DateTimeFormatter FORMATO_DATA =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final ConcurrentLinkedQueue<Evento> fila = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger tamanhoFila = new AtomicInteger();
+    private static final AtomicLong contadorPayload = new AtomicLong();
+    private static final LongAdder descartados = new LongAdder();
+    private static final Thread escritor;
+    // A thread de escrita está (ou vai ficar) parada esperando eventos
+    private static volatile boolean dormindo;
+    private static volatile boolean ativo = true;
+
+    static {
+        escritor = new Thread(Log::loop, "pix-log");
+        escritor.setDaemon(true);
+        escritor.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::fechar, "pix-log-fechar"));
+    }
+
+    /**
+     * @return true se mensagens desse nível são registradas (para evitar montar argumentos caros à toa).
+     */
+    public static boolean ativo(Nivel nivel) {
+        return nivel.compareTo(NIVEL) >= 0;
+    }
+
+    /**
+     * Decide se o JSON desta requisição (e da sua resposta) deve ir para o log, conforme pix.log.amostragemPayload.
+     */
+    public static boolean amostrarPayload() {
+        if (AMOSTRAGEM_PAYLOAD <= 0 || !ativo(Nivel.INFO)) return false;
+        return AMOSTRAGEM_PAYLOAD == 1 || contadorPayload.getAndIncrement() % AMOSTRAGEM_PAYLOAD == 0;
+    }
+
+    public static void debug(String categoria, String formato, Object a1) {
+        if (ativo(Nivel.DEBUG)) enfileirar(Nivel.DEBUG, categoria, formato, a1, null, null, null);
+    }
+
+    public static void debug(String categoria, String formato, Object a1, Object a2) {
+        if (ativo(Nivel.DEBUG)) enfileirar(Nivel.DEBUG, categoria, formato, a1, a2, null, null);
+    }
+
+    public static void info(String categoria, String mensagem) {
+        if (ativo(Nivel.INFO)) enfileirar(Nivel.INFO, categoria, mensagem, null, null, null, null);
+    }
+
+    public static void info(String categoria, String formato, Object a1) {
+        if (ativo(Nivel.INFO)) enfileirar(Nivel.INFO, categoria, formato, a1, null, null, null);
+    }
+
+    public static void info(String categoria, String formato, Object a1, Object a2) {
+        if (ativo(Nivel.INFO)) enfileirar(Nivel.INFO, categoria, formato, a1, a2, null, null);
+    }
+
+    public static void info(String categoria, String formato, Object a1, Object a2, Object a3) {
+        if (ativo(Nivel.INFO)) enfileirar(Nivel.INFO, categoria, formato, a1, a2, a3, null);
+    }
+
+    public static void aviso(String categoria, String mensagem) {
+        if (ativo(Nivel.AVISO)) enfileirar(Nivel.AVISO, categoria, mensagem, null, null, null, null);
+    }
+
+    public static void aviso(String categoria, String formato, Object a1) {
+        if (ativo(Nivel.AVISO)) enfileirar(Nivel.AVISO, categoria, formato, a1, null, null, null);
+    }
+
+    public static void aviso(String categoria, String formato, Object a1, Object a2) {
+        if (ativo(Nivel.AVISO)) enfileirar(Nivel.AVISO, categoria, formato, a1, a2, null, null);
+    }
+
+    /**
+     * Registra um erro; a pilha da exceção (se houver) é escrita logo abaixo da mensagem.
+     */
+    public static void erro(String categoria, String formato, Object a1, Throwable erro) {
+        if (ativo(Nivel.ERRO)) enfileirar(Nivel.ERRO, categoria, formato, a1, null, null, erro);
+    }
+
+    public static void erro(String categoria, String formato, Object a1, Object a2, Throwable erro) {
+        if (ativo(Nivel.ERRO)) enfileirar(Nivel.ERRO, categoria, formato, a1, a2, null, erro);
+    }
+
+    private static void enfileirar(Nivel nivel, String categoria, String formato,
+                                   Object a1, Object a2, Object a3, Throwable erro) {
+        // Nunca bloqueia quem registra: com a fila cheia o evento é perdido
+        if (tamanhoFila.incrementAndGet() > CAPACIDADE) {
+            tamanhoFila.decrementAndGet();
+            descartados.increment();
+            return;
+        }
+        fila.offer(new Evento(System.currentTimeMillis(), nivel, categoria, formato, a1, a2, a3, erro));
+        if (dormindo) LockSupport.unpark(escritor);
+    }
+
+    private static void loop() {
+        StringBuilder saida = new StringBuilder(8192);
+        StringBuilder saidaErro = new StringBuilder(1024);
+        long descartadosInformados = 0;
+        while (ativo || !fila.isEmpty()) {
+            Evento evento = fila.poll();
+            if (evento == null) {
+                descartadosInformados = informarDescartados(descartadosInformados, saidaErro);
+                escrever(saida, System.out);
+                escrever(saidaErro, System.err);
+                dormindo = true;
+                // Confere de novo depois de marcar: um evento enfileirado antes disso não teria acordado a thread
+                if (fila.isEmpty() && ativo) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                dormindo = false;
+                continue;
+            }
+            tamanhoFila.decrementAndGet();
+            StringBuilder destino = evento.nivel().compareTo(Nivel.AVISO) >= 0 ? saidaErro : saida;
+            formatar(evento, destino);
+            // Escreve em blocos, mas sem acumular demais quando a fila não esvazia
+            if (saida.length() >= 64 * 1024) escrever(saida, System.out);
+            if (saidaErro.length() >= 64 * 1024) escrever(saidaErro, System.err);
+        }
+        informarDescartados(descartadosInformados, saidaErro);
+        escrever(saida, System.out);
+        escrever(saidaErro, System.err);
+    }
+
+    /**
+     * Registra quantos eventos foram perdidos desde o último aviso, para que a perda apareça no próprio log.
+     * @return o total de descartados já informado.
+     */
+    private static long informarDescartados(long informados, StringBuilder saidaErro) {
+        long total = descartados.sum();
+        if (total > informados) {
+            formatar(new Evento(System.currentTimeMillis(), Nivel.AVISO, "LOG",
+                    "{} mensagens descartadas com a fila do log cheia", total - informados,
+                    null, null, null), saidaErro);
+        }
+        return total;
+    }
+
+    private static void formatar(Evento evento, StringBuilder destino) {
+        FORMATO_DATA.formatTo(Instant.ofEpochMilli(evento.instante()), destino);
+        destino.append(' ').append(evento.nivel()).append(' ');
+        if (evento.categoria() != null) destino.append('[').append(evento.categoria()).append("] ");
+
+        String formato = evento.formato();
+        Object[] argumentos = {evento.a1(), evento.a2(), evento.a3()};
+        int usados = 0;
+        int inicio = 0;
+        int marcador;
+        while (usados < argumentos.length && (marcador = formato.indexOf("{}", inicio)) >= 0) {
+            destino.append(formato, inicio, marcador).append(argumentos[usados++]);
+            inicio = marcador + 2;
+        }
+        destino.append(formato, inicio, formato.length()).append('\n');
+
+        if (evento.erro() != null) {
+            StringWriter pilha = new StringWriter();
+            evento.erro().printStackTrace(new PrintWriter(pilha));
+            destino.append(pilha);
+        }
+    }
+
+    private static void escrever(StringBuilder texto, PrintStream destino) {
+        if (texto.isEmpty()) return;
+        destino.print(texto);
+        destino.flush();
+        texto.setLength(0);
+    }
+
+    /**
+     * Escreve o que estiver na fila e encerra a thread de escrita (chamado no desligamento da JVM).
+     */
+    public static void fechar() {
+        ativo = false;
+        LockSupport.unpark(escritor);
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return eventos perdidos porque a fila estava cheia.
+     */
+    public static long getDescartados() {
+        return descartados.sum();
+    }
+
+    public static int getPendentes() {
+        return tamanhoFila.get();
+    }
+
+    private static Nivel lerNivel(String valor) {
+        try {
+            return Nivel.valueOf(valor.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Nível de log desconhecido '" + valor + "', usando INFO.");
+            return Nivel.INFO;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package common.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.javatuples.Pair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Escreve as respostas do protocolo direto em bytes UTF-8, com o JsonGenerator do Jackson,
+ * sem montar uma árvore de ObjectNode nem uma String intermediária.
+ * Cada conexão (ou worker) mantém o seu: o buffer é reaproveitado de uma resposta para a outra.
+ * Não é thread-safe.
+ */
+public class RespostaWriter {
+
+    private static final JsonFactory factory = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    // Depois de uma resposta excepcionalmente grande (ex: extrato completo), não retém o buffer inteiro
+    private static final int CAPACIDADE_RETIDA_MAXIMA = 64 * 1024;
+    private static final int CAPACIDADE_INICIAL = 512;
+
+    private Buffer buffer = new Buffer(CAPACIDADE_INICIAL);
+    private JsonGenerator gerador;
+    private boolean status;
+    // Marca do trecho de serialização aberto em iniciar() e fechado em concluir() (ver Etapas)
+    private int marcaSerializacao;
+
+    /**
+     * Começa uma nova resposta (descartando o que houver no buffer) com os campos padrão.
+     * Os campos extras são escritos no gerador devolvido; depois chame {@link #concluir()}.
+     * @return o gerador, posicionado dentro do objeto raiz.
+     */
+    public JsonGenerator iniciar(String operacao, boolean status, String info) throws IOException {
+        descartar();
+        marcaSerializacao = Etapas.iniciar(Etapas.Etapa.SERIALIZACAO);
+        this.status = status;
+        gerador = factory.createGenerator(buffer);
+        gerador.writeStartObject();
+        gerador.writeStringField("operacao", operacao);
+        gerador.writeBooleanField("status", status);
+        gerador.writeStringField("info", info);
+        return gerador;
+    }
+
+    /**
+     * Fecha o objeto raiz da resposta iniciada por {@link #iniciar}.
+     */
+    public void concluir() throws IOException {
+        gerador.writeEndObject();
+        gerador.close();
+        gerador = null;
+        Etapas.concluir(marcaSerializacao);
+    }
+
+    /**
+     * Escreve uma resposta só com os campos padrão (operacao, status, info).
+     */
+    public void escrever(String operacao, boolean status, String info) {
+        try {
+            iniciar(operacao, status, info);
+            concluir();
+        } catch (IOException e) {
+            // O destino é um buffer em memória; não deveria acontecer
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Escreve uma resposta com os campos padrão mais pares chave/valor de texto.
+     */
+    public void escrever(String operacao, boolean status, String info, List<Pair<String, String>> params) {
+        try {
+            JsonGenerator g = iniciar(operacao, status, info);
+            for (Pair<String, String> param : params) {
+                g.writeStringField(param.getValue0(), param.getValue1());
+            }
+            concluir();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Descarta a resposta atual (completa ou parcial), ex: quando um erro no meio da escrita
+     * faz a resposta ser substituída por uma de erro.
+     */
+    public void descartar() {
+        if (gerador != null) {
+            try {
+                gerador.close();
+            } catch (IOException e) {
+                // Só libera os buffers internos do gerador
+            }
+            gerador = null;
+            Etapas.concluir(marcaSerializacao);
+        }
+        if (buffer.capacidade() > CAPACIDADE_RETIDA_MAXIMA) {
+            buffer = new Buffer(CAPACIDADE_INICIAL);
+        } else {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Envia a resposta seguida de quebra de linha (delimitador do protocolo), sem cópias intermediárias.
+     */
+    public void enviarLinha(OutputStream out) throws IOException {
+        buffer.writeTo(out);
+        out.write('\n');
+    }
+
+    /**
+     * @return uma cópia da resposta seguida de quebra de linha, para ser enfileirada para envio
+     *         enquanto este writer já é reaproveitado na próxima resposta.
+     */
+    public ByteBuffer copiarLinha() {
+        return buffer.copiarLinha();
+    }
+
+    /**
+     * @return o campo status da última resposta iniciada.
+     */
+    public boolean getStatus() {
+        return status;
+    }
+
+    /**
+     * @return o tamanho em bytes da resposta atual.
+     */
+    public int tamanho() {
+        return buffer.size();
+    }
+
+    /**
+     * @return a resposta como texto (para log).
+     */
+    @Override
+    public String toString() {
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * ByteArrayOutputStream com acesso ao array interno, para copiar a linha de uma vez.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer(int capacidade) {
+            super(capacidade);
+        }
+
+        int capacidade() {
+            return buf.length;
+        }
+
+        ByteBuffer copiarLinha() {
+            ByteBuffer copia = ByteBuffer.allocate(count + 1);
+            copia.put(buf, 0, count).put((byte) '\n').flip();
+            return copia;
+        }
+    }
+}
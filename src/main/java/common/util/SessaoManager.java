@@ -1,17 +1,93 @@
 package common.util;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Gerencia as sessões ativas dos usuários.
  * Associa um token único a um CPF de usuário logado.
+ * <p>
+ * Cada sessão expira depois de pix.sessao.ttlMs sem uso (o prazo é renovado a cada requisição).
+ * A busca pelo token é uma leitura do ConcurrentHashMap, sem lock; uma sessão vencida é descartada
+ * quando alguém a busca ou pela varredura periódica, o que acontecer primeiro.
+ * Um CPF tem no máximo pix.sessao.maxPorCpf sessões: um login além disso encerra a mais antiga.
+ * O mapa é indexado pelo {@link TokenSessao} (dois longs), não pelo texto que o cliente envia.
+ * <p>
+ * Com um {@link SessaoStore} instalado ({@link #usarStore}) as sessões sobrevivem a reinícios: criação,
+ * encerramento e renovação do prazo são repassados ao store sem esperar pelo disco, e as sessões gravadas
+ * são carregadas em segundo plano na inicialização. O store só conhece o resumo de cada token, então uma sessão
+ * carregada fica indexada pelo resumo até o primeiro uso, quando passa para o mapa principal.
  */
 public class SessaoManager {
 
+    // Tempo sem uso até a sessão expirar
+    private static final long TTL_MS = Long.getLong("pix.sessao.ttlMs", TimeUnit.MINUTES.toMillis(30));
+    // Sessões simultâneas por CPF; 0 para não limitar
+    private static final int MAX_POR_CPF = Integer.getInteger("pix.sessao.maxPorCpf", 5);
+    // Intervalo da varredura que remove as sessões vencidas
+    private static final long VARREDURA_MS = Long.getLong("pix.sessao.varreduraMs", TimeUnit.MINUTES.toMillis(1));
+    // O prazo só é regravado se mudar mais que isso, para que requisições seguidas não escrevam sempre no mesmo campo
+    private static final long RENOVACAO_MINIMA_MS = Math.min(1_000, TTL_MS / 10);
+    // Com store, o novo prazo só é gravado quando avança isso em relação ao último gravado; depois de um
+    // reinício a sessão pode então vencer até esse tanto mais cedo
+    private static final long RENOVACAO_GRAVADA_MS = TTL_MS / 4;
+
+    private static final class Sessao {
+        // null na sessão carregada do store que ainda não foi usada: até lá só se conhece o resumo
+        volatile TokenSessao chave;
+        // Resumo do token no store; null sem store
+        final TokenSessao resumo;
+        final String cpf;
+        volatile long expiraEm;
+        // Último prazo enviado ao store
+        volatile long expiraGravado;
+        // Marcada antes do apagar no store; uma gravação que chegue depois confere e apaga de novo
+        volatile boolean removida;
+
+        Sessao(TokenSessao chave, TokenSessao resumo, String cpf, long expiraEm) {
+            this.chave = chave;
+            this.resumo = resumo;
+            this.cpf = cpf;
+            this.expiraEm = expiraEm;
+            this.expiraGravado = expiraEm;
+        }
+    }
+
     // Usamos ConcurrentHashMap por ser seguro para uso em ambientes com múltiplas Threads
-    private static final Map<String, String> sessoesAtivas = new ConcurrentHashMap<>();
+    private static final Map<TokenSessao, Sessao> sessoesAtivas = new ConcurrentHashMap<>();
+    // Sessões carregadas do store e ainda não usadas, pelo resumo do token
+    private static final Map<TokenSessao, Sessao> restauradas = new ConcurrentHashMap<>();
+    // Sessões de cada CPF, da mais antiga para a mais nova; só alteradas dentro do compute do CPF
+    private static final Map<String, ArrayDeque<Sessao>> sessoesPorCpf = new ConcurrentHashMap<>();
+
+    private static final LongAdder criadas = new LongAdder();
+    private static final LongAdder encerradas = new LongAdder();
+    private static final LongAdder expiradas = new LongAdder();
+    private static final LongAdder descartadasPorLimite = new LongAdder();
+
+    // null enquanto as sessões ficam só em memória
+    private static volatile SessaoStore store;
+    // Carga das sessões do store; enquanto não termina, um token desconhecido pode estar entre as que faltam
+    private static volatile CompletableFuture<Void> carga = CompletableFuture.completedFuture(null);
+    private static volatile int carregadas;
+
+    static {
+        ScheduledExecutorService varredura = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pix-sessoes-varredura");
+            t.setDaemon(true);
+            return t;
+        });
+        varredura.scheduleWithFixedDelay(SessaoManager::removerExpiradas, VARREDURA_MS, VARREDURA_MS, TimeUnit.MILLISECONDS);
+    }
 
     /**
      * Cria uma nova sessão para um usuário, gerando um token aleatório.
@@ -19,19 +95,56 @@ public class SessaoManager {
      * @return O token de sessão gerado.
      */
     public static String criarSessao(String cpf) {
-        String token = UUID.randomUUID().toString();
-        sessoesAtivas.put(token, cpf);
-        System.out.println("Sessão criada para o CPF: " + cpf + " com o token: " + token);
-        return token;
+        int marca = Etapas.iniciar(Etapas.Etapa.SESSAO);
+        try {
+            TokenSessao chave = GeradorTokens.gerar();
+            String token = chave.codificar();
+            SessaoStore atual = store;
+            Sessao sessao = new Sessao(chave, atual != null ? atual.resumo(chave) : null, cpf,
+                    System.currentTimeMillis() + TTL_MS);
+            sessoesAtivas.put(chave, sessao);
+            criadas.increment();
+            if (atual != null) {
+                gravar(atual, sessao, sessao.expiraEm);
+            }
+            adicionarAoCpf(sessao, false);
+            // O token não vai para o log: com ele qualquer um que leia o log usaria a sessão
+            Log.info("SESSOES", "Sessão criada para o CPF: {}", cpf);
+            return token;
+        } finally {
+            Etapas.concluir(marca);
+        }
     }
 
     /**
-     * Busca o CPF associado a um token de sessão.
+     * Busca o CPF associado a um token de sessão, renovando o prazo da sessão.
      * @param token O token a ser validado.
-     * @return O CPF do usuário, ou null se o token for inválido.
+     * @return O CPF do usuário, ou null se o token for inválido ou a sessão tiver expirado.
      */
     public static String getCpfPeloToken(String token) {
-        return sessoesAtivas.get(token);
+        int marca = Etapas.iniciar(Etapas.Etapa.SESSAO);
+        try {
+            Sessao sessao = buscar(TokenSessao.decodificar(token));
+            if (sessao == null) return null;
+
+            long agora = System.currentTimeMillis();
+            long expiraEm = sessao.expiraEm;
+            if (agora >= expiraEm) {
+                if (remover(sessao)) expiradas.increment();
+                return null;
+            }
+            if (agora + TTL_MS - expiraEm >= RENOVACAO_MINIMA_MS) {
+                sessao.expiraEm = agora + TTL_MS;
+                SessaoStore atual = store;
+                if (atual != null && sessao.resumo != null && agora + TTL_MS - sessao.expiraGravado >= RENOVACAO_GRAVADA_MS) {
+                    sessao.expiraGravado = agora + TTL_MS;
+                    gravar(atual, sessao, agora + TTL_MS);
+                }
+            }
+            return sessao.cpf;
+        } finally {
+            Etapas.concluir(marca);
+        }
     }
 
     /**
@@ -39,11 +152,207 @@ public class SessaoManager {
      * @param token O token da sessão a ser encerrada.
      */
     public static void encerrarSessao(String token) {
-        if (token != null) {
-            String cpf = sessoesAtivas.remove(token);
-            if (cpf != null) {
-                System.out.println("Sessão encerrada para o CPF: " + cpf);
+        int marca = Etapas.iniciar(Etapas.Etapa.SESSAO);
+        try {
+            Sessao sessao = buscar(TokenSessao.decodificar(token));
+            if (sessao != null && remover(sessao)) {
+                encerradas.increment();
+                Log.info("SESSOES", "Sessão encerrada para o CPF: {}", sessao.cpf);
+            }
+        } finally {
+            Etapas.concluir(marca);
+        }
+    }
+
+    /**
+     * Instala o store durável e inicia, em segundo plano, a carga das sessões gravadas nele.
+     * Deve ser chamado uma vez, na inicialização do servidor, antes de atender clientes.
+     */
+    public static void usarStore(SessaoStore novo) {
+        store = novo;
+        carga = CompletableFuture.runAsync(() -> carregar(novo), r -> {
+            Thread t = new Thread(r, "pix-sessoes-carga");
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+
+    private static void carregar(SessaoStore origem) {
+        try {
+            long inicio = System.nanoTime();
+            List<SessaoStore.Registro> registros = new ArrayList<>(origem.carregar(System.currentTimeMillis()));
+            // Da mais nova para a mais antiga: cada uma entra na frente da fila do CPF (ver adicionarAoCpf)
+            registros.sort(Comparator.comparingLong(SessaoStore.Registro::expiraEm).reversed());
+            int n = 0;
+            for (SessaoStore.Registro registro : registros) {
+                Sessao sessao = new Sessao(null, registro.resumo(), registro.cpf(), registro.expiraEm());
+                if (restauradas.putIfAbsent(registro.resumo(), sessao) == null) {
+                    adicionarAoCpf(sessao, true);
+                    n++;
+                }
+            }
+            carregadas = n;
+            Log.info("SESSOES", "{} sessões carregadas em {} ms.", n, (System.nanoTime() - inicio) / 1_000_000);
+        } catch (RuntimeException e) {
+            // Sem as sessões gravadas os clientes apenas precisam fazer login de novo
+            Log.erro("SESSOES", "Erro ao carregar as sessões gravadas: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Busca a sessão do token; se a carga inicial ainda não terminou e o token não está no mapa, espera por ela.
+     */
+    private static Sessao buscar(TokenSessao chave) {
+        if (chave == null) return null;
+        Sessao sessao = sessoesAtivas.get(chave);
+        if (sessao == null && !carga.isDone()) {
+            carga.join();
+            sessao = sessoesAtivas.get(chave);
+        }
+        if (sessao == null && !restauradas.isEmpty()) {
+            sessao = ativarRestaurada(chave);
+        }
+        return sessao;
+    }
+
+    /**
+     * Procura o token entre as sessões carregadas do store e, achando, passa a sessão para o mapa principal.
+     */
+    private static Sessao ativarRestaurada(TokenSessao chave) {
+        SessaoStore atual = store;
+        if (atual == null) return null;
+        Sessao[] ativada = new Sessao[1];
+        // Dentro do compute do resumo: outra thread com o mesmo token espera a troca e depois acha a sessão no mapa
+        restauradas.computeIfPresent(atual.resumo(chave), (k, sessao) -> {
+            sessao.chave = chave;
+            sessoesAtivas.put(chave, sessao);
+            ativada[0] = sessao;
+            return null;
+        });
+        return ativada[0] != null ? ativada[0] : sessoesAtivas.get(chave);
+    }
+
+    /**
+     * Coloca a sessão na fila do CPF e aplica o limite de sessões simultâneas, descartando as mais antigas.
+     * @param antiga true para sessões carregadas do store, que são mais antigas que qualquer sessão
+     *               criada depois da inicialização e por isso entram na frente da fila.
+     */
+    private static void adicionarAoCpf(Sessao sessao, boolean antiga) {
+        if (MAX_POR_CPF <= 0) return;
+        sessoesPorCpf.compute(sessao.cpf, (k, sessoes) -> {
+            if (sessoes == null) sessoes = new ArrayDeque<>(MAX_POR_CPF + 1);
+            if (antiga) {
+                sessoes.addFirst(sessao);
+            } else {
+                sessoes.addLast(sessao);
+            }
+            while (sessoes.size() > MAX_POR_CPF) {
+                Sessao maisAntiga = sessoes.pollFirst();
+                if (removerDosMapas(maisAntiga)) {
+                    descartadasPorLimite.increment();
+                }
             }
+            return sessoes;
+        });
+    }
+
+    /**
+     * Remove a sessão dos dois mapas.
+     * @return true se esta chamada a removeu (e não outra thread).
+     */
+    private static boolean remover(Sessao sessao) {
+        if (!removerDosMapas(sessao)) return false;
+        if (MAX_POR_CPF > 0) {
+            sessoesPorCpf.computeIfPresent(sessao.cpf, (k, sessoes) -> {
+                sessoes.remove(sessao);
+                return sessoes.isEmpty() ? null : sessoes;
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Tira a sessão do mapa em que ela está (o principal, ou o das carregadas ainda não usadas) e do store.
+     * @return true se esta chamada a removeu (e não outra thread).
+     */
+    private static boolean removerDosMapas(Sessao sessao) {
+        boolean removida = sessao.chave == null && restauradas.remove(sessao.resumo, sessao);
+        if (!removida) {
+            // Pode ter passado para o mapa principal entre a leitura da chave e a remoção acima
+            TokenSessao chave = sessao.chave;
+            removida = chave != null && sessoesAtivas.remove(chave, sessao);
+        }
+        if (!removida) return false;
+        sessao.removida = true;
+        SessaoStore atual = store;
+        if (atual != null && sessao.resumo != null) atual.apagar(sessao.resumo);
+        return true;
+    }
+
+    /**
+     * Grava a sessão no store. Se ela foi removida ao mesmo tempo (logout durante uma renovação), a gravação pode
+     * ter passado por cima do apagar no store; então apaga de novo, para a sessão encerrada não voltar num reinício.
+     */
+    private static void gravar(SessaoStore atual, Sessao sessao, long expiraEm) {
+        atual.gravar(new SessaoStore.Registro(sessao.resumo, sessao.cpf, expiraEm));
+        if (sessao.removida) atual.apagar(sessao.resumo);
+    }
+
+    private static void removerExpiradas() {
+        try {
+            long agora = System.currentTimeMillis();
+            for (Sessao sessao : sessoesAtivas.values()) {
+                if (agora >= sessao.expiraEm && remover(sessao)) {
+                    expiradas.increment();
+                }
+            }
+            for (Sessao sessao : restauradas.values()) {
+                if (agora >= sessao.expiraEm && remover(sessao)) {
+                    expiradas.increment();
+                }
+            }
+        } catch (RuntimeException e) {
+            // Uma exceção cancelaria as próximas execuções agendadas
+            Log.erro("SESSOES", "Erro na varredura de sessões expiradas: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return o número de sessões nos mapas (as vencidas ainda não varridas também contam).
+     */
+    public static int getSessoesAtivas() {
+        return sessoesAtivas.size() + restauradas.size();
+    }
+
+    /**
+     * @return sessões restauradas do store na inicialização.
+     */
+    public static int getCarregadas() {
+        return carregadas;
+    }
+
+    public static long getCriadas() {
+        return criadas.sum();
+    }
+
+    /**
+     * @return sessões encerradas por logout.
+     */
+    public static long getEncerradas() {
+        return encerradas.sum();
+    }
+
+    /**
+     * @return sessões removidas por falta de uso (na busca ou na varredura).
+     */
+    public static long getExpiradas() {
+        return expiradas.sum();
+    }
+
+    /**
+     * @return sessões encerradas porque o CPF passou do limite de sessões simultâneas.
+     */
+    public static long getDescartadasPorLimite() {
+        return descartadasPorLimite.sum();
+    }
+}
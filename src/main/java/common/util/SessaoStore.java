@@ -0,0 +1,49 @@
+package common.util;
+
+import java.util.List;
+
+/**
+ * Armazenamento durável das sessões, para que sobrevivam a um reinício do servidor.
+ * O {@link SessaoManager} continua atendendo tudo pela memória: só avisa o store das mudanças
+ * (as gravações podem ser assíncronas) e lê tudo de volta uma vez, na inicialização.
+ * <p>
+ * O store não grava o token em si, só o {@link #resumo} dele: quem ler o que foi gravado não consegue
+ * usar as sessões.
+ */
+public interface SessaoStore {
+
+    /**
+     * Uma sessão gravada.
+     * @param resumo Resumo do token ({@link #resumo}).
+     * @param expiraEm Instante (System.currentTimeMillis) em que a sessão vence se não for usada.
+     */
+    record Registro(TokenSessao resumo, String cpf, long expiraEm) {}
+
+    /**
+     * @return o resumo pelo qual a sessão do token é gravada e encontrada depois de um reinício.
+     *         Deve ser de mão única: o token não pode ser obtido a partir dele.
+     */
+    TokenSessao resumo(TokenSessao token);
+
+    /**
+     * Lê as sessões gravadas, descartando as que já venceram.
+     * @param agora Instante atual (System.currentTimeMillis).
+     */
+    List<Registro> carregar(long agora);
+
+    /**
+     * Grava uma sessão nova ou o novo prazo de uma existente. Não deve bloquear a requisição.
+     */
+    void gravar(Registro registro);
+
+    /**
+     * Apaga uma sessão encerrada ou vencida. Não deve bloquear a requisição.
+     * @param resumo Resumo do token da sessão.
+     */
+    void apagar(TokenSessao resumo);
+
+    /**
+     * Grava o que estiver pendente e libera os recursos.
+     */
+    void fechar();
+}
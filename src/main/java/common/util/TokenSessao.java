@@ -0,0 +1,72 @@
+package common.util;
+
+import java.util.Arrays;
+
+/**
+ * Token de sessão: 128 bits aleatórios, guardados como dois longs. É a chave do mapa de sessões,
+ * então hashCode e equals custam duas operações em vez de percorrer os caracteres do texto.
+ * No protocolo ele trafega como 22 caracteres Base64 URL-safe sem padding (os 16 bytes em big-endian).
+ */
+public record TokenSessao(long alto, long baixo) {
+
+    public static final int TAMANHO_TEXTO = 22;
+
+    private static final char[] ALFABETO =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] VALORES = new byte[128];
+
+    static {
+        Arrays.fill(VALORES, (byte) -1);
+        for (int i = 0; i < ALFABETO.length; i++) {
+            VALORES[ALFABETO[i]] = (byte) i;
+        }
+    }
+
+    /**
+     * @return o token no formato do protocolo (22 caracteres).
+     */
+    public String codificar() {
+        char[] c = new char[TAMANHO_TEXTO];
+        for (int i = 0; i < 21; i++) {
+            int deslocamento = i * 6;
+            int v;
+            if (deslocamento + 6 <= 64) {
+                v = (int) (alto >>> (58 - deslocamento)) & 63;
+            } else if (deslocamento >= 64) {
+                v = (int) (baixo >>> (122 - deslocamento)) & 63;
+            } else {
+                // Caractere que cruza os dois longs (bits 60 a 65)
+                v = (int) (((alto & 0xF) << 2) | (baixo >>> 62));
+            }
+            c[i] = ALFABETO[v];
+        }
+        // Os 2 bits restantes, completados com zeros
+        c[21] = ALFABETO[(int) (baixo & 3) << 4];
+        return new String(c);
+    }
+
+    /**
+     * Lê um token no formato do protocolo.
+     * @return o token, ou null se o texto não puder ser um token gerado por {@link GeradorTokens}.
+     */
+    public static TokenSessao decodificar(CharSequence texto) {
+        if (texto == null || texto.length() != TAMANHO_TEXTO) return null;
+        long alto = 0;
+        long baixo = 0;
+        for (int i = 0; i < 21; i++) {
+            int v = valor(texto.charAt(i));
+            if (v < 0) return null;
+            alto = (alto << 6) | (baixo >>> 58);
+            baixo = (baixo << 6) | v;
+        }
+        int ultimo = valor(texto.charAt(21));
+        if (ultimo < 0 || (ultimo & 0xF) != 0) return null;
+        alto = (alto << 2) | (baixo >>> 62);
+        baixo = (baixo << 2) | (ultimo >>> 4);
+        return new TokenSessao(alto, baixo);
+    }
+
+    private static int valor(char c) {
+        return c < 128 ? VALORES[c] : -1;
+    }
+}
@@ -0,0 +1,99 @@
+package common.validator;
+
+/**
+ * Verificações de formato usadas na validação das mensagens, escritas à mão (sem regex)
+ * para não alocar nada: percorrem os caracteres uma única vez.
+ */
+public final class FormatoValidator {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private FormatoValidator() {}
+
+    // "000.000.000-00"
+    private static final int TAMANHO_CPF = 14;
+    // "yyyy-MM-ddTHH:mm:ssZ"
+    private static final int TAMANHO_DATA_ISO = 20;
+
+    /**
+     * Equivale a {@code cpf.matches("\\d{3}\\.\\d{3}\\.\\d{3}-\\d{2}")}.
+     * @return true se o texto segue a máscara '000.000.000-00' (só dígitos ASCII).
+     */
+    public static boolean isCpfFormatado(CharSequence cpf) {
+        if (cpf == null || cpf.length() != TAMANHO_CPF) return false;
+        for (int i = 0; i < TAMANHO_CPF; i++) {
+            char c = cpf.charAt(i);
+            // Posições dos separadores
+            boolean ok = switch (i) {
+                case 3, 7 -> c == '.';
+                case 11 -> c == '-';
+                default -> isDigito(c);
+            };
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Além da máscara, confere os dois dígitos verificadores (módulo 11) e rejeita
+     * CPFs com todos os dígitos iguais (ex: 111.111.111-11), que passam no cálculo mas não existem.
+     * @return true se o CPF é formatado e válido.
+     */
+    public static boolean isCpfValido(CharSequence cpf) {
+        if (!isCpfFormatado(cpf)) return false;
+
+        int soma1 = 0;
+        int soma2 = 0;
+        boolean todosIguais = true;
+        char primeiro = cpf.charAt(0);
+        int peso = 10;
+        for (int i = 0; i < 11; i++) {
+            if (i == 3 || i == 7) continue; // pontos
+            char c = cpf.charAt(i);
+            int d = c - '0';
+            soma1 += d * peso;
+            soma2 += d * (peso + 1);
+            peso--;
+            todosIguais &= c == primeiro;
+        }
+        int dv1 = cpf.charAt(12) - '0';
+        int dv2 = cpf.charAt(13) - '0';
+        todosIguais &= cpf.charAt(12) == primeiro && cpf.charAt(13) == primeiro;
+        if (todosIguais) return false;
+
+        int esperado1 = digitoVerificador(soma1);
+        int esperado2 = digitoVerificador(soma2 + esperado1 * 2);
+        return dv1 == esperado1 && dv2 == esperado2;
+    }
+
+    /**
+     * Equivale a {@code data.matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z")}.
+     * Só o formato é verificado, não os intervalos (mês 13 passa, como na regex).
+     * @return true se o texto segue 'yyyy-MM-dd'T'HH:mm:ss'Z'.
+     */
+    public static boolean isDataIsoUtc(CharSequence data) {
+        if (data == null || data.length() != TAMANHO_DATA_ISO) return false;
+        for (int i = 0; i < TAMANHO_DATA_ISO; i++) {
+            char c = data.charAt(i);
+            boolean ok = switch (i) {
+                case 4, 7 -> c == '-';
+                case 10 -> c == 'T';
+                case 13, 16 -> c == ':';
+                case 19 -> c == 'Z';
+                default -> isDigito(c);
+            };
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigito(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int digitoVerificador(int soma) {
+        int resto = soma % 11;
+        return resto < 2 ? 0 : 11 - resto;
+    }
+}
@@ -0,0 +1,373 @@
+package common.validator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import common.models.Requisicao;
+import common.util.Dinheiro;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decodifica uma requisição do cliente em uma única passada pelos tokens do JSON (JsonParser),
+ * guardando cada campo conhecido do protocolo já com o seu tipo, sem montar uma árvore de JsonNode.
+ * Ao fim do objeto a operação é identificada e as mesmas regras (e mensagens de erro) de antes
+ * são aplicadas sobre os campos lidos, produzindo o {@link Requisicao} tipado da operação.
+ */
+final class RequisicaoDecoder {
+
+    private RequisicaoDecoder() {}
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Regras de uma operação (Cliente -> Servidor): as chaves aceitas e como validar e montar a requisição
+     * a partir dos campos lidos. Uma operação nova é só mais um registro em {@link #REGRAS}.
+     */
+    private record Regra(Set<String> chaves, Construtor construtor) {}
+
+    @FunctionalInterface
+    private interface Construtor {
+        Requisicao construir(Leitura l, String operacao);
+    }
+
+    private static final Map<RulesEnum, Regra> REGRAS = new EnumMap<>(RulesEnum.class);
+
+    static {
+        registrar(RulesEnum.CONECTAR, Set.of("operacao"),
+                (l, operacao) -> new Requisicao.Conectar(operacao));
+        registrar(RulesEnum.USUARIO_LOGIN, Set.of("operacao", "cpf", "senha"),
+                (l, operacao) -> {
+                    String cpf = exigirCpf(l, Campo.CPF);
+                    String senha = exigirTexto(l, Campo.SENHA, 6, 120);
+                    return new Requisicao.UsuarioLogin(operacao, cpf, senha);
+                });
+        registrar(RulesEnum.USUARIO_LOGOUT, Set.of("operacao", "token"),
+                (l, operacao) -> new Requisicao.UsuarioLogout(operacao, exigirTexto(l, Campo.TOKEN, 3, 200)));
+        registrar(RulesEnum.USUARIO_CRIAR, Set.of("operacao", "nome", "cpf", "senha"),
+                (l, operacao) -> {
+                    String nome = exigirTexto(l, Campo.NOME, 6, 120);
+                    String cpf = exigirCpf(l, Campo.CPF);
+                    String senha = exigirTexto(l, Campo.SENHA, 6, 120);
+                    return new Requisicao.UsuarioCriar(operacao, nome, cpf, senha);
+                });
+        registrar(RulesEnum.USUARIO_LER, Set.of("operacao", "token"),
+                (l, operacao) -> new Requisicao.UsuarioLer(operacao, exigirTexto(l, Campo.TOKEN, 3, 200)));
+        registrar(RulesEnum.USUARIO_ATUALIZAR, Set.of("operacao", "token", "usuario"),
+                RequisicaoDecoder::construirUsuarioAtualizar);
+        registrar(RulesEnum.USUARIO_DELETAR, Set.of("operacao", "token"),
+                (l, operacao) -> new Requisicao.UsuarioDeletar(operacao, exigirTexto(l, Campo.TOKEN, 3, 200)));
+        registrar(RulesEnum.TRANSACAO_CRIAR, Set.of("operacao", "token", "valor", "cpf_destino"),
+                (l, operacao) -> {
+                    String token = exigirTexto(l, Campo.TOKEN, 3, 200);
+                    String cpfDestino = exigirCpf(l, Campo.CPF_DESTINO);
+                    long valor = exigirCentavos(l, Campo.VALOR);
+                    return new Requisicao.TransacaoCriar(operacao, token, valor, cpfDestino);
+                });
+        registrar(RulesEnum.TRANSACAO_LER, Set.of("operacao", "token", "data_inicial", "data_final", "limite", "cursor"),
+                RequisicaoDecoder::construirTransacaoLer);
+        registrar(RulesEnum.DEPOSITAR, Set.of("operacao", "token", "valor_enviado"),
+                (l, operacao) -> {
+                    String token = exigirTexto(l, Campo.TOKEN, 3, 200);
+                    long valor = exigirCentavos(l, Campo.VALOR_ENVIADO);
+                    return new Requisicao.Depositar(operacao, token, valor);
+                });
+        registrar(RulesEnum.ERRO_SERVIDOR, Set.of("operacao", "operacao_enviada", "info"),
+                (l, operacao) -> {
+                    exigirPresente(l, Campo.OPERACAO_ENVIADA);
+                    exigirPresente(l, Campo.INFO);
+                    return new Requisicao.ErroServidor(operacao,
+                            l.textos[Campo.OPERACAO_ENVIADA.ordinal()], l.textos[Campo.INFO.ordinal()]);
+                });
+    }
+
+    private static void registrar(RulesEnum regra, Set<String> chaves, Construtor construtor) {
+        REGRAS.put(regra, new Regra(chaves, construtor));
+    }
+
+    /**
+     * Campos do protocolo que o servidor lê. Os dois últimos são os do objeto aninhado 'usuario'.
+     */
+    private enum Campo {
+        OPERACAO("operacao"), NOME("nome"), CPF("cpf"), SENHA("senha"), TOKEN("token"), USUARIO("usuario"),
+        VALOR("valor"), CPF_DESTINO("cpf_destino"), DATA_INICIAL("data_inicial"), DATA_FINAL("data_final"),
+        LIMITE("limite"), CURSOR("cursor"), VALOR_ENVIADO("valor_enviado"), OPERACAO_ENVIADA("operacao_enviada"),
+        INFO("info"), USUARIO_NOME("nome"), USUARIO_SENHA("senha");
+
+        final String nome;
+
+        Campo(String nome) {
+            this.nome = nome;
+        }
+
+        static Campo raiz(String nome) {
+            return switch (nome) {
+                case "operacao" -> OPERACAO;
+                case "nome" -> NOME;
+                case "cpf" -> CPF;
+                case "senha" -> SENHA;
+                case "token" -> TOKEN;
+                case "usuario" -> USUARIO;
+                case "valor" -> VALOR;
+                case "cpf_destino" -> CPF_DESTINO;
+                case "data_inicial" -> DATA_INICIAL;
+                case "data_final" -> DATA_FINAL;
+                case "limite" -> LIMITE;
+                case "cursor" -> CURSOR;
+                case "valor_enviado" -> VALOR_ENVIADO;
+                case "operacao_enviada" -> OPERACAO_ENVIADA;
+                case "info" -> INFO;
+                default -> null;
+            };
+        }
+    }
+
+    private static final int NUM_CAMPOS = Campo.values().length;
+
+    /**
+     * Valores lidos de uma requisição: o token JSON de cada campo (null se ausente), o texto ou número
+     * (os campos monetários também em centavos exatos, lidos do texto do número), e as chaves do objeto raiz na ordem em que apareceram (para reportar a primeira inesperada).
+     */
+    private static final class Leitura {
+        final JsonToken[] tipos = new JsonToken[NUM_CAMPOS];
+        final String[] textos = new String[NUM_CAMPOS];
+        final double[] numeros = new double[NUM_CAMPOS];
+        final boolean[] inteiros = new boolean[NUM_CAMPOS];
+        final long[] centavos = new long[NUM_CAMPOS];
+        final List<String> chaves = new ArrayList<>(8);
+
+        boolean presente(Campo campo) {
+            return tipos[campo.ordinal()] != null;
+        }
+    }
+
+    static Requisicao decodificar(String jsonString) throws Exception {
+        if (jsonString == null || jsonString.trim().isEmpty()) {
+            throw new Exception("A mensagem JSON não pode ser nula ou vazia.");
+        }
+
+        Leitura leitura = new Leitura();
+        try (JsonParser p = factory.createParser(jsonString)) {
+            JsonToken raiz = p.nextToken();
+            if (raiz == JsonToken.START_OBJECT) {
+                lerObjetoRaiz(p, leitura);
+            } else {
+                // Não é um objeto: ainda assim o valor inteiro precisa ser um JSON válido
+                p.skipChildren();
+            }
+        } catch (IOException e) {
+            throw new Exception("Erro de sintaxe. A mensagem não é um JSON válido.", e);
+        }
+
+        return construir(leitura);
+    }
+
+    private static void lerObjetoRaiz(JsonParser p, Leitura leitura) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String chave = p.currentName();
+            leitura.chaves.add(chave);
+            JsonToken valor = p.nextToken();
+            Campo campo = Campo.raiz(chave);
+
+            if (campo == Campo.USUARIO && valor == JsonToken.START_OBJECT) {
+                leitura.tipos[campo.ordinal()] = valor;
+                lerObjetoUsuario(p, leitura);
+            } else if (campo != null) {
+                lerValor(p, valor, leitura, campo);
+            } else {
+                p.skipChildren(); // Chave desconhecida: só o nome importa para a mensagem de erro
+            }
+        }
+    }
+
+    private static void lerObjetoUsuario(JsonParser p, Leitura leitura) throws IOException {
+        leitura.tipos[Campo.USUARIO_NOME.ordinal()] = null;
+        leitura.tipos[Campo.USUARIO_SENHA.ordinal()] = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String chave = p.currentName();
+            JsonToken valor = p.nextToken();
+            if ("nome".equals(chave)) {
+                lerValor(p, valor, leitura, Campo.USUARIO_NOME);
+            } else if ("senha".equals(chave)) {
+                lerValor(p, valor, leitura, Campo.USUARIO_SENHA);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void lerValor(JsonParser p, JsonToken valor, Leitura leitura, Campo campo) throws IOException {
+        int i = campo.ordinal();
+        // Com chave repetida vale o último valor, como no JsonNode
+        leitura.tipos[i] = valor;
+        leitura.textos[i] = null;
+        leitura.inteiros[i] = false;
+        switch (valor) {
+            case VALUE_STRING -> leitura.textos[i] = p.getText();
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+                leitura.numeros[i] = p.getDoubleValue();
+                leitura.inteiros[i] = p.getNumberType() == JsonParser.NumberType.INT;
+                if (campo == Campo.VALOR || campo == Campo.VALOR_ENVIADO) {
+                    leitura.centavos[i] = Dinheiro.centavos(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+                }
+            }
+            case START_OBJECT, START_ARRAY -> p.skipChildren();
+            default -> { } // true, false ou null: o tipo basta
+        }
+    }
+
+    // ===================================================================================
+    // VALIDAÇÃO POR OPERAÇÃO (mesma ordem e mensagens das regras sobre JsonNode)
+    // ===================================================================================
+
+    private static Requisicao construir(Leitura l) throws Exception {
+        String operacao = exigirTexto(l, Campo.OPERACAO, 3, 200);
+        RulesEnum operacaoEnum = RulesEnum.getEnum(operacao);
+
+        Regra regra = REGRAS.get(operacaoEnum);
+        if (regra == null) {
+            throw new IllegalArgumentException("Operação do cliente desconhecida ou não suportada: " + operacaoEnum);
+        }
+        verificarChavesExtras(l, operacaoEnum, regra.chaves());
+
+        return regra.construtor().construir(l, operacao);
+    }
+
+    private static Requisicao construirUsuarioAtualizar(Leitura l, String operacao) {
+        String token = exigirTexto(l, Campo.TOKEN, 3, 200);
+        exigirPresente(l, Campo.USUARIO);
+        if (l.tipos[Campo.USUARIO.ordinal()] != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("O campo 'usuario' deve ser um objeto JSON (ex: { ... }).");
+        }
+
+        if (!l.presente(Campo.USUARIO_NOME) && !l.presente(Campo.USUARIO_SENHA)) {
+            throw new IllegalArgumentException("O objeto 'usuario' para atualização deve conter pelo menos o campo 'nome' ou 'senha'.");
+        }
+        String nome = l.presente(Campo.USUARIO_NOME) ? exigirTexto(l, Campo.USUARIO_NOME, 6, 120) : null;
+        String senha = l.presente(Campo.USUARIO_SENHA) ? exigirTexto(l, Campo.USUARIO_SENHA, 6, 120) : null;
+        return new Requisicao.UsuarioAtualizar(operacao, token, nome, senha);
+    }
+
+    private static Requisicao construirTransacaoLer(Leitura l, String operacao) {
+        String token = exigirTexto(l, Campo.TOKEN, 3, 200);
+        String dataInicial = exigirData(l, Campo.DATA_INICIAL);
+        String dataFinal = exigirData(l, Campo.DATA_FINAL);
+
+        // Paginação opcional: 'limite' define o tamanho da página e 'cursor' continua de onde a anterior parou
+        int limite = 0;
+        if (l.presente(Campo.LIMITE)) {
+            limite = exigirInt(l, Campo.LIMITE);
+            if (limite < 1 || limite > Validator.LIMITE_MAXIMO_EXTRATO) {
+                throw new IllegalArgumentException("O campo 'limite' deve estar entre 1 e " + Validator.LIMITE_MAXIMO_EXTRATO + ".");
+            }
+        }
+        String cursor = null;
+        if (l.presente(Campo.CURSOR)) {
+            if (!l.presente(Campo.LIMITE)) {
+                throw new IllegalArgumentException("O campo 'cursor' só pode ser usado junto com 'limite'.");
+            }
+            cursor = exigirTexto(l, Campo.CURSOR, 1, 200);
+        }
+        return new Requisicao.TransacaoLer(operacao, token, dataInicial, dataFinal, limite, cursor);
+    }
+
+    // ===================================================================================
+    // MÉTODOS AUXILIARES (HELPERS)
+    // ===================================================================================
+
+    private static void verificarChavesExtras(Leitura l, RulesEnum operacao, Set<String> expected) {
+        for (String key : l.chaves) {
+            if (!expected.contains(key)) {
+                throw new IllegalArgumentException("Chave inesperada '" + key + "' encontrada para a operação '" + operacao + "'.");
+            }
+        }
+    }
+
+    private static JsonToken exigirPresente(Leitura l, Campo campo) {
+        JsonToken tipo = l.tipos[campo.ordinal()];
+        if (tipo == null || tipo == JsonToken.VALUE_NULL) {
+            throw new IllegalArgumentException("O campo obrigatório '" + campo.nome + "' não foi encontrado ou é nulo.");
+        }
+        return tipo;
+    }
+
+    private static String exigirString(Leitura l, Campo campo) {
+        if (exigirPresente(l, campo) != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' deve ser do tipo String.");
+        }
+        return l.textos[campo.ordinal()];
+    }
+
+    private static String exigirTexto(Leitura l, Campo campo, int minLength, int maxLength) {
+        String value = exigirString(l, campo);
+        int length = comprimentoSemEspacos(value);
+
+        if (length < minLength) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' deve ter no mínimo " + minLength + " caracteres.");
+        }
+        if (length > maxLength) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' deve ter no máximo " + maxLength + " caracteres.");
+        }
+        return value;
+    }
+
+    private static String exigirCpf(Leitura l, Campo campo) {
+        String cpf = exigirString(l, campo);
+        if (!FormatoValidator.isCpfFormatado(cpf)) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' deve estar no formato '000.000.000-00'.");
+        }
+        if (Validator.VERIFICAR_DIGITOS_CPF && !FormatoValidator.isCpfValido(cpf)) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' não é um CPF válido.");
+        }
+        return cpf;
+    }
+
+    private static String exigirData(Leitura l, Campo campo) {
+        String date = exigirString(l, campo);
+        if (!FormatoValidator.isDataIsoUtc(date)) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' deve estar no formato ISO 8601 UTC 'yyyy-MM-dd'T'HH:mm:ss'Z'.");
+        }
+        return date;
+    }
+
+    private static double exigirNumero(Leitura l, Campo campo) {
+        JsonToken tipo = exigirPresente(l, campo);
+        if (tipo != JsonToken.VALUE_NUMBER_INT && tipo != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' deve ser do tipo numérico (int, double, etc).");
+        }
+        return l.numeros[campo.ordinal()];
+    }
+
+    private static long exigirCentavos(Leitura l, Campo campo) {
+        exigirNumero(l, campo);
+        long centavos = l.centavos[campo.ordinal()];
+        if (centavos == Dinheiro.INVALIDO) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' deve ser um valor em reais com no máximo duas casas decimais.");
+        }
+        return centavos;
+    }
+
+    private static int exigirInt(Leitura l, Campo campo) {
+        exigirPresente(l, campo);
+        if (!l.inteiros[campo.ordinal()]) {
+            throw new IllegalArgumentException("O campo '" + campo.nome + "' deve ser do tipo int.");
+        }
+        return (int) l.numeros[campo.ordinal()];
+    }
+
+    /**
+     * Equivale a value.trim().length(), sem criar uma nova String.
+     */
+    private static int comprimentoSemEspacos(String value) {
+        int inicio = 0;
+        int fim = value.length();
+        while (inicio < fim && value.charAt(inicio) <= ' ') inicio++;
+        while (fim > inicio && value.charAt(fim - 1) <= ' ') fim--;
+        return fim - inicio;
+    }
+}
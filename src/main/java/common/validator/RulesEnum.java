@@ -1,5 +1,7 @@
 package common.validator;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 public enum RulesEnum {
@@ -26,6 +28,15 @@ public enum RulesEnum {
 
     private final String rule;
 
+    // Busca direta pelo valor exato (o caso normal: o cliente envia a operação em minúsculas)
+    private static final Map<String, RulesEnum> POR_VALOR = new HashMap<>();
+
+    static {
+        for (RulesEnum enumConstant : values()) {
+            POR_VALOR.put(enumConstant.getValue(), enumConstant);
+        }
+    }
+
     public String getValue() {
         return rule;
     }
@@ -41,6 +52,12 @@ public enum RulesEnum {
     public static RulesEnum getEnum(String rule) throws Exception{
         Objects.requireNonNull(rule, "O valor da regra não pode ser nulo.");
 
+        RulesEnum exato = POR_VALOR.get(rule);
+        if (exato != null) {
+            return exato;
+        }
+
+        // Variações de maiúsculas/minúsculas (ou valor inválido): mantém a comparação case-insensitive original
         for (RulesEnum enumConstant : RulesEnum.values()) {
             if (enumConstant.getValue().equalsIgnoreCase(rule)) {
                 return enumConstant;
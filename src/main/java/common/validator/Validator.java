@@ -2,50 +2,42 @@ package common.validator;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import common.models.Requisicao;
 import java.util.Set;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 
 public class Validator {
 
     private Validator() {}
 
+    // Maior página de extrato que o cliente pode pedir em 'limite'
+    public static final int LIMITE_MAXIMO_EXTRATO = 1000;
+
+    // Com -Dpix.cpf.verificarDigitos=true, os CPFs enviados pelo cliente também precisam ter dígitos verificadores válidos
+    public static final boolean VERIFICAR_DIGITOS_CPF = Boolean.getBoolean("pix.cpf.verificarDigitos");
+
     // ObjectMapper é a classe principal do Jackson para converter JSON.
     // É uma boa prática reutilizar a mesma instância.
     private static final ObjectMapper mapper = new ObjectMapper();
     // --- DEFINIÇÃO DAS CHAVES ESPERADAS ---
+    // (as do Cliente -> Servidor ficam no RequisicaoDecoder)
 
-    private static final Map<RulesEnum, Set<String>> EXPECTED_CLIENT_KEYS = new HashMap<>();
     private static final Map<RulesEnum, Set<String>> EXPECTED_SERVER_KEYS = new HashMap<>();
 
     // Bloco estático para inicializar os mapas
     static {
-        // Cliente -> Servidor
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.CONECTAR, Set.of("operacao"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.USUARIO_LOGIN, Set.of("operacao", "cpf", "senha"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.USUARIO_CRIAR, Set.of("operacao", "nome", "cpf", "senha"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.USUARIO_LER, Set.of("operacao", "token"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.USUARIO_ATUALIZAR, Set.of("operacao", "token", "usuario"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.USUARIO_DELETAR, Set.of("operacao", "token"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.USUARIO_LOGOUT, Set.of("operacao", "token"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.TRANSACAO_CRIAR, Set.of("operacao", "token", "valor", "cpf_destino"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.TRANSACAO_LER, Set.of("operacao", "token", "data_inicial", "data_final"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.DEPOSITAR, Set.of("operacao", "token", "valor_enviado"));
-        EXPECTED_CLIENT_KEYS.put(RulesEnum.ERRO_SERVIDOR, Set.of("operacao", "operacao_enviada", "info"));
-
         // Servidor -> Cliente (Respostas)
         // Chaves base para todas as respostas
         Set<String> serverBaseKeys = Set.of("operacao", "status", "info");
         // Respostas de sucesso que contêm dados adicionais
         EXPECTED_SERVER_KEYS.put(RulesEnum.USUARIO_LOGIN, Set.of("operacao", "status", "info", "token"));
         EXPECTED_SERVER_KEYS.put(RulesEnum.USUARIO_LER, Set.of("operacao", "status", "info", "usuario"));
-        EXPECTED_SERVER_KEYS.put(RulesEnum.TRANSACAO_LER, Set.of("operacao", "status", "info", "transacoes"));
+        EXPECTED_SERVER_KEYS.put(RulesEnum.TRANSACAO_LER, Set.of("operacao", "status", "info", "transacoes", "proximo_cursor"));
 
         // Para as demais operações, a resposta (sucesso ou falha) só contém as chaves base.
         for (RulesEnum rule : RulesEnum.values()) {
-            EXPECTED_CLIENT_KEYS.computeIfAbsent(rule, k -> new HashSet<>()); // Garante que não haja nulls
             // Se a regra já não tiver chaves específicas de servidor, usa as chaves base
             EXPECTED_SERVER_KEYS.computeIfAbsent(rule, k -> serverBaseKeys);
         }
@@ -53,62 +45,14 @@ public class Validator {
 
     /**
      * Valida uma mensagem JSON enviada do Cliente para o Servidor.
+     * A leitura e a validação são feitas em uma única passada pelo JSON (ver {@link RequisicaoDecoder}).
      *
      * @param jsonString A mensagem JSON como uma String.
+     * @return a requisição tipada da operação.
      * @throws Exception se o JSON for inválido ou não seguir o protocolo.
      */
-    public static JsonNode validateClient(String jsonString) throws Exception {
-        JsonNode rootNode = parseJson(jsonString);
-
-        // Valida a presença e o tipo do campo 'operacao'
-        JsonNode operacaoNode = getRequiredField(rootNode, "operacao");
-        validateStringLength(rootNode, "operacao", 3, 200); // Operacao também é uma string
-
-        // Converte a string da operação para o nosso Enum
-        // NOTA: Certifique-se de que o RulesEnum.java contenha a operação DEPOSITAR.
-        RulesEnum operacao = RulesEnum.getEnum(operacaoNode.asText());
-
-        checkExtraKeys(rootNode, operacao, EXPECTED_CLIENT_KEYS);
-
-        // Chama o método de validação específico para a operação
-        switch (operacao) {
-            case CONECTAR:
-                break;
-            case USUARIO_LOGIN:
-                validateUsuarioLoginClient(rootNode);
-                break;
-            case USUARIO_LOGOUT:
-                validateUsuarioLogoutClient(rootNode);
-                break;
-            case USUARIO_CRIAR:
-                validateUsuarioCriarClient(rootNode);
-                break;
-            case USUARIO_LER:
-                validateUsuarioLerClient(rootNode);
-                break;
-            case USUARIO_ATUALIZAR:
-                validateUsuarioAtualizarClient(rootNode);
-                break;
-            case USUARIO_DELETAR:
-                validateUsuarioDeletarClient(rootNode);
-                break;
-            case TRANSACAO_CRIAR:
-                validateTransacaoCriarClient(rootNode);
-                break;
-            case TRANSACAO_LER:
-                validateTransacaoLerClient(rootNode);
-                break;
-            case DEPOSITAR:
-                validateDepositarClient(rootNode);
-                break;
-            case ERRO_SERVIDOR:
-                validateErroServidorClient(rootNode);
-                break;
-            // =======================================================
-            default:
-                throw new IllegalArgumentException("Operação do cliente desconhecida ou não suportada: " + operacao);
-        }
-        return rootNode;
+    public static Requisicao validateClient(String jsonString) throws Exception {
+        return RequisicaoDecoder.decodificar(jsonString);
     }
 
     /**
@@ -166,72 +110,6 @@ public class Validator {
         return rootNode;
     }
 
-    // ===================================================================================
-    // MÉTODOS DE VALIDAÇÃO PRIVADOS (CLIENTE -> SERVIDOR)
-    // ===================================================================================
-
-    private static void validateUsuarioLoginClient(JsonNode node) {
-        validateCpfFormat(node, "cpf");
-        validateStringLength(node, "senha", 6, 120);
-    }
-
-    private static void validateUsuarioLogoutClient(JsonNode node) {
-        validateStringLength(node, "token", 3, 200);
-    }
-
-    private static void validateUsuarioCriarClient(JsonNode node) {
-        validateStringLength(node, "nome", 6, 120);
-        validateCpfFormat(node, "cpf");
-        validateStringLength(node, "senha", 6, 120);
-    }
-
-    private static void validateUsuarioLerClient(JsonNode node) {
-        validateStringLength(node, "token", 3, 200);
-    }
-
-    private static void validateUsuarioAtualizarClient(JsonNode node) {
-        validateStringLength(node, "token", 3, 200);
-        JsonNode usuarioNode = getRequiredObject(node, "usuario");
-
-        if (!usuarioNode.has("nome") && !usuarioNode.has("senha")) {
-            throw new IllegalArgumentException("O objeto 'usuario' para atualização deve conter pelo menos o campo 'nome' ou 'senha'.");
-        }
-        if (usuarioNode.has("nome")){
-            validateStringLength(usuarioNode, "nome", 6, 120);
-        }
-        if (usuarioNode.has("senha")){
-            validateStringLength(usuarioNode, "senha", 6, 120);
-        }
-    }
-
-    private static void validateUsuarioDeletarClient(JsonNode node) {
-        validateStringLength(node, "token", 3, 200);
-    }
-
-    private static void validateTransacaoCriarClient(JsonNode node) {
-        validateStringLength(node, "token", 3, 200);
-        validateCpfFormat(node, "cpf_destino");
-        getRequiredNumber(node, "valor");
-    }
-
-    private static void validateTransacaoLerClient(JsonNode node) {
-        validateStringLength(node, "token", 3, 200);
-        validateDateFormat(node, "data_inicial");
-        validateDateFormat(node, "data_final");
-    }
-
-    private static void validateDepositarClient(JsonNode node) {
-        validateStringLength(node, "token", 3, 200);
-        getRequiredNumber(node, "valor_enviado");
-    }
-
-    private static void validateErroServidorClient(JsonNode node) {
-        getRequiredField(node, "operacao");
-        getRequiredField(node, "operacao_enviada");
-        getRequiredField(node, "info");
-    }
-    // =======================================================
-
     // ===================================================================================
     // MÉTODOS DE VALIDAÇÃO PRIVADOS (SERVIDOR -> CLIENTE)
     // ===================================================================================
@@ -267,6 +145,9 @@ public class Validator {
             validateDateFormat(transacao, "criado_em");
             validateDateFormat(transacao, "atualizado_em");
         }
+        if (node.has("proximo_cursor")) {
+            validateStringLength(node, "proximo_cursor", 1, 200);
+        }
     }
 
     // ===================================================================================
@@ -313,8 +194,7 @@ public class Validator {
             throw new IllegalArgumentException("O campo '" + fieldName + "' deve ser do tipo String.");
         }
         String cpf = field.asText();
-        String cpfRegex = "\\d{3}\\.\\d{3}\\.\\d{3}-\\d{2}";
-        if (!cpf.matches(cpfRegex)) {
+        if (!FormatoValidator.isCpfFormatado(cpf)) {
             throw new IllegalArgumentException("O campo '" + fieldName + "' deve estar no formato '000.000.000-00'.");
         }
     }
@@ -325,8 +205,7 @@ public class Validator {
             throw new IllegalArgumentException("O campo '" + fieldName + "' deve ser do tipo String.");
         }
         String date = field.asText();
-        String isoRegex = "\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z";
-        if (!date.matches(isoRegex)) {
+        if (!FormatoValidator.isDataIsoUtc(date)) {
             throw new IllegalArgumentException("O campo '" + fieldName + "' deve estar no formato ISO 8601 UTC 'yyyy-MM-dd'T'HH:mm:ss'Z'.");
         }
     }
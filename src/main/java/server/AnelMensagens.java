@@ -0,0 +1,44 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Histórico de mensagens de um cliente com capacidade fixa: ao encher, cada mensagem nova sobrescreve a mais antiga.
+ * A memória ocupada não cresce com o tempo de vida da conexão.
+ */
+public class AnelMensagens {
+
+    private final String[] mensagens;
+    private int proxima;
+    private int tamanho;
+
+    public AnelMensagens(int capacidade) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("A capacidade do histórico deve ser positiva.");
+        }
+        this.mensagens = new String[capacidade];
+    }
+
+    public synchronized void adicionar(String mensagem) {
+        mensagens[proxima] = mensagem;
+        proxima = (proxima + 1) % mensagens.length;
+        if (tamanho < mensagens.length) tamanho++;
+    }
+
+    /**
+     * @return as mensagens guardadas, da mais antiga para a mais nova.
+     */
+    public synchronized List<String> getMensagens() {
+        List<String> copia = new ArrayList<>(tamanho);
+        int inicio = (proxima - tamanho + mensagens.length) % mensagens.length;
+        for (int i = 0; i < tamanho; i++) {
+            copia.add(mensagens[(inicio + i) % mensagens.length]);
+        }
+        return copia;
+    }
+
+    public synchronized int getTamanho() {
+        return tamanho;
+    }
+}
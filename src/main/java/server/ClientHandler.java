@@ -1,24 +1,23 @@
 package server;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.Locale;
-import java.util.Scanner;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import common.validator.RulesEnum;
+import common.models.Requisicao;
+import common.util.Etapas;
+import common.util.Log;
+import common.util.RespostaWriter;
 
-import static common.util.RespostaManager.criarResposta;
 import static common.validator.Validator.validateClient;
-import server.controllers.UsuarioController;
-import server.controllers.TransacaoController;
 
 /**
  * Esta classe é responsável por lidar com a comunicação de um único cliente.
  * Ela será executada em uma Thread separada para cada cliente conectado.
+ * O transporte NIO ({@link NioTransport}) reaproveita o mesmo processamento via {@link #processar}.
  */
 public class ClientHandler implements Runnable {
 
@@ -37,91 +36,81 @@ public class ClientHandler implements Runnable {
                 // Prepara para ler dados do cliente (requisições)
                 BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
                 // Prepara para enviar dados para o cliente (respostas)
-                PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true)
+                OutputStream writer = new BufferedOutputStream(clientSocket.getOutputStream())
         ) {
             // Register client in GUI
             Server.registerClient(clientIp);
 
+            // A resposta é escrita em um buffer reaproveitado durante toda a conexão
+            RespostaWriter resposta = new RespostaWriter();
             String requestJson;
             // Loop para ler continuamente as mensagens do cliente
             while ((requestJson = reader.readLine()) != null) {
-                System.out.println("Recebido do cliente: " + requestJson);
-                // Log received message to GUI
-                Server.logMessage(clientIp, "RECEIVED", requestJson);
-
-                try {
-                    String response = handleRequest(requestJson);
-                    System.out.println("Enviando para o cliente: " + response + "\n");
-                    // Log sent response to GUI
-                    Server.logMessage(clientIp, "SENT", response);
-                    writer.println(response);
-                } catch (Exception e) {
-                    System.out.println(e);
-                    String response = criarResposta("usuario_login", false, e.getMessage());
-                    System.out.println("Enviando para o cliente: " + response + "\n");
-                    Server.logMessage(clientIp, "SENT", response);
-                    writer.println(response);
-                }
+                processar(clientIp, requestJson, resposta);
+                resposta.enviarLinha(writer);
+                writer.flush();
             }
         } catch (IOException e) {
-            System.err.println("Erro de comunicação com o cliente: " + e.getMessage());
+            Log.aviso("CLIENTE", "Erro de comunicação com o cliente {}: {}", clientIp, e.getMessage());
         } finally {
-            System.out.println("Cliente desconectado: " + clientIp);
+            Log.info("CLIENTE", "Cliente desconectado: {}", clientIp);
             Server.unregisterClient(clientIp);
             try {
                 clientSocket.close(); // Garante que o socket seja fechado
             } catch (IOException e) {
-                e.printStackTrace();
+                Log.erro("CLIENTE", "Erro ao fechar o socket de {}", clientIp, e);
             }
         }
     }
 
-    private String handleRequest(String request) throws Exception {
+    /**
+     * Processa uma linha de requisição completa e escreve a linha de resposta no writer.
+     * Compartilhado pelos transportes bloqueante e NIO para que ambos respondam exatamente igual.
+     * @param clientIp O IP do cliente, usado no log.
+     * @param requestJson A requisição JSON (sem a quebra de linha final).
+     * @param resposta Onde a resposta JSON a ser enviada ao cliente é escrita (sem a quebra de linha).
+     */
+    static void processar(String clientIp, String requestJson, RespostaWriter resposta) {
+        // A requisição e a sua resposta entram (ou não) juntas na amostra do log
+        boolean registrarPayload = Log.amostrarPayload();
+        if (registrarPayload) Log.info("CLIENTE", "Recebido de {}: {}", clientIp, requestJson);
+        // Log received message to GUI
+        Server.logMessage(clientIp, "RECEIVED", requestJson);
+
         try {
-            JsonNode json = validateClient(request);
-            RulesEnum operacao = RulesEnum.getEnum(json.get("operacao").asText());
-            String response;
+            handleRequest(requestJson, resposta);
+        } catch (Exception e) {
+            Log.aviso("CLIENTE", "Requisição de {} falhou: {}", clientIp, e);
+            // Descarta o que o controller tenha escrito antes de falhar
+            resposta.escrever("usuario_login", false, e.getMessage());
+        }
+        // A resposta só vira String se alguém for usá-la
+        if (registrarPayload || Server.isMonitorAtivo()) {
+            String response = resposta.toString();
+            if (registrarPayload) Log.info("CLIENTE", "Enviando para {}: {}", clientIp, response);
+            // Log sent response to GUI
+            Server.logMessage(clientIp, "SENT", response);
+        }
+    }
 
-            switch(operacao) {
-                case CONECTAR:
-                    response = criarResposta(json.get("operacao").asText(), true, "Conectado com sucesso.");
-                    break;
-                case USUARIO_LOGIN:
-                    response = UsuarioController.login(json);
-                    break;
-                case USUARIO_LOGOUT:
-                    response = UsuarioController.logout(json);
-                    break;
-                case USUARIO_CRIAR:
-                    response = UsuarioController.criarUsuario(json);
-                    break;
-                case USUARIO_LER:
-                    response = UsuarioController.lerUsuario(json);
-                    break;
-                case USUARIO_ATUALIZAR:
-                    response = UsuarioController.updateUsuario(json);
-                    break;
-                case USUARIO_DELETAR:
-                    response = UsuarioController.deleteUsuario(json);
-                    break;
-                case TRANSACAO_CRIAR:
-                    response = TransacaoController.criarTransacao(json);
-                    break;
-                case TRANSACAO_LER:
-                    response = TransacaoController.getTransacoes(json);
-                    break;
-                case DEPOSITAR:
-                    response = TransacaoController.depositar(json);
-                    break;
-                case ERRO_SERVIDOR:
-                    response = criarResposta(json.get("operacao").asText(), true, "Mensagem de erro recebida.");
-                    break;
-                default:
-                    throw new IllegalArgumentException("Operação do cliente desconhecida ou não suportada: " + operacao);
+    private static void handleRequest(String request, RespostaWriter resposta) throws Exception {
+        try {
+            // Leitura e validação em uma passada; cada operação chega com os seus campos já tipados
+            Requisicao requisicao;
+            if (ServerConfig.METRICAS_ETAPAS) Etapas.comecar();
+            int marca = Etapas.iniciar(Etapas.Etapa.VALIDACAO);
+            try {
+                requisicao = validateClient(request);
+            } catch (Exception e) {
+                RegistroOperacoes.registrarInvalida();
+                Etapas.terminar();
+                throw e;
+            } finally {
+                Etapas.concluir(marca);
             }
-            return response;
+            RegistroOperacoes.despachar(requisicao, resposta);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Motor de conexões do transporte bloqueante.
+ * Aceita sockets, aplica o controle de admissão e executa um ClientHandler por conexão admitida,
+ * seja em virtual threads ou em um pool limitado de threads de plataforma.
+ */
+public class ConnectionEngine {
+
+    public enum Modo {
+        VIRTUAL,
+        PLATAFORMA;
+
+        public static Modo of(String valor) {
+            return switch (valor.trim().toLowerCase(Locale.ROOT)) {
+                case "virtual" -> VIRTUAL;
+                case "plataforma", "platform" -> PLATAFORMA;
+                default -> throw new IllegalArgumentException("Modo de conexões desconhecido: " + valor);
+            };
+        }
+    }
+
+    private final Modo modo;
+    private final ConnectionLimiter limiter;
+    private final ExecutorService executor;
+
+    public ConnectionEngine(Modo modo, ConnectionLimiter limiter, int threadsPlataforma) {
+        this.modo = modo;
+        this.limiter = limiter;
+        this.executor = criarExecutor(modo, threadsPlataforma);
+    }
+
+    private static ExecutorService criarExecutor(Modo modo, int threadsPlataforma) {
+        if (modo == Modo.VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pix-conexao-", 0).factory());
+        }
+        // Sem fila: quem não encontra thread livre é rejeitado em vez de esperar indefinidamente
+        AtomicInteger contador = new AtomicInteger();
+        return new ThreadPoolExecutor(threadsPlataforma, threadsPlataforma, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "pix-conexao-" + contador.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Abre a porta e inicia o laço de aceitação em uma thread própria.
+     * Quando retorna, a porta já está aceitando conexões.
+     * @param porta A porta TCP a ser escutada.
+     */
+    public void start(int porta) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(porta, 1024);
+        Thread acceptThread = new Thread(() -> acceptLoop(serverSocket), "Server-Accept-Thread");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        System.out.println("Servidor iniciado e ouvindo na porta " + porta + " (modo " + modo
+                + ", máximo de " + limiter.getMaximo() + " conexões)");
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) {
+        // O socket de escuta vive enquanto o processo viver
+        while (true) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                despachar(clientSocket);
+            } catch (IOException e) {
+                System.err.println("Erro ao aceitar conexão do cliente: " + e.getMessage());
+            }
+        }
+    }
+
+    private void despachar(Socket clientSocket) {
+        if (!limiter.tentarAdmitir()) {
+            rejeitar(clientSocket);
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    new ClientHandler(clientSocket).run();
+                } finally {
+                    limiter.liberar();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            limiter.liberar();
+            limiter.registrarRejeicao();
+            rejeitar(clientSocket);
+        }
+    }
+
+    /**
+     * Responde com 'erro_servidor' e fecha o socket, sem ocupar uma thread de atendimento.
+     */
+    private static void rejeitar(Socket clientSocket) {
+        try (clientSocket) {
+            OutputStream out = clientSocket.getOutputStream();
+            out.write((ConnectionLimiter.RESPOSTA_REJEICAO + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            // O cliente já foi embora; nada a fazer
+        }
+    }
+}
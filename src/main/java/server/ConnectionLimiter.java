@@ -0,0 +1,72 @@
+package server;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static common.util.RespostaManager.criarResposta;
+
+/**
+ * Controle de admissão de conexões.
+ * Limita quantas conexões podem ser atendidas ao mesmo tempo e contabiliza as ativas e as rejeitadas.
+ */
+public class ConnectionLimiter {
+
+    // Resposta enviada (no próprio protocolo) a um cliente que não pôde ser admitido
+    public static final String RESPOSTA_REJEICAO =
+            criarResposta("erro_servidor", false, "Servidor sobrecarregado. Tente novamente mais tarde.");
+
+    private final int maximo;
+    private final Semaphore permissoes;
+    private final AtomicInteger ativas = new AtomicInteger();
+    private final AtomicLong rejeitadas = new AtomicLong();
+
+    public ConnectionLimiter(int maximo) {
+        if (maximo <= 0) {
+            throw new IllegalArgumentException("O número máximo de conexões deve ser positivo.");
+        }
+        this.maximo = maximo;
+        this.permissoes = new Semaphore(maximo);
+    }
+
+    /**
+     * Tenta reservar uma vaga para uma nova conexão, sem bloquear.
+     * @return true se a conexão foi admitida; false se o limite foi atingido (a rejeição é contabilizada).
+     */
+    public boolean tentarAdmitir() {
+        if (permissoes.tryAcquire()) {
+            ativas.incrementAndGet();
+            return true;
+        }
+        rejeitadas.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Libera a vaga de uma conexão admitida. Deve ser chamado exatamente uma vez por admissão.
+     */
+    public void liberar() {
+        ativas.decrementAndGet();
+        permissoes.release();
+    }
+
+    /**
+     * Contabiliza uma conexão recusada depois de admitida (ex: executor sem capacidade).
+     * A vaga deve ser devolvida separadamente com {@link #liberar()}.
+     */
+    public void registrarRejeicao() {
+        rejeitadas.incrementAndGet();
+    }
+
+    public int getMaximo() {
+        return maximo;
+    }
+
+    public int getAtivas() {
+        return ativas.get();
+    }
+
+    public long getRejeitadas() {
+        return rejeitadas.get();
+    }
+}
@@ -0,0 +1,126 @@
+package server;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import server.metrics.Histograma;
+
+/**
+ * Locks por conta, distribuídos em faixas (stripes) pelo hash do CPF: contas diferentes quase nunca
+ * disputam o mesmo lock, e a memória é fixa independentemente do número de contas.
+ * Operações sobre duas contas adquirem as duas faixas sempre na mesma ordem (menor índice primeiro),
+ * então duas transferências cruzadas (A->B e B->A) nunca entram em deadlock.
+ * <p>
+ * Uso: {@code try (LockManager.Trava t = locks.bloquear(cpfA, cpfB)) { ... }}
+ */
+public class LockManager {
+
+    private static final LockManager contas = new LockManager(ServerConfig.LOCK_FAIXAS);
+
+    /**
+     * @return o gerenciador compartilhado que protege o estado das contas.
+     */
+    public static LockManager contas() {
+        return contas;
+    }
+
+    /**
+     * Locks adquiridos; liberados no close().
+     */
+    public interface Trava extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ReentrantLock[] faixas;
+    private final int mascara;
+
+    private final LongAdder aquisicoes = new LongAdder();
+    private final LongAdder contendidas = new LongAdder();
+    private final Histograma esperaNanos = new Histograma();
+
+    /**
+     * @param numeroFaixas Quantidade de locks; arredondada para a próxima potência de dois.
+     */
+    public LockManager(int numeroFaixas) {
+        int n = numeroFaixas <= 1 ? 1 : Integer.highestOneBit(numeroFaixas - 1) << 1;
+        this.faixas = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            faixas[i] = new ReentrantLock();
+        }
+        this.mascara = n - 1;
+    }
+
+    /**
+     * Bloqueia uma conta.
+     */
+    public Trava bloquear(String cpf) {
+        ReentrantLock lock = faixas[indice(cpf)];
+        adquirir(lock);
+        return lock::unlock;
+    }
+
+    /**
+     * Bloqueia duas contas em ordem canônica. Se as duas caírem na mesma faixa, um único lock é usado.
+     */
+    public Trava bloquear(String cpfA, String cpfB) {
+        int a = indice(cpfA);
+        int b = indice(cpfB);
+        if (a == b) {
+            ReentrantLock lock = faixas[a];
+            adquirir(lock);
+            return lock::unlock;
+        }
+        ReentrantLock primeiro = faixas[Math.min(a, b)];
+        ReentrantLock segundo = faixas[Math.max(a, b)];
+        adquirir(primeiro);
+        try {
+            adquirir(segundo);
+        } catch (RuntimeException | Error e) {
+            primeiro.unlock();
+            throw e;
+        }
+        return () -> {
+            segundo.unlock();
+            primeiro.unlock();
+        };
+    }
+
+    private void adquirir(ReentrantLock lock) {
+        aquisicoes.increment();
+        if (lock.tryLock()) return;
+
+        // Caminho lento: outra thread está com a faixa
+        contendidas.increment();
+        long inicio = System.nanoTime();
+        lock.lock();
+        esperaNanos.registrar(System.nanoTime() - inicio);
+    }
+
+    private int indice(String cpf) {
+        int h = cpf.hashCode();
+        return (h ^ (h >>> 16)) & mascara;
+    }
+
+    public int getNumeroFaixas() {
+        return faixas.length;
+    }
+
+    public long getAquisicoes() {
+        return aquisicoes.sum();
+    }
+
+    /**
+     * @return quantas aquisições encontraram a faixa ocupada e tiveram que esperar.
+     */
+    public long getContendidas() {
+        return contendidas.sum();
+    }
+
+    /**
+     * @return distribuição do tempo (ns) de espera das aquisições contendidas.
+     */
+    public Histograma getEsperaNanos() {
+        return esperaNanos;
+    }
+}
@@ -0,0 +1,56 @@
+package server;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Monitor sem tela: guarda as últimas pix.monitor.historico mensagens de cada cliente conectado.
+ * Mensagens longas (ex: extratos) são cortadas em pix.monitor.maxCaracteres.
+ */
+class MonitorHistorico implements MonitorSink {
+
+    private final Map<String, AnelMensagens> messages = new ConcurrentHashMap<>();
+    // DateTimeFormatter é imutável e pode ser usado por várias threads ao mesmo tempo (SimpleDateFormat não)
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Override
+    public void clienteConectado(String ip) {
+        messages.putIfAbsent(ip, new AnelMensagens(ServerConfig.MONITOR_HISTORICO));
+    }
+
+    @Override
+    public void clienteDesconectado(String ip) {
+        // O cliente sai da lista da GUI, então o histórico dele também é descartado
+        messages.remove(ip);
+    }
+
+    @Override
+    public void mensagem(String ip, String direcao, String mensagem) {
+        registrar(ip, direcao, mensagem);
+    }
+
+    /**
+     * Guarda a mensagem no histórico do cliente.
+     * @return a linha guardada (com data e direção).
+     */
+    protected String registrar(String ip, String direcao, String mensagem) {
+        String entry = "[" + FORMATO_DATA.format(LocalDateTime.now()) + "] " + direcao + ": " + resumir(mensagem);
+        messages.computeIfAbsent(ip, k -> new AnelMensagens(ServerConfig.MONITOR_HISTORICO)).adicionar(entry);
+        return entry;
+    }
+
+    @Override
+    public List<String> getHistorico(String ip) {
+        AnelMensagens historico = messages.get(ip);
+        return historico == null ? List.of() : historico.getMensagens();
+    }
+
+    private static String resumir(String message) {
+        int max = ServerConfig.MONITOR_MAX_CARACTERES;
+        if (message == null || message.length() <= max) return message;
+        return message.substring(0, max) + "... (" + message.length() + " caracteres)";
+    }
+}
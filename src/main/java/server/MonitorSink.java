@@ -0,0 +1,68 @@
+package server;
+
+import java.awt.GraphicsEnvironment;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Destino dos eventos de monitoramento do servidor: clientes que conectam e desconectam e mensagens trocadas.
+ * Escolhido por pix.monitor na inicialização:
+ * <ul>
+ *     <li>"swing": janela com a lista de clientes e o console ({@link MonitorSwing}), mais o histórico;</li>
+ *     <li>"historico": só o histórico em memória de cada cliente ({@link MonitorHistorico});</li>
+ *     <li>"nenhum": descarta tudo, e cada evento custa uma chamada vazia.</li>
+ * </ul>
+ * Sem pix.monitor, o servidor usa "swing" se houver display e "nenhum" caso contrário (ex: servidor Linux sem X).
+ */
+public interface MonitorSink {
+
+    MonitorSink NENHUM = new MonitorSink() {
+        @Override
+        public void clienteConectado(String ip) {}
+
+        @Override
+        public void clienteDesconectado(String ip) {}
+
+        @Override
+        public void mensagem(String ip, String direcao, String mensagem) {}
+    };
+
+    void clienteConectado(String ip);
+
+    void clienteDesconectado(String ip);
+
+    /**
+     * @param direcao "RECEIVED" ou "SENT".
+     */
+    void mensagem(String ip, String direcao, String mensagem);
+
+    /**
+     * @return as últimas mensagens trocadas com o cliente, da mais antiga para a mais nova (vazio se não houver histórico).
+     */
+    default List<String> getHistorico(String ip) {
+        return List.of();
+    }
+
+    /**
+     * @return o tipo de monitor que {@link #criar} vai usar para o tipo pedido ("auto" vira "swing" ou "nenhum").
+     */
+    static String resolver(String tipo) {
+        String escolhido = tipo.trim().toLowerCase(Locale.ROOT);
+        if (escolhido.equals("auto")) {
+            return GraphicsEnvironment.isHeadless() ? "nenhum" : "swing";
+        }
+        return escolhido;
+    }
+
+    /**
+     * Cria o monitor do tipo pedido ("swing", "historico", "nenhum" ou "auto").
+     */
+    static MonitorSink criar(String tipo) {
+        return switch (resolver(tipo)) {
+            case "swing" -> new MonitorSwing();
+            case "historico" -> new MonitorHistorico();
+            case "nenhum" -> NENHUM;
+            default -> throw new IllegalArgumentException("Monitor desconhecido: " + tipo);
+        };
+    }
+}
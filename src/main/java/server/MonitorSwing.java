@@ -0,0 +1,179 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListModel;
+import javax.swing.JFrame;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+
+/**
+ * Monitor com janela Swing (lista de clientes + console), além do histórico por cliente do {@link MonitorHistorico}.
+ * A janela é montada na EDT quando o monitor é criado; as classes Swing só são carregadas se este monitor for usado.
+ */
+class MonitorSwing extends MonitorHistorico {
+
+    private JFrame frame;
+    private DefaultListModel<String> clientsModel;
+    private JList<String> clientsList;
+    private JTextArea consoleArea;
+
+    // Linhas esperando a próxima atualização do console
+    private final ConcurrentLinkedQueue<String> pendentes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numPendentes = new AtomicInteger();
+    // Já existe uma atualização agendada / uma atualização postada na EDT ainda não executada
+    private final AtomicBoolean agendado = new AtomicBoolean();
+    private final AtomicBoolean naEdt = new AtomicBoolean();
+    private final ScheduledExecutorService atualizador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pix-monitor-console");
+        t.setDaemon(true);
+        return t;
+    });
+
+    MonitorSwing() {
+        SwingUtilities.invokeLater(this::init);
+    }
+
+    private void init() {
+        frame = new JFrame("Servidor - Monitor");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(new Dimension(800, 480));
+        frame.setLocationRelativeTo(null);
+
+        // Tabbed pane
+        JTabbedPane tabs = new JTabbedPane();
+
+        // Clients tab
+        clientsModel = new DefaultListModel<>();
+        clientsList = new JList<>(clientsModel);
+        clientsList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        clientsList.setBackground(new Color(34,34,34));
+        clientsList.setForeground(Color.WHITE);
+        clientsList.setBorder(BorderFactory.createEmptyBorder(8,8,8,8));
+
+        JScrollPane clientsScroll = new JScrollPane(clientsList);
+        JPanel clientsPanel = new JPanel(new BorderLayout());
+        clientsPanel.add(clientsScroll, BorderLayout.CENTER);
+
+        // Console tab
+        consoleArea = new JTextArea();
+        consoleArea.setEditable(false);
+        consoleArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        consoleArea.setBackground(new Color(8,8,8));
+        consoleArea.setForeground(Color.WHITE);
+        consoleArea.setBorder(BorderFactory.createEmptyBorder(8,8,8,8));
+        JScrollPane consoleScroll = new JScrollPane(consoleArea);
+        JPanel consolePanel = new JPanel(new BorderLayout());
+        consolePanel.add(consoleScroll, BorderLayout.CENTER);
+
+        tabs.addTab("Clientes", clientsPanel);
+        tabs.addTab("Console", consolePanel);
+
+        frame.getContentPane().add(tabs, BorderLayout.CENTER);
+
+        // Dark theme
+        frame.getContentPane().setBackground(new Color(24,24,24));
+        tabs.setBackground(new Color(34,34,34));
+
+        frame.setVisible(true);
+    }
+
+    private void addClient(String ip) {
+        SwingUtilities.invokeLater(() -> {
+            if (clientsModel.contains(ip)) return;
+            clientsModel.addElement(ip);
+        });
+    }
+
+    private void removeClient(String ip) {
+        SwingUtilities.invokeLater(() -> {
+            clientsModel.removeElement(ip);
+        });
+    }
+
+    /**
+     * Enfileira a linha para o console; as linhas são escritas juntas, no máximo a cada pix.monitor.atualizacaoMs.
+     */
+    private void appendMessage(String ip, String entry) {
+        pendentes.offer(ip + " - " + entry + "\n");
+        // Mais linhas que o console mantém não adianta guardar: descarta as mais antigas
+        if (numPendentes.incrementAndGet() > ServerConfig.MONITOR_CONSOLE_LINHAS && pendentes.poll() != null) {
+            numPendentes.decrementAndGet();
+        }
+        if (agendado.compareAndSet(false, true)) {
+            atualizador.schedule(this::descarregar, ServerConfig.MONITOR_ATUALIZACAO_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void descarregar() {
+        // Se a EDT ainda não escreveu o bloco anterior, tenta de novo depois em vez de empilhar outro
+        if (naEdt.get()) {
+            atualizador.schedule(this::descarregar, ServerConfig.MONITOR_ATUALIZACAO_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        agendado.set(false);
+        StringBuilder bloco = new StringBuilder();
+        String linha;
+        while ((linha = pendentes.poll()) != null) {
+            numPendentes.decrementAndGet();
+            bloco.append(linha);
+        }
+        if (bloco.isEmpty()) return;
+        naEdt.set(true);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                escreverNoConsole(bloco.toString());
+            } finally {
+                naEdt.set(false);
+            }
+        });
+    }
+
+    private void escreverNoConsole(String bloco) {
+        // GUI não inicializada (ex: sem display)
+        if (consoleArea == null) return;
+        consoleArea.append(bloco);
+        // O texto sempre termina em \n, então a última "linha" é vazia
+        int excesso = consoleArea.getLineCount() - 1 - ServerConfig.MONITOR_CONSOLE_LINHAS;
+        if (excesso > 0) {
+            try {
+                consoleArea.getDocument().remove(0, consoleArea.getLineStartOffset(excesso));
+            } catch (BadLocationException e) {
+                System.err.println("Erro ao cortar o console do monitor: " + e.getMessage());
+            }
+        }
+        // Auto-scroll
+        consoleArea.setCaretPosition(consoleArea.getDocument().getLength());
+    }
+
+    @Override
+    public void clienteConectado(String ip) {
+        super.clienteConectado(ip);
+        addClient(ip);
+    }
+
+    @Override
+    public void clienteDesconectado(String ip) {
+        super.clienteDesconectado(ip);
+        removeClient(ip);
+    }
+
+    @Override
+    public void mensagem(String ip, String direcao, String mensagem) {
+        appendMessage(ip, registrar(ip, direcao, mensagem));
+    }
+}
@@ -0,0 +1,349 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.util.Log;
+import common.util.RespostaWriter;
+
+/**
+ * Transporte não bloqueante baseado em {@link Selector}.
+ * Uma única thread de I/O lê e escreve em todos os sockets; as requisições completas (uma por linha)
+ * são processadas por um pool pequeno de workers com a mesma lógica do {@link ClientHandler}.
+ * Conexões ociosas não ocupam thread nem buffer de leitura próprio.
+ * No máximo pix.nio.esperasSenha workers ficam esperando o pool de senhas ao mesmo tempo (login, cadastro, troca
+ * de senha); os demais logins são respondidos com "Servidor ocupado" na hora.
+ * <p>
+ * Um cliente que envia requisições sem ler as respostas não faz as filas crescerem sem limite: com
+ * pix.nio.maxPendentes requisições sem resposta enviada, ou pix.nio.maxSaidaBytes de respostas na fila, a conexão
+ * deixa de ser lida (sai do OP_READ) até as respostas serem escritas, como o socket faria no transporte bloqueante.
+ */
+public class NioTransport {
+
+    // Tamanho máximo de uma requisição; linhas maiores encerram a conexão
+    private static final int TAMANHO_MAXIMO_QUADRO = 1024 * 1024;
+
+    private final ConnectionLimiter limiter;
+    private final ExecutorService workers;
+    private final Queue<Conexao> pendentesEscrita = new ConcurrentLinkedQueue<>();
+
+    // Buffers diretos reutilizados pela thread de I/O para todas as conexões
+    private final ByteBuffer bufferLeitura = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer bufferRejeicao = ByteBuffer.allocateDirect(512);
+    // Cada worker escreve as respostas no seu próprio buffer; só a linha pronta é copiada para a conexão
+    private final ThreadLocal<RespostaWriter> respostaDoWorker = ThreadLocal.withInitial(RespostaWriter::new);
+
+    private Selector selector;
+
+    public NioTransport(ConnectionLimiter limiter, int numeroWorkers) {
+        this.limiter = limiter;
+        AtomicInteger contador = new AtomicInteger();
+        // Um worker parado esperando um hash de senha não atende nenhuma outra conexão: só parte deles pode esperar
+        Semaphore esperasSenha = new Semaphore(Math.max(1, Math.min(ServerConfig.NIO_ESPERAS_SENHA, numeroWorkers - 1)));
+        this.workers = Executors.newFixedThreadPool(numeroWorkers, r -> {
+            Thread t = new Thread(() -> {
+                VerificadorSenhas.limitarEsperas(esperasSenha);
+                r.run();
+            }, "pix-nio-worker-" + contador.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        bufferRejeicao.put((ConnectionLimiter.RESPOSTA_REJEICAO + "\n").getBytes(StandardCharsets.UTF_8)).flip();
+    }
+
+    /**
+     * Abre o canal de escuta e inicia a thread de I/O.
+     * @param porta A porta TCP a ser escutada.
+     */
+    public void start(int porta) throws IOException {
+        selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(porta), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        Thread ioThread = new Thread(() -> loop(serverChannel), "Server-NIO-Thread");
+        ioThread.setDaemon(true);
+        ioThread.start();
+        System.out.println("Servidor iniciado e ouvindo na porta " + porta + " (transporte NIO, máximo de "
+                + limiter.getMaximo() + " conexões)");
+    }
+
+    private void loop(ServerSocketChannel serverChannel) {
+        while (true) {
+            try {
+                selector.select();
+                processarEscritasPendentes();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        aceitar(serverChannel);
+                        continue;
+                    }
+
+                    Conexao conexao = (Conexao) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            ler(conexao);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            escrever(conexao);
+                        }
+                    } catch (IOException e) {
+                        fechar(conexao);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Erro no laço do transporte NIO: " + e.getMessage());
+            }
+        }
+    }
+
+    private void aceitar(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel canal;
+        while ((canal = serverChannel.accept()) != null) {
+            if (!limiter.tentarAdmitir()) {
+                // Resposta curta: cabe no buffer do kernel de um socket recém-aberto
+                try (SocketChannel rejeitado = canal) {
+                    rejeitado.write(bufferRejeicao.duplicate());
+                } catch (IOException e) {
+                    // O cliente já foi embora; nada a fazer
+                }
+                continue;
+            }
+
+            canal.configureBlocking(false);
+            String clientIp = ((InetSocketAddress) canal.getRemoteAddress()).getAddress().getHostAddress();
+            Conexao conexao = new Conexao(canal, clientIp);
+            conexao.key = canal.register(selector, SelectionKey.OP_READ, conexao);
+            Server.registerClient(clientIp);
+        }
+    }
+
+    private void ler(Conexao conexao) throws IOException {
+        bufferLeitura.clear();
+        int lidos = conexao.canal.read(bufferLeitura);
+        if (lidos < 0) {
+            fechar(conexao);
+            return;
+        }
+        bufferLeitura.flip();
+
+        if (consumir(conexao, bufferLeitura) && conexao.cheia()) {
+            atualizarInteresse(conexao, !conexao.saida.isEmpty());
+        }
+    }
+
+    /**
+     * Separa as linhas completas do buffer em requisições. Com a conexão no limite de pendentes, o resto do buffer
+     * fica retido na conexão até as respostas serem escritas.
+     * @return false se a conexão foi encerrada por uma requisição maior que o máximo.
+     */
+    private boolean consumir(Conexao conexao, ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            if (conexao.cheia()) {
+                conexao.reter(buffer);
+                return true;
+            }
+            int inicio = buffer.position();
+            int fim = indiceQuebraLinha(buffer, inicio);
+            if (!conexao.acumular(buffer, (fim < 0 ? buffer.limit() : fim) - inicio)) {
+                Log.aviso("CLIENTE", "Requisição excede o tamanho máximo, encerrando conexão: {}", conexao.clientIp);
+                fechar(conexao);
+                return false;
+            }
+            if (fim < 0) break;
+            buffer.get(); // Descarta o '\n'
+            conexao.enfileirarQuadro();
+        }
+        return true;
+    }
+
+    private static int indiceQuebraLinha(ByteBuffer buffer, int inicio) {
+        for (int i = inicio; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    private void processarEscritasPendentes() {
+        Conexao conexao;
+        while ((conexao = pendentesEscrita.poll()) != null) {
+            if (conexao.fechada) continue;
+            try {
+                escrever(conexao);
+            } catch (IOException e) {
+                fechar(conexao);
+            }
+        }
+    }
+
+    private void escrever(Conexao conexao) throws IOException {
+        ByteBuffer atual;
+        while ((atual = conexao.saida.peek()) != null) {
+            conexao.canal.write(atual);
+            if (atual.hasRemaining()) {
+                // Socket cheio: aguarda OP_WRITE para continuar
+                atualizarInteresse(conexao, true);
+                return;
+            }
+            conexao.saida.poll();
+            conexao.bytesSaida.addAndGet(-atual.limit());
+            conexao.pendentes--;
+        }
+        // Abaixo do limite de novo: primeiro as requisições que ficaram retidas, depois volta a ler o socket
+        if (conexao.retido != null && !conexao.cheia()) {
+            ByteBuffer retido = ByteBuffer.wrap(conexao.retido);
+            conexao.retido = null;
+            if (!consumir(conexao, retido)) return;
+        }
+        atualizarInteresse(conexao, false);
+    }
+
+    /**
+     * Interesse da conexão no selector: OP_WRITE enquanto houver resposta parada no socket, e OP_READ só se ela
+     * estiver abaixo dos limites e sem requisições retidas.
+     */
+    private static void atualizarInteresse(Conexao conexao, boolean escrita) {
+        int ops = escrita ? SelectionKey.OP_WRITE : 0;
+        if (conexao.retido == null && !conexao.cheia()) ops |= SelectionKey.OP_READ;
+        conexao.key.interestOps(ops);
+    }
+
+    private void fechar(Conexao conexao) {
+        if (conexao.fechada) return;
+        conexao.fechada = true;
+        conexao.key.cancel();
+        try {
+            conexao.canal.close();
+        } catch (IOException e) {
+            Log.erro("CLIENTE", "Erro ao fechar o canal de {}", conexao.clientIp, e);
+        }
+        limiter.liberar();
+        Log.info("CLIENTE", "Cliente desconectado: {}", conexao.clientIp);
+        Server.unregisterClient(conexao.clientIp);
+    }
+
+    /**
+     * Estado de uma conexão: bytes de uma linha ainda incompleta, fila de requisições a processar
+     * (em ordem, uma por vez) e fila de respostas a enviar.
+     */
+    private final class Conexao {
+        final SocketChannel canal;
+        final String clientIp;
+        SelectionKey key;
+        volatile boolean fechada;
+
+        // Acessados apenas pela thread de I/O; alocado sob demanda para não pesar em conexões ociosas
+        byte[] parcial;
+        int tamanhoParcial;
+        // Requisições recebidas cuja resposta ainda não foi toda escrita no socket
+        int pendentes;
+        // Bytes lidos do socket e ainda não separados em requisições porque a conexão estava no limite
+        byte[] retido;
+
+        // Protegidos pelo monitor da própria conexão
+        private final ArrayDeque<String> quadros = new ArrayDeque<>();
+        private boolean emProcessamento;
+
+        final Queue<ByteBuffer> saida = new ConcurrentLinkedQueue<>();
+        // Bytes das respostas em 'saida' (os workers somam, a thread de I/O subtrai)
+        final AtomicLong bytesSaida = new AtomicLong();
+
+        Conexao(SocketChannel canal, String clientIp) {
+            this.canal = canal;
+            this.clientIp = clientIp;
+        }
+
+        boolean cheia() {
+            return pendentes >= ServerConfig.NIO_MAX_PENDENTES || bytesSaida.get() >= ServerConfig.NIO_MAX_SAIDA_BYTES;
+        }
+
+        void reter(ByteBuffer origem) {
+            retido = new byte[origem.remaining()];
+            origem.get(retido);
+        }
+
+        /**
+         * Junta bytes à linha em montagem.
+         * @return false se a linha passaria do tamanho máximo de uma requisição (nada é copiado).
+         */
+        boolean acumular(ByteBuffer origem, int quantidade) {
+            if (tamanhoParcial + quantidade > TAMANHO_MAXIMO_QUADRO) return false;
+            if (parcial == null) {
+                parcial = new byte[Math.max(256, quantidade)];
+            } else if (tamanhoParcial + quantidade > parcial.length) {
+                parcial = Arrays.copyOf(parcial, Math.max(parcial.length * 2, tamanhoParcial + quantidade));
+            }
+            origem.get(parcial, tamanhoParcial, quantidade);
+            tamanhoParcial += quantidade;
+            return true;
+        }
+
+        void enfileirarQuadro() {
+            int tamanho = tamanhoParcial;
+            // Aceita também finais de linha "\r\n"
+            if (tamanho > 0 && parcial[tamanho - 1] == '\r') tamanho--;
+            String quadro = tamanho == 0 ? "" : new String(parcial, 0, tamanho, StandardCharsets.UTF_8);
+            tamanhoParcial = 0;
+            if (parcial != null && parcial.length > 4096) {
+                parcial = null; // Não retém buffers grandes após uma requisição excepcional
+            }
+            pendentes++;
+
+            synchronized (this) {
+                quadros.add(quadro);
+                if (emProcessamento) return;
+                emProcessamento = true;
+            }
+            workers.execute(this::processarQuadros);
+        }
+
+        /**
+         * Executado em um worker: processa as requisições pendentes desta conexão na ordem de chegada.
+         */
+        private void processarQuadros() {
+            while (true) {
+                String quadro;
+                synchronized (this) {
+                    quadro = quadros.poll();
+                    if (quadro == null) {
+                        emProcessamento = false;
+                        return;
+                    }
+                }
+                if (fechada) continue;
+
+                RespostaWriter resposta = respostaDoWorker.get();
+                ClientHandler.processar(clientIp, quadro, resposta);
+                ByteBuffer linha = resposta.copiarLinha();
+                bytesSaida.addAndGet(linha.limit());
+                saida.add(linha);
+                pendentesEscrita.add(this);
+                selector.wakeup();
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import common.models.Requisicao;
+import common.util.Etapas;
+import common.util.RespostaWriter;
+import common.validator.RulesEnum;
+import server.controllers.TransacaoController;
+import server.controllers.UsuarioController;
+import server.metrics.Histograma;
+
+/**
+ * Tabela de despacho das operações do protocolo: cada tipo de requisição (já validada e tipada pelo
+ * {@link common.validator.Validator}) aponta para o seu {@link Operacao}, que junta o controller e as métricas.
+ * A busca é feita uma única vez por requisição, em um mapa montado na inicialização.
+ * Uma operação nova é uma regra no RequisicaoDecoder (validação, compartilhada com o cliente) mais um registro aqui.
+ * <p>
+ * Cada operação conta chamadas, falhas e erros e guarda a distribuição da latência; com pix.metricas.etapas
+ * (padrão) guarda também quanto desse tempo foi de cada {@link Etapas.Etapa}.
+ */
+public final class RegistroOperacoes {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private RegistroOperacoes() {}
+
+    /**
+     * Função que atende uma requisição, escrevendo a resposta no writer.
+     */
+    @FunctionalInterface
+    public interface Controller<R extends Requisicao> {
+        void executar(R requisicao, RespostaWriter resposta) throws Exception;
+    }
+
+    /**
+     * Uma operação registrada: o controller que a atende e as suas métricas.
+     */
+    public static final class Operacao<R extends Requisicao> {
+        private final RulesEnum regra;
+        private final Controller<R> controller;
+
+        private final LongAdder chamadas = new LongAdder();
+        private final LongAdder falhas = new LongAdder();
+        private final LongAdder erros = new LongAdder();
+        private final Histograma latenciaNanos = new Histograma();
+        private final Histograma[] etapasNanos = new Histograma[ETAPAS.length];
+        private final Histograma outrosNanos = new Histograma();
+
+        private Operacao(RulesEnum regra, Controller<R> controller) {
+            this.regra = regra;
+            this.controller = controller;
+            for (int i = 0; i < etapasNanos.length; i++) {
+                etapasNanos[i] = new Histograma();
+            }
+        }
+
+        void executar(R requisicao, RespostaWriter resposta) throws Exception {
+            long inicio = System.nanoTime();
+            chamadas.increment();
+            try {
+                controller.executar(requisicao, resposta);
+                if (!resposta.getStatus()) falhas.increment();
+            } catch (Exception | Error e) {
+                erros.increment();
+                throw e;
+            } finally {
+                long nanos = System.nanoTime() - inicio;
+                if (ServerConfig.METRICAS_ETAPAS) {
+                    Etapas.terminar();
+                    nanos += Etapas.getNanos(Etapas.Etapa.VALIDACAO);
+                    registrarEtapas(nanos);
+                }
+                latenciaNanos.registrar(nanos);
+            }
+        }
+
+        /**
+         * Distribui o tempo da requisição recém-atendida nesta thread pelas etapas por onde ela passou;
+         * o que sobra (locks, pool de senhas, lógica do controller) vai para "outros".
+         */
+        private void registrarEtapas(long totalNanos) {
+            long medido = 0;
+            for (Etapas.Etapa etapa : ETAPAS) {
+                if (!Etapas.passouPor(etapa)) continue;
+                long nanos = Etapas.getNanos(etapa);
+                etapasNanos[etapa.ordinal()].registrar(nanos);
+                medido += nanos;
+            }
+            outrosNanos.registrar(totalNanos - medido);
+        }
+
+        public RulesEnum getRegra() {
+            return regra;
+        }
+
+        public long getChamadas() {
+            return chamadas.sum();
+        }
+
+        /**
+         * @return quantas execuções responderam com status false (token inválido, saldo insuficiente etc.).
+         */
+        public long getFalhas() {
+            return falhas.sum();
+        }
+
+        /**
+         * @return quantas execuções terminaram com exceção (respostas de falha do próprio controller não contam).
+         */
+        public long getErros() {
+            return erros.sum();
+        }
+
+        /**
+         * @return distribuição do tempo (ns) da requisição, da validação ao fim do controller (incluindo a escrita
+         * da resposta no buffer); sem pix.metricas.etapas a validação fica de fora.
+         */
+        public Histograma getLatenciaNanos() {
+            return latenciaNanos;
+        }
+
+        /**
+         * @return distribuição do tempo (ns) gasto na etapa, só nas requisições que passaram por ela.
+         */
+        public Histograma getEtapaNanos(Etapas.Etapa etapa) {
+            return etapasNanos[etapa.ordinal()];
+        }
+
+        /**
+         * @return distribuição do tempo (ns) fora das etapas medidas: espera por locks e pelo pool de senhas,
+         * lógica do controller.
+         */
+        public Histograma getOutrosNanos() {
+            return outrosNanos;
+        }
+    }
+
+    private static final Etapas.Etapa[] ETAPAS = Etapas.Etapa.values();
+    private static final LongAdder invalidas = new LongAdder();
+
+    private static final Map<Class<? extends Requisicao>, Operacao<?>> porTipo = new HashMap<>();
+    private static final Map<RulesEnum, Operacao<?>> porRegra = new EnumMap<>(RulesEnum.class);
+
+    static {
+        registrar(RulesEnum.CONECTAR, Requisicao.Conectar.class,
+                (r, resposta) -> resposta.escrever(r.operacao(), true, "Conectado com sucesso."));
+        registrar(RulesEnum.USUARIO_LOGIN, Requisicao.UsuarioLogin.class, UsuarioController::login);
+        registrar(RulesEnum.USUARIO_LOGOUT, Requisicao.UsuarioLogout.class, UsuarioController::logout);
+        registrar(RulesEnum.USUARIO_CRIAR, Requisicao.UsuarioCriar.class, UsuarioController::criarUsuario);
+        registrar(RulesEnum.USUARIO_LER, Requisicao.UsuarioLer.class, UsuarioController::lerUsuario);
+        registrar(RulesEnum.USUARIO_ATUALIZAR, Requisicao.UsuarioAtualizar.class, UsuarioController::updateUsuario);
+        registrar(RulesEnum.USUARIO_DELETAR, Requisicao.UsuarioDeletar.class, UsuarioController::deleteUsuario);
+        registrar(RulesEnum.TRANSACAO_CRIAR, Requisicao.TransacaoCriar.class, TransacaoController::criarTransacao);
+        registrar(RulesEnum.TRANSACAO_LER, Requisicao.TransacaoLer.class, TransacaoController::getTransacoes);
+        registrar(RulesEnum.DEPOSITAR, Requisicao.Depositar.class, TransacaoController::depositar);
+        registrar(RulesEnum.ERRO_SERVIDOR, Requisicao.ErroServidor.class,
+                (r, resposta) -> resposta.escrever(r.operacao(), true, "Mensagem de erro recebida."));
+    }
+
+    private static <R extends Requisicao> void registrar(RulesEnum regra, Class<R> tipo, Controller<R> controller) {
+        Operacao<R> operacao = new Operacao<>(regra, controller);
+        porTipo.put(tipo, operacao);
+        porRegra.put(regra, operacao);
+    }
+
+    /**
+     * Encaminha a requisição para o controller da sua operação.
+     * @throws IllegalArgumentException se não houver operação registrada para o tipo da requisição.
+     */
+    @SuppressWarnings("unchecked")
+    public static void despachar(Requisicao requisicao, RespostaWriter resposta) throws Exception {
+        Operacao<Requisicao> operacao = (Operacao<Requisicao>) porTipo.get(requisicao.getClass());
+        if (operacao == null) {
+            invalidas.increment();
+            throw new IllegalArgumentException("Operação do cliente desconhecida ou não suportada: " + requisicao.operacao());
+        }
+        operacao.executar(requisicao, resposta);
+    }
+
+    /**
+     * @return a operação registrada para a regra, ou null.
+     */
+    public static Operacao<?> getOperacao(RulesEnum regra) {
+        return porRegra.get(regra);
+    }
+
+    /**
+     * @return as operações registradas, na ordem do {@link RulesEnum}.
+     */
+    public static Collection<Operacao<?>> getOperacoes() {
+        return Collections.unmodifiableCollection(porRegra.values());
+    }
+
+    /**
+     * Conta uma requisição rejeitada antes de chegar a uma operação (JSON ou campos inválidos).
+     */
+    static void registrarInvalida() {
+        invalidas.increment();
+    }
+
+    /**
+     * @return requisições que não chegaram a nenhuma operação (inválidas ou de operação desconhecida).
+     */
+    public static long getInvalidas() {
+        return invalidas.sum();
+    }
+
+    /**
+     * @return uma tabela com as métricas das operações que já foram chamadas, em microssegundos, para o log.
+     */
+    public static String resumo() {
+        StringBuilder sb = new StringBuilder("Operações (latências em µs; p50/p99/p99.9/máx):");
+        for (Operacao<?> operacao : porRegra.values()) {
+            Histograma latencia = operacao.getLatenciaNanos();
+            if (latencia.getContagem() == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%n  %-18s chamadas=%d falhas=%d erros=%d total=%s",
+                    operacao.getRegra().getValue(), operacao.getChamadas(), operacao.getFalhas(),
+                    operacao.getErros(), percentis(latencia)));
+            if (!ServerConfig.METRICAS_ETAPAS) continue;
+            for (Etapas.Etapa etapa : ETAPAS) {
+                Histograma h = operacao.getEtapaNanos(etapa);
+                if (h.getContagem() > 0) sb.append(' ').append(etapa.name().toLowerCase(Locale.ROOT)).append('=').append(percentis(h));
+            }
+            sb.append(" outros=").append(percentis(operacao.getOutrosNanos()));
+        }
+        sb.append(String.format(Locale.ROOT, "%n  invalidas=%d", invalidas.sum()));
+        return sb.toString();
+    }
+
+    private static String percentis(Histograma h) {
+        return String.format(Locale.ROOT, "%d/%d/%d/%d", h.percentil(50) / 1000, h.percentil(99) / 1000,
+                h.percentil(99.9) / 1000, h.getMaximo() / 1000);
+    }
+}
@@ -0,0 +1,90 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import common.util.Log;
+
+/**
+ * Hash das senhas guardadas na coluna usuarios.senha, com PBKDF2-HMAC-SHA512 e salt aleatório.
+ * O valor gravado é "pbkdf2-sha512$iteracoes$salt$hash" (Base64 sem padding), então cada linha carrega o
+ * próprio custo e o custo pode subir (pix.senha.iteracoes) sem invalidar as senhas já gravadas.
+ * Linhas antigas, com a senha em texto puro, continuam sendo aceitas até o próximo login, que as regrava.
+ */
+public final class SenhaHasher {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private SenhaHasher() {}
+
+    private static final String PREFIXO = "pbkdf2-sha512$";
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA512";
+    private static final int BYTES_SALT = 16;
+    private static final int BITS_HASH = 512;
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+
+    /**
+     * Gera o valor a gravar para uma senha nova, com o custo atual. É lento de propósito.
+     */
+    public static String gerar(String senha) {
+        byte[] salt = new byte[BYTES_SALT];
+        random.nextBytes(salt);
+        int iteracoes = ServerConfig.SENHA_ITERACOES;
+        return PREFIXO + iteracoes + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derivar(senha, salt, iteracoes));
+    }
+
+    /**
+     * Confere a senha informada com o valor gravado (hash ou, em linhas antigas, texto puro).
+     * A comparação leva o mesmo tempo qualquer que seja o ponto em que os bytes diferem.
+     */
+    public static boolean verificar(String senha, String armazenado) {
+        if (!armazenado.startsWith(PREFIXO)) {
+            return MessageDigest.isEqual(senha.getBytes(StandardCharsets.UTF_8), armazenado.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] partes = armazenado.split("\\$");
+        if (partes.length != 4) return false;
+        try {
+            int iteracoes = Integer.parseInt(partes[1]);
+            byte[] salt = Base64.getDecoder().decode(partes[2]);
+            byte[] esperado = Base64.getDecoder().decode(partes[3]);
+            return MessageDigest.isEqual(derivar(senha, salt, iteracoes), esperado);
+        } catch (IllegalArgumentException e) {
+            Log.aviso("SENHA", "Valor de senha gravado em formato inválido.");
+            return false;
+        }
+    }
+
+    /**
+     * @return true se o valor gravado é texto puro ou foi gerado com um custo menor que o atual.
+     */
+    public static boolean precisaAtualizar(String armazenado) {
+        if (!armazenado.startsWith(PREFIXO)) return true;
+        int fim = armazenado.indexOf('$', PREFIXO.length());
+        try {
+            return fim < 0 || Integer.parseInt(armazenado, PREFIXO.length(), fim, 10) < ServerConfig.SENHA_ITERACOES;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] derivar(String senha, byte[] salt, int iteracoes) {
+        PBEKeySpec spec = new PBEKeySpec(senha.toCharArray(), salt, iteracoes, BITS_HASH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // PBKDF2WithHmacSHA512 faz parte de toda JDK
+            throw new IllegalStateException("Algoritmo " + ALGORITMO + " indisponível.", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -1,167 +1,134 @@
 package server;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import javax.swing.BorderFactory;
-import javax.swing.DefaultListModel;
-import javax.swing.JFrame;
-import javax.swing.JList;
-import javax.swing.JPanel;
-import javax.swing.JScrollPane;
-import javax.swing.JTabbedPane;
-import javax.swing.JTextArea;
-import javax.swing.SwingUtilities;
-import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Font;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import common.util.Log;
 import server.repository.Database;
 
 /**
- * Servidor com GUI para monitoramento simples (lista de clientes + console por IP).
+ * Servidor PIX. O monitoramento (lista de clientes + console por IP) é um {@link MonitorSink} plugável:
+ * a janela Swing só é criada quando há display ou pix.monitor=swing; sem ela o servidor roda headless.
  */
 public class Server {
 
-    private static final int PORTA = 24444;
-
-    private static ServerGui gui = new ServerGui();
-    private static final Map<String, List<String>> messages = new ConcurrentHashMap<>();
-    private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static volatile MonitorSink monitor = MonitorSink.NENHUM;
+    private static ConnectionLimiter limiter;
+    private static volatile long tempoInicializacaoMs;
 
     public static void main(String[] args) {
+        long inicio = System.nanoTime();
+
         // Inicializa DB
-        Database.initialize();
+        try {
+            Database.initialize();
+        } catch (IllegalStateException e) {
+            System.err.println("Erro fatal ao iniciar o servidor: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
 
-        // Start GUI
-        SwingUtilities.invokeLater(() -> gui.init());
+        // Monitor (GUI só se houver display ou for pedida)
+        String tipoMonitor = MonitorSink.resolver(ServerConfig.MONITOR);
+        monitor = MonitorSink.criar(tipoMonitor);
+
+        try {
+            if ("nio".equalsIgnoreCase(ServerConfig.TRANSPORTE)) {
+                limiter = new ConnectionLimiter(ServerConfig.MAX_CONEXOES);
+                new NioTransport(limiter, ServerConfig.WORKERS_NIO).start(ServerConfig.PORTA);
+            } else {
+                // Start server accept loop in background thread
+                ConnectionEngine.Modo modo = ConnectionEngine.Modo.of(ServerConfig.MODO_CONEXOES);
+                int maxConexoes = modo == ConnectionEngine.Modo.PLATAFORMA
+                        ? Math.min(ServerConfig.MAX_CONEXOES, ServerConfig.THREADS_PLATAFORMA)
+                        : ServerConfig.MAX_CONEXOES;
+                limiter = new ConnectionLimiter(maxConexoes);
+                new ConnectionEngine(modo, limiter, ServerConfig.THREADS_PLATAFORMA).start(ServerConfig.PORTA);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro fatal ao iniciar o servidor na porta " + ServerConfig.PORTA + ": " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
 
-        // Start server accept loop in background thread
-        Thread serverThread = new Thread(() -> {
-            try (ServerSocket serverSocket = new ServerSocket(PORTA)) {
-                System.out.println("Servidor iniciado e ouvindo na porta " + PORTA);
+        // Do início do main até a porta aceitar conexões; o tempo desde o início do processo inclui a JVM
+        tempoInicializacaoMs = (System.nanoTime() - inicio) / 1_000_000;
+        String desdeProcesso = ProcessHandle.current().info().startInstant()
+                .map(t -> ", " + (System.currentTimeMillis() - t.toEpochMilli()) + " ms desde o início do processo")
+                .orElse("");
+        Log.info("SERVER", "Pronto em {} ms{} (monitor: {}).", tempoInicializacaoMs, desdeProcesso, tipoMonitor);
+
+        if (ServerConfig.ADMIN_PORTA > 0) {
+            try {
+                ServidorAdmin.iniciar(ServerConfig.ADMIN_HOST, ServerConfig.ADMIN_PORTA);
+                Log.info("SERVER", "Métricas em http://{}:{}/metrics", ServerConfig.ADMIN_HOST, ServerConfig.ADMIN_PORTA);
+            } catch (IOException e) {
+                // Sem a porta de administração o servidor continua atendendo normalmente
+                Log.erro("ADMIN", "Erro ao abrir a porta de administração {}: {}", ServerConfig.ADMIN_PORTA,
+                        e.getMessage(), e);
+            }
+        }
 
-                while (true) {
-                    try {
-                        System.out.println("Aguardando conexão de um novo cliente...");
-                        Socket clientSocket = serverSocket.accept();
-                        String clientIp = clientSocket.getInetAddress().getHostAddress();
-                        System.out.println("Cliente conectado: " + clientIp);
+        if (ServerConfig.METRICAS_RELATORIO_MS > 0) {
+            ScheduledExecutorService relatorio = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "pix-metricas-relatorio");
+                t.setDaemon(true);
+                return t;
+            });
+            relatorio.scheduleAtFixedRate(() -> Log.info("METRICAS", RegistroOperacoes.resumo()),
+                    ServerConfig.METRICAS_RELATORIO_MS, ServerConfig.METRICAS_RELATORIO_MS, TimeUnit.MILLISECONDS);
+        }
+    }
 
-                        // Start client handler thread
-                        ClientHandler clientHandler = new ClientHandler(clientSocket);
-                        Thread clientThread = new Thread(clientHandler);
-                        clientThread.start();
+    /**
+     * @return o tempo (ms) do início do main até a porta aceitar conexões, ou 0 se ainda não terminou.
+     */
+    public static long getTempoInicializacaoMs() {
+        return tempoInicializacaoMs;
+    }
 
-                    } catch (IOException e) {
-                        System.err.println("Erro ao aceitar conexão do cliente: " + e.getMessage());
-                    }
-                }
+    /**
+     * @return o número de conexões sendo atendidas neste momento.
+     */
+    public static int getConexoesAtivas() {
+        return limiter == null ? 0 : limiter.getAtivas();
+    }
 
-            } catch (IOException e) {
-                System.err.println("Erro fatal ao iniciar o servidor na porta " + PORTA + ": " + e.getMessage());
-                e.printStackTrace();
-            }
-        }, "Server-Accept-Thread");
-        serverThread.setDaemon(true);
-        serverThread.start();
+    /**
+     * @return o total de conexões rejeitadas por falta de capacidade desde o início do servidor.
+     */
+    public static long getConexoesRejeitadas() {
+        return limiter == null ? 0 : limiter.getRejeitadas();
     }
 
     // Métodos usados por ClientHandler
     public static void registerClient(String ip) {
-        messages.putIfAbsent(ip, Collections.synchronizedList(new ArrayList<>()));
-        gui.addClient(ip);
+        monitor.clienteConectado(ip);
     }
 
     public static void unregisterClient(String ip) {
-        gui.removeClient(ip);
+        monitor.clienteDesconectado(ip);
     }
 
     public static void logMessage(String ip, String direction, String message) {
-        String entry = String.format("[%s] %s: %s", sdf.format(new Date()), direction, message);
-        messages.computeIfAbsent(ip, k -> Collections.synchronizedList(new ArrayList<>())).add(entry);
-        gui.appendMessage(ip, entry);
+        monitor.mensagem(ip, direction, message);
     }
 
-    // Classe implementando a GUI
-    private static class ServerGui {
-        private JFrame frame;
-        private DefaultListModel<String> clientsModel;
-        private JList<String> clientsList;
-        private JTextArea consoleArea;
-
-        void init() {
-            frame = new JFrame("Servidor - Monitor");
-            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-            frame.setSize(new Dimension(800, 480));
-            frame.setLocationRelativeTo(null);
-
-            // Tabbed pane
-            JTabbedPane tabs = new JTabbedPane();
-
-            // Clients tab
-            clientsModel = new DefaultListModel<>();
-            clientsList = new JList<>(clientsModel);
-            clientsList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
-            clientsList.setBackground(new Color(34,34,34));
-            clientsList.setForeground(Color.WHITE);
-            clientsList.setBorder(BorderFactory.createEmptyBorder(8,8,8,8));
-
-            JScrollPane clientsScroll = new JScrollPane(clientsList);
-            JPanel clientsPanel = new JPanel(new BorderLayout());
-            clientsPanel.add(clientsScroll, BorderLayout.CENTER);
-
-            // Console tab
-            consoleArea = new JTextArea();
-            consoleArea.setEditable(false);
-            consoleArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
-            consoleArea.setBackground(new Color(8,8,8));
-            consoleArea.setForeground(Color.WHITE);
-            consoleArea.setBorder(BorderFactory.createEmptyBorder(8,8,8,8));
-            JScrollPane consoleScroll = new JScrollPane(consoleArea);
-            JPanel consolePanel = new JPanel(new BorderLayout());
-            consolePanel.add(consoleScroll, BorderLayout.CENTER);
-
-            tabs.addTab("Clientes", clientsPanel);
-            tabs.addTab("Console", consolePanel);
-
-            frame.getContentPane().add(tabs, BorderLayout.CENTER);
-
-            // Dark theme
-            frame.getContentPane().setBackground(new Color(24,24,24));
-            tabs.setBackground(new Color(34,34,34));
-
-            frame.setVisible(true);
-        }
-
-        void addClient(String ip) {
-            SwingUtilities.invokeLater(() -> {
-                if (clientsModel.contains(ip)) return;
-                clientsModel.addElement(ip);
-            });
-        }
-
-        void removeClient(String ip) {
-            SwingUtilities.invokeLater(() -> {
-                clientsModel.removeElement(ip);
-            });
-        }
+    /**
+     * @return false se as mensagens são descartadas (pix.monitor=nenhum), para não montá-las à toa.
+     */
+    public static boolean isMonitorAtivo() {
+        return monitor != MonitorSink.NENHUM;
+    }
 
-        void appendMessage(String ip, String entry) {
-            SwingUtilities.invokeLater(() -> {
-                String current = consoleArea.getText();
-                String line = String.format("%s - %s\n", ip, entry);
-                consoleArea.append(line);
-                // Auto-scroll
-                consoleArea.setCaretPosition(consoleArea.getDocument().getLength());
-            });
-        }
+    /**
+     * @return as últimas mensagens trocadas com o cliente, da mais antiga para a mais nova
+     * (vazio com pix.monitor=nenhum).
+     */
+    public static List<String> getHistorico(String ip) {
+        return monitor.getHistorico(ip);
     }
-}
\ No newline at end of file
+}
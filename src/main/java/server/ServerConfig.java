@@ -0,0 +1,114 @@
+package server;
+
+/**
+ * Configurações do servidor, lidas das propriedades de sistema (ex: -Dpix.conexoes.max=5000).
+ * Os valores padrão reproduzem o comportamento esperado em produção.
+ */
+public final class ServerConfig {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private ServerConfig() {}
+
+    // Porta TCP em que o protocolo PIX é servido
+    public static final int PORTA = Integer.getInteger("pix.porta", 24444);
+
+    // Transporte: "bloqueante" (um ClientHandler por conexão) ou "nio" (Selector com pool de workers)
+    public static final String TRANSPORTE = System.getProperty("pix.transporte", "bloqueante");
+
+    // Número de workers que processam requisições no transporte NIO
+    public static final int WORKERS_NIO = Integer.getInteger("pix.nio.workers",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    // Workers NIO que podem ficar esperando o pool de senhas ao mesmo tempo (sempre sobra ao menos um para o resto)
+    public static final int NIO_ESPERAS_SENHA = Integer.getInteger("pix.nio.esperasSenha", Math.max(1, WORKERS_NIO / 2));
+
+    // Por conexão NIO: requisições recebidas cuja resposta ainda não saiu, e bytes de respostas na fila de envio.
+    // Acima de qualquer um dos dois a conexão para de ser lida até o cliente consumir as respostas
+    public static final int NIO_MAX_PENDENTES = Integer.getInteger("pix.nio.maxPendentes", 64);
+    public static final int NIO_MAX_SAIDA_BYTES = Integer.getInteger("pix.nio.maxSaidaBytes", 1024 * 1024);
+
+    // Motor de conexões do transporte bloqueante: "virtual" (uma virtual thread por conexão) ou "plataforma" (pool fixo de threads)
+    public static final String MODO_CONEXOES = System.getProperty("pix.conexoes.modo", "virtual");
+
+    // Número máximo de conexões atendidas simultaneamente; as excedentes são rejeitadas
+    public static final int MAX_CONEXOES = Integer.getInteger("pix.conexoes.max", 10_000);
+
+    // Tamanho do pool no modo "plataforma" (também limita as conexões simultâneas nesse modo)
+    public static final int THREADS_PLATAFORMA = Integer.getInteger("pix.conexoes.threads", 256);
+
+    // Pool de conexões do SQLite
+    public static final int DB_POOL_MIN = Integer.getInteger("pix.db.pool.min", 2);
+    public static final int DB_POOL_MAX = Integer.getInteger("pix.db.pool.max", 16);
+    public static final long DB_POOL_TIMEOUT_MS = Long.getLong("pix.db.pool.timeoutMs", 5_000);
+    public static final long DB_POOL_OCIOSA_MS = Long.getLong("pix.db.pool.ociosaMs", 60_000);
+    // Empréstimos mais longos que isso são reportados com a pilha de origem; 0 desativa
+    public static final long DB_POOL_VAZAMENTO_MS = Long.getLong("pix.db.pool.vazamentoMs", 0);
+
+    // PRAGMA synchronous das conexões: FULL faz fsync a cada commit, então uma resposta de sucesso só sai com a
+    // movimentação no disco. NORMAL (só para testes de vazão) não faz fsync no commit em WAL: uma queda de
+    // energia pode perder transações já confirmadas aos clientes
+    public static final String DB_SYNCHRONOUS = System.getProperty("pix.db.synchronous", "FULL");
+
+    // Quanto tempo o SQLite espera por um lock antes de devolver SQLITE_BUSY
+    public static final int DB_BUSY_TIMEOUT_MS = Integer.getInteger("pix.db.busyTimeoutMs", 5_000);
+
+    // Group commit: transferências e depósitos são gravados em lotes por uma única thread escritora.
+    // Com false, cada requisição faz seu próprio commit.
+    public static final boolean DB_GROUP_COMMIT = Boolean.parseBoolean(System.getProperty("pix.db.groupCommit", "true"));
+    // Tempo máximo que uma operação espera por outras antes do commit do lote
+    public static final long DB_GROUP_COMMIT_JANELA_MS = Long.getLong("pix.db.groupCommit.janelaMs", 2);
+    public static final int DB_GROUP_COMMIT_MAX_LOTE = Integer.getInteger("pix.db.groupCommit.maxLote", 256);
+    public static final int DB_GROUP_COMMIT_FILA = Integer.getInteger("pix.db.groupCommit.fila", 10_000);
+
+    // Cache de contas por CPF na frente do banco (LRU); 0 desativa
+    public static final int CACHE_USUARIOS_MAX = Integer.getInteger("pix.cache.usuarios.max", 10_000);
+
+    // Número de locks (faixas) que protegem o estado das contas; contas são distribuídas pelo hash do CPF
+    public static final int LOCK_FAIXAS = Integer.getInteger("pix.locks.faixas", 1024);
+
+    // Onde moram os saldos: "sqlite" (cada movimentação é uma transação no banco) ou "memoria"
+    // (saldos em memória, journal mapeado em arquivo e gravação assíncrona no SQLite)
+    public static final String LEDGER = System.getProperty("pix.ledger", "sqlite");
+    public static final String LEDGER_JOURNAL = System.getProperty("pix.ledger.journal", "ledger.journal");
+    // Movimentações que cabem no journal sem ainda estarem no SQLite; com ele cheio, as novas esperam o flusher
+    public static final int LEDGER_JOURNAL_REGISTROS = Integer.getInteger("pix.ledger.journal.registros", 1 << 20);
+    // Intervalo entre as gravações do journal no SQLite, e o máximo de movimentações por transação do banco
+    public static final long LEDGER_FLUSH_MS = Long.getLong("pix.ledger.flushMs", 50);
+    public static final int LEDGER_FLUSH_MAX_LOTE = Integer.getInteger("pix.ledger.flush.maxLote", 10_000);
+
+    // Sessões gravadas no SQLite (write-behind) para sobreviver a reinícios; com false ficam só em memória
+    public static final boolean SESSOES_PERSISTENTES = Boolean.parseBoolean(System.getProperty("pix.sessao.persistir", "false"));
+    // Intervalo entre as gravações das sessões alteradas
+    public static final long SESSOES_FLUSH_MS = Long.getLong("pix.sessao.flushMs", 200);
+
+    // Custo do PBKDF2-HMAC-SHA512 das senhas; senhas gravadas com custo menor são regravadas no próximo login
+    public static final int SENHA_ITERACOES = Integer.getInteger("pix.senha.iteracoes", 210_000);
+    // Pool que calcula os hashes de senha, separado das threads de conexão; com a fila cheia a operação é recusada
+    public static final int SENHA_THREADS = Integer.getInteger("pix.senha.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    public static final int SENHA_FILA = Integer.getInteger("pix.senha.fila", 64);
+    // Por quanto tempo um login bem-sucedido dispensa o PBKDF2 no próximo login do mesmo CPF; 0 desativa
+    public static final long SENHA_CACHE_TTL_MS = Long.getLong("pix.senha.cache.ttlMs", 5 * 60_000);
+    public static final int SENHA_CACHE_MAX = Integer.getInteger("pix.senha.cache.max", 10_000);
+
+    // Monitor de clientes e mensagens: "swing" (janela), "historico" (só memória), "nenhum" ou "auto"
+    // (janela se houver display, senão nenhum)
+    public static final String MONITOR = System.getProperty("pix.monitor", "auto");
+    // Monitor: mensagens guardadas por cliente, linhas mantidas no console e tamanho máximo de cada mensagem exibida
+    public static final int MONITOR_HISTORICO = Integer.getInteger("pix.monitor.historico", 200);
+    public static final int MONITOR_CONSOLE_LINHAS = Integer.getInteger("pix.monitor.console.linhas", 2_000);
+    public static final int MONITOR_MAX_CARACTERES = Integer.getInteger("pix.monitor.maxCaracteres", 1_000);
+    // Intervalo mínimo entre as atualizações do console (as linhas novas são juntadas em uma só atualização)
+    public static final long MONITOR_ATUALIZACAO_MS = Long.getLong("pix.monitor.atualizacaoMs", 100);
+
+    // Métricas por operação: tempo de cada etapa da requisição (validação, sessão, repositório, serialização)
+    public static final boolean METRICAS_ETAPAS = Boolean.parseBoolean(System.getProperty("pix.metricas.etapas", "true"));
+    // Intervalo entre os resumos das métricas por operação no log; 0 desativa
+    public static final long METRICAS_RELATORIO_MS = Long.getLong("pix.metricas.relatorioMs", 0);
+
+    // Porta de administração (HTTP, GET /metrics no formato texto do Prometheus), separada da porta do protocolo;
+    // 0 desativa. Por padrão só aceita conexões da própria máquina
+    public static final int ADMIN_PORTA = Integer.getInteger("pix.admin.porta", 24445);
+    public static final String ADMIN_HOST = System.getProperty("pix.admin.host", "127.0.0.1");
+}
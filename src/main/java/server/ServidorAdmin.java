@@ -0,0 +1,240 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import common.util.Etapas;
+import common.util.Log;
+import common.util.SessaoManager;
+import server.metrics.Histograma;
+import server.metrics.TextoMetricas;
+import server.repository.CacheUsuarios;
+import server.repository.ConnectionPool;
+import server.repository.Database;
+import server.repository.GroupCommitWriter;
+import server.repository.MemoriaLedger;
+import server.repository.SqliteSessaoStore;
+import server.repository.UsuarioRepository;
+
+/**
+ * Porta de administração (pix.admin.host:pix.admin.porta, separada da porta do protocolo) com o HTTP
+ * embutido da JDK. GET /metrics devolve as métricas do servidor no formato texto do Prometheus
+ * ({@link TextoMetricas}), montadas na hora a partir dos contadores e histogramas já existentes.
+ * <p>
+ * As coletas rodam em uma thread própria ("pix-admin"): um coletor lento ou muitas coletas seguidas
+ * nunca ocupam as threads que atendem os clientes. Por padrão só escuta no loopback.
+ */
+public final class ServidorAdmin {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private ServidorAdmin() {}
+
+    private static final String TIPO_CONTEUDO = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double NANOS_POR_SEGUNDO = 1e9;
+
+    /**
+     * Abre a porta de administração.
+     * @throws IOException se a porta não puder ser aberta.
+     */
+    public static HttpServer iniciar(String host, int porta) throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(host, porta), 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "pix-admin");
+            t.setDaemon(true);
+            return t;
+        });
+        servidor.setExecutor(executor);
+        servidor.createContext("/metrics", ServidorAdmin::metricas);
+        servidor.start();
+        return servidor;
+    }
+
+    private static void metricas(HttpExchange troca) throws IOException {
+        try (troca) {
+            String metodo = troca.getRequestMethod();
+            if (!"GET".equals(metodo) && !"HEAD".equals(metodo)) {
+                troca.getResponseHeaders().set("Allow", "GET, HEAD");
+                troca.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] corpo;
+            try {
+                corpo = coletar().getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                Log.erro("ADMIN", "Erro ao coletar as métricas: {}", e.getMessage(), e);
+                troca.sendResponseHeaders(500, -1);
+                return;
+            }
+            troca.getResponseHeaders().set("Content-Type", TIPO_CONTEUDO);
+            if ("HEAD".equals(metodo)) {
+                troca.sendResponseHeaders(200, -1);
+                return;
+            }
+            troca.sendResponseHeaders(200, corpo.length);
+            try (OutputStream out = troca.getResponseBody()) {
+                out.write(corpo);
+            }
+        }
+    }
+
+    /**
+     * @return todas as métricas, no formato texto do Prometheus.
+     */
+    static String coletar() {
+        TextoMetricas t = new TextoMetricas();
+        coletarServidor(t);
+        coletarOperacoes(t);
+        coletarSessoes(t);
+        coletarBanco(t);
+        coletarContas(t);
+        coletarSenhas(t);
+        t.contador("pix_log_descartados_total", "Mensagens de log perdidas com a fila do log cheia.", Log.getDescartados());
+        t.gauge("pix_log_pendentes", "Mensagens de log aguardando escrita.", Log.getPendentes());
+        return t.toString();
+    }
+
+    private static void coletarServidor(TextoMetricas t) {
+        t.gauge("pix_inicializacao_segundos", "Tempo do início do main até a porta aceitar conexões.",
+                Server.getTempoInicializacaoMs() / 1000.0);
+        t.gauge("pix_conexoes_ativas", "Conexões sendo atendidas.", Server.getConexoesAtivas());
+        t.contador("pix_conexoes_rejeitadas_total", "Conexões rejeitadas por falta de capacidade.",
+                Server.getConexoesRejeitadas());
+    }
+
+    private static void coletarOperacoes(TextoMetricas t) {
+        // Uma passada pelas operações por família: as linhas de cada família precisam sair juntas
+        for (RegistroOperacoes.Operacao<?> op : RegistroOperacoes.getOperacoes()) {
+            t.contador("pix_operacao_chamadas_total", "Requisições atendidas por operação.", rotulo(op), op.getChamadas());
+        }
+        for (RegistroOperacoes.Operacao<?> op : RegistroOperacoes.getOperacoes()) {
+            t.contador("pix_operacao_falhas_total", "Respostas com status false por operação.", rotulo(op), op.getFalhas());
+        }
+        for (RegistroOperacoes.Operacao<?> op : RegistroOperacoes.getOperacoes()) {
+            t.contador("pix_operacao_erros_total", "Requisições que terminaram com exceção por operação.",
+                    rotulo(op), op.getErros());
+        }
+        t.contador("pix_requisicoes_invalidas_total", "Requisições que não chegaram a nenhuma operação.",
+                RegistroOperacoes.getInvalidas());
+
+        for (RegistroOperacoes.Operacao<?> op : RegistroOperacoes.getOperacoes()) {
+            t.resumo("pix_operacao_latencia_segundos", "Latência da requisição, da validação ao fim do controller.",
+                    rotulo(op), op.getLatenciaNanos(), NANOS_POR_SEGUNDO);
+        }
+        for (RegistroOperacoes.Operacao<?> op : RegistroOperacoes.getOperacoes()) {
+            t.maximo("pix_operacao_latencia_segundos", rotulo(op), op.getLatenciaNanos(), NANOS_POR_SEGUNDO);
+        }
+        if (!ServerConfig.METRICAS_ETAPAS) return;
+
+        for (RegistroOperacoes.Operacao<?> op : RegistroOperacoes.getOperacoes()) {
+            for (Etapas.Etapa etapa : Etapas.Etapa.values()) {
+                t.resumo("pix_operacao_etapa_segundos", "Tempo de cada etapa da requisição, por operação.",
+                        rotulo(op, etapa.name()), op.getEtapaNanos(etapa), NANOS_POR_SEGUNDO);
+            }
+            t.resumo("pix_operacao_etapa_segundos", "Tempo de cada etapa da requisição, por operação.",
+                    rotulo(op, "OUTROS"), op.getOutrosNanos(), NANOS_POR_SEGUNDO);
+        }
+    }
+
+    private static void coletarSessoes(TextoMetricas t) {
+        t.gauge("pix_sessoes_ativas", "Sessões em memória.", SessaoManager.getSessoesAtivas());
+        t.contador("pix_sessoes_criadas_total", "Sessões criadas (logins).", SessaoManager.getCriadas());
+        t.contador("pix_sessoes_encerradas_total", "Sessões encerradas por logout.", SessaoManager.getEncerradas());
+        t.contador("pix_sessoes_expiradas_total", "Sessões removidas por expiração.", SessaoManager.getExpiradas());
+        t.contador("pix_sessoes_descartadas_limite_total", "Sessões descartadas pelo limite de sessões por CPF.",
+                SessaoManager.getDescartadasPorLimite());
+
+        SqliteSessaoStore store = Database.getSessaoStore();
+        if (store == null) return;
+        t.gauge("pix_sessoes_carregadas", "Sessões restauradas do banco na inicialização.", SessaoManager.getCarregadas());
+        t.gauge("pix_sessoes_gravacao_pendentes", "Sessões com mudanças ainda não gravadas.", store.getPendentes());
+        lote(t, "pix_sessoes_gravacao_lote", "Sessões gravadas por transação.", store.getTamanhoLote());
+    }
+
+    private static void coletarBanco(TextoMetricas t) {
+        ConnectionPool.Estatisticas pool = Database.getPoolStats();
+        t.gauge("pix_db_pool_ativas", "Conexões emprestadas.", pool.ativas());
+        t.gauge("pix_db_pool_ociosas", "Conexões ociosas no pool.", pool.ociosas());
+        t.gauge("pix_db_pool_total", "Conexões físicas abertas.", pool.total());
+        t.contador("pix_db_pool_emprestimos_total", "Conexões emprestadas desde o início.", pool.emprestimos());
+        t.contador("pix_db_pool_esperas_total", "Empréstimos que esperaram por uma conexão livre.", pool.esperas());
+        t.contador("pix_db_pool_espera_segundos_total", "Tempo total de espera por conexão.",
+                pool.tempoEsperaTotalNanos() / NANOS_POR_SEGUNDO);
+        t.gauge("pix_db_pool_espera_maxima_segundos", "Maior espera por conexão.", pool.tempoEsperaMaximoNanos() / NANOS_POR_SEGUNDO);
+        t.contador("pix_db_pool_timeouts_total", "Empréstimos que desistiram de esperar.", pool.timeouts());
+        t.contador("pix_db_pool_vazamentos_total", "Conexões emprestadas por tempo demais (possível vazamento).",
+                pool.vazamentos());
+
+        GroupCommitWriter groupCommit = Database.getGroupCommit();
+        if (groupCommit != null) {
+            t.gauge("pix_db_group_commit_fila", "Operações aguardando o próximo lote.", groupCommit.getTamanhoFila());
+            lote(t, "pix_db_group_commit_lote", "Operações por commit.", groupCommit.getTamanhoLote());
+            tempo(t, "pix_db_group_commit_duracao_segundos", "Execução + commit de cada lote.",
+                    groupCommit.getDuracaoLoteNanos());
+            tempo(t, "pix_db_group_commit_espera_segundos", "Da submissão da operação até o seu lote estar gravado.",
+                    groupCommit.getEsperaNanos());
+        }
+
+        MemoriaLedger memoria = Database.getMemoriaLedger();
+        if (memoria != null) {
+            t.gauge("pix_ledger_pendentes", "Movimentações no journal ainda não gravadas no SQLite.", memoria.getPendentes());
+            t.gauge("pix_ledger_journal_capacidade", "Movimentações que cabem no journal.", memoria.getCapacidadeJournal());
+            t.gauge("pix_ledger_contas", "Contas com saldo em memória.", memoria.getContas());
+            lote(t, "pix_ledger_flush_lote", "Movimentações por gravação no SQLite.", memoria.getTamanhoLote());
+            tempo(t, "pix_ledger_flush_duracao_segundos", "Duração de cada gravação do journal no SQLite.",
+                    memoria.getDuracaoFlushNanos());
+        }
+    }
+
+    private static void coletarContas(TextoMetricas t) {
+        LockManager locks = LockManager.contas();
+        t.gauge("pix_locks_faixas", "Locks que protegem o estado das contas.", locks.getNumeroFaixas());
+        t.contador("pix_locks_aquisicoes_total", "Aquisições de lock de conta.", locks.getAquisicoes());
+        t.contador("pix_locks_contendidas_total", "Aquisições que encontraram o lock ocupado.", locks.getContendidas());
+        tempo(t, "pix_locks_espera_segundos", "Espera das aquisições contendidas.", locks.getEsperaNanos());
+
+        CacheUsuarios cache = UsuarioRepository.getCache();
+        t.gauge("pix_cache_usuarios_tamanho", "Contas no cache de usuários.", cache.getTamanho());
+        t.contador("pix_cache_usuarios_acertos_total", "Buscas por CPF atendidas pelo cache.", cache.getAcertos());
+        t.contador("pix_cache_usuarios_faltas_total", "Buscas por CPF que foram ao banco.", cache.getFaltas());
+        t.contador("pix_cache_usuarios_remocoes_total", "Contas descartadas do cache por falta de espaço.",
+                cache.getRemocoes());
+    }
+
+    private static void coletarSenhas(TextoMetricas t) {
+        t.gauge("pix_senhas_fila", "Tarefas aguardando o pool de senhas.", VerificadorSenhas.getFila());
+        t.contador("pix_senhas_recusadas_total", "Operações de senha recusadas com a fila cheia.",
+                VerificadorSenhas.getRecusadas());
+        t.contador("pix_senhas_acertos_cache_total", "Logins confirmados pelo cache, sem PBKDF2.",
+                VerificadorSenhas.getAcertosCache());
+        tempo(t, "pix_senhas_espera_segundos", "Espera na fila do pool de senhas.", VerificadorSenhas.getEsperaNanos());
+        tempo(t, "pix_senhas_hash_segundos", "Duração de cada PBKDF2.", VerificadorSenhas.getHashNanos());
+        tempo(t, "pix_senhas_verificacao_segundos", "Verificação de senha dos logins, incluindo acertos no cache.",
+                VerificadorSenhas.getVerificacaoNanos());
+    }
+
+    private static void tempo(TextoMetricas t, String nome, String ajuda, Histograma nanos) {
+        t.resumo(nome, ajuda, nanos, NANOS_POR_SEGUNDO).maximo(nome, nanos, NANOS_POR_SEGUNDO);
+    }
+
+    private static void lote(TextoMetricas t, String nome, String ajuda, Histograma tamanhos) {
+        t.resumo(nome, ajuda, tamanhos, 1).maximo(nome, tamanhos, 1);
+    }
+
+    private static String rotulo(RegistroOperacoes.Operacao<?> op) {
+        return TextoMetricas.rotulo("operacao", op.getRegra().getValue());
+    }
+
+    private static String rotulo(RegistroOperacoes.Operacao<?> op, String etapa) {
+        return TextoMetricas.rotulos(rotulo(op), TextoMetricas.rotulo("etapa", etapa.toLowerCase(Locale.ROOT)));
+    }
+}
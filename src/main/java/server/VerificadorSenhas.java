@@ -0,0 +1,262 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import server.metrics.Histograma;
+
+/**
+ * Executa o trabalho lento de senhas ({@link SenhaHasher}) em um pool próprio e limitado
+ * (pix.senha.threads, fila pix.senha.fila), para que uma rajada de logins ocupe no máximo essas threads
+ * e não as que atendem PIX e depósitos. Com a fila cheia a operação é recusada na hora, em vez de esperar.
+ * <p>
+ * Threads que não podem ficar muito tempo paradas (os workers do transporte NIO, poucos e compartilhados por todas
+ * as conexões) recebem um limite próprio de esperas simultâneas ({@link #limitarEsperas}): além dele a operação é
+ * recusada na hora, e sobram workers para os PIX mesmo durante uma rajada de logins.
+ * <p>
+ * Logins bem-sucedidos ficam num cache por pix.senha.cache.ttlMs: o mesmo CPF entrando de novo com a mesma
+ * senha (e o mesmo valor gravado) não refaz o PBKDF2. O cache guarda só um HMAC da senha com uma chave
+ * aleatória do processo, e senhas erradas nunca entram nele (toda tentativa errada paga o custo inteiro).
+ * <p>
+ * Um login com CPF inexistente também paga o PBKDF2 ({@link #verificarInexistente}), contra um hash fictício com
+ * o custo atual: pelo tempo de resposta não dá para saber se a conta existe.
+ */
+public final class VerificadorSenhas {
+
+    /**
+     * Construtor privado para impedir a instanciação da classe.
+     */
+    private VerificadorSenhas() {}
+
+    public enum Resultado { VALIDA, INVALIDA, OCUPADO }
+
+    private record Entrada(byte[] impressao, long expiraEm) {}
+
+    // Hash com o custo atual de uma senha aleatória; gerado no primeiro login com CPF inexistente
+    private static final class Ficticio {
+        static final String HASH = SenhaHasher.gerar(Long.toString(new SecureRandom().nextLong(), 36));
+    }
+
+    private static final ThreadPoolExecutor executor;
+    // Limite de esperas simultâneas do grupo de threads a que a thread atual pertence; null = sem limite
+    private static final ThreadLocal<Semaphore> limiteEsperas = new ThreadLocal<>();
+    private static final Map<String, Entrada> cache = new ConcurrentHashMap<>();
+    private static final byte[] chaveCache = new byte[32];
+
+    private static final Histograma esperaNanos = new Histograma();
+    private static final Histograma hashNanos = new Histograma();
+    private static final Histograma verificacaoNanos = new Histograma();
+    private static final LongAdder acertosCache = new LongAdder();
+    private static final LongAdder recusadas = new LongAdder();
+
+    static {
+        new SecureRandom().nextBytes(chaveCache);
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(ServerConfig.SENHA_THREADS, ServerConfig.SENHA_THREADS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ServerConfig.SENHA_FILA), r -> {
+                    Thread t = new Thread(r, "pix-senhas-" + contador.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Confere a senha de um login, pelo cache ou no pool de senhas. Bloqueia até o resultado.
+     * @param armazenado O valor da coluna senha da conta.
+     */
+    public static Resultado verificar(String cpf, String senha, String armazenado) {
+        long inicio = System.nanoTime();
+        try {
+            byte[] impressao = ServerConfig.SENHA_CACHE_TTL_MS > 0 ? impressao(senha, armazenado) : null;
+            if (impressao != null) {
+                Entrada entrada = cache.get(cpf);
+                if (entrada != null && System.currentTimeMillis() < entrada.expiraEm()
+                        && MessageDigest.isEqual(entrada.impressao(), impressao)) {
+                    acertosCache.increment();
+                    return Resultado.VALIDA;
+                }
+            }
+
+            Boolean valida;
+            try {
+                valida = executar(() -> SenhaHasher.verificar(senha, armazenado));
+            } catch (RejectedExecutionException e) {
+                recusadas.increment();
+                return Resultado.OCUPADO;
+            }
+            if (!valida) return Resultado.INVALIDA;
+
+            if (impressao != null) guardar(cpf, impressao);
+            return Resultado.VALIDA;
+        } finally {
+            verificacaoNanos.registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Faz o mesmo trabalho de {@link #verificar} para um login cujo CPF não existe, sem o cache. Bloqueia até o fim.
+     * @return INVALIDA, ou OCUPADO se o pool de senhas estiver cheio (como para um CPF existente).
+     */
+    public static Resultado verificarInexistente(String senha) {
+        long inicio = System.nanoTime();
+        try {
+            executar(() -> SenhaHasher.verificar(senha, Ficticio.HASH));
+            return Resultado.INVALIDA;
+        } catch (RejectedExecutionException e) {
+            recusadas.increment();
+            return Resultado.OCUPADO;
+        } finally {
+            verificacaoNanos.registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Gera o valor a gravar para uma senha nova no pool de senhas. Bloqueia até o resultado.
+     * @throws RejectedExecutionException se o pool estiver com a fila cheia.
+     */
+    public static String gerarHash(String senha) {
+        try {
+            return executar(() -> SenhaHasher.gerar(senha));
+        } catch (RejectedExecutionException e) {
+            recusadas.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Executa uma tarefa no pool de senhas sem esperar por ela (ex: regravar uma senha com o custo atual).
+     * @return false se a fila estiver cheia e a tarefa foi descartada.
+     */
+    public static boolean agendar(Runnable tarefa) {
+        try {
+            executor.execute(tarefa);
+            return true;
+        } catch (RejectedExecutionException e) {
+            recusadas.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Faz a thread atual dividir com as outras threads do mesmo grupo as permissões de 'limite': cada uma
+     * ocupa uma permissão enquanto espera pelo pool de senhas, e sem permissão livre a operação é recusada.
+     * Chamado no início de cada thread do grupo (ex: workers NIO).
+     */
+    public static void limitarEsperas(Semaphore limite) {
+        limiteEsperas.set(limite);
+    }
+
+    private static <T> T executar(Callable<T> tarefa) {
+        Semaphore limite = limiteEsperas.get();
+        if (limite == null) return executarNoPool(tarefa);
+        if (!limite.tryAcquire()) {
+            throw new RejectedExecutionException("Limite de esperas pelo pool de senhas atingido.");
+        }
+        try {
+            return executarNoPool(tarefa);
+        } finally {
+            limite.release();
+        }
+    }
+
+    private static <T> T executarNoPool(Callable<T> tarefa) {
+        long enfileirado = System.nanoTime();
+        Future<T> futuro = executor.submit(() -> {
+            long inicio = System.nanoTime();
+            esperaNanos.registrar(inicio - enfileirado);
+            try {
+                return tarefa.call();
+            } finally {
+                hashNanos.registrar(System.nanoTime() - inicio);
+            }
+        });
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            futuro.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido aguardando a verificação da senha.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void guardar(String cpf, byte[] impressao) {
+        long agora = System.currentTimeMillis();
+        if (cache.size() >= ServerConfig.SENHA_CACHE_MAX && !cache.containsKey(cpf)) {
+            cache.values().removeIf(e -> agora >= e.expiraEm());
+            // Cheio só de entradas válidas: este login fica sem cache
+            if (cache.size() >= ServerConfig.SENHA_CACHE_MAX) return;
+        }
+        cache.put(cpf, new Entrada(impressao, agora + ServerConfig.SENHA_CACHE_TTL_MS));
+    }
+
+    /**
+     * HMAC da senha junto com o valor gravado: trocar a senha (ou regravá-la com outro salt) invalida a entrada.
+     */
+    private static byte[] impressao(String senha, String armazenado) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(chaveCache, "HmacSHA256"));
+            mac.update(armazenado.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(senha.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 faz parte de toda JDK
+            throw new IllegalStateException("HmacSHA256 indisponível.", e);
+        }
+    }
+
+    /**
+     * @return tempo (ns) que as tarefas esperaram na fila do pool de senhas.
+     */
+    public static Histograma getEsperaNanos() {
+        return esperaNanos;
+    }
+
+    /**
+     * @return duração (ns) de cada PBKDF2 (verificação ou geração).
+     */
+    public static Histograma getHashNanos() {
+        return hashNanos;
+    }
+
+    /**
+     * @return latência (ns) da verificação de senha dos logins, do pedido ao resultado, incluindo acertos no cache.
+     */
+    public static Histograma getVerificacaoNanos() {
+        return verificacaoNanos;
+    }
+
+    public static long getAcertosCache() {
+        return acertosCache.sum();
+    }
+
+    /**
+     * @return operações de senha recusadas por fila cheia.
+     */
+    public static long getRecusadas() {
+        return recusadas.sum();
+    }
+
+    public static int getFila() {
+        return executor.getQueue().size();
+    }
+}
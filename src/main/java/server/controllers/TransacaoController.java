@@ -1,238 +1,241 @@
 package server.controllers;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.fasterxml.jackson.databind.SerializationFeature;
-
+import com.fasterxml.jackson.core.JsonGenerator;
+import common.models.Requisicao;
 import common.models.Transacao;
 import common.models.Usuario;
+import common.util.Dinheiro;
+import common.util.Log;
+import common.util.RespostaWriter;
+import server.repository.Database;
+import server.repository.ResultadoTransferencia;
 import server.repository.TransacaoRepository;
 import server.repository.UsuarioRepository;
 import common.util.SessaoManager;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Optional;
-import static common.util.RespostaManager.criarResposta;
 
 public class TransacaoController {
 
     private static final UsuarioRepository usuarioRepository = new UsuarioRepository();
     private static final TransacaoRepository transacaoRepository = new TransacaoRepository();
-    private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    static {
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-    }
+    // Transações buscadas por consulta ao escrever o extrato completo (sem paginação pedida pelo cliente)
+    private static final int TAMANHO_BLOCO_EXTRATO = 500;
 
     public TransacaoController() {}
 
     /**
      * Obtem transações de um usuário
      */
-    public static String getTransacoes(JsonNode dados) {
+    public static void getTransacoes(Requisicao.TransacaoLer req, RespostaWriter resposta) {
         try {
-            String token = dados.get("token").asText();
+            String token = req.token();
             String cpf = SessaoManager.getCpfPeloToken(token);
 
             if (cpf == null) {
-                return criarResposta(dados.get("operacao").asText(), false, "Token inválido ou sessão expirada.");
+                resposta.escrever(req.operacao(), false, "Token inválido ou sessão expirada.");
+                return;
             }
 
             Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
             if (usuarioOpt.isEmpty()) {
-                return criarResposta(dados.get("operacao").asText(), false, "Usuário não encontrado.");
+                resposta.escrever(req.operacao(), false, "Usuário não encontrado.");
+                return;
             }
 
-            List<Transacao> transacoesEncontradas = transacaoRepository.findByCpf(cpf);
-            ArrayNode transacoesArrayNode = objectMapper.createArrayNode();
-
             LocalDateTime dataInicioFiltro = null;
             LocalDateTime dataFimFiltro = null;
             boolean aplicarFiltro = false;
 
-            if (dados.has("data_inicial") && dados.has("data_final") &&
-                    !dados.get("data_inicial").asText().isEmpty() &&
-                    !dados.get("data_final").asText().isEmpty()) {
+            if (!req.dataInicial().isEmpty() && !req.dataFinal().isEmpty()) {
 
                 try {
-                    String dataInicio = dados.get("data_inicial").asText();
-                    String dataFim = dados.get("data_final").asText();
+                    String dataInicio = req.dataInicial();
+                    String dataFim = req.dataFinal();
 
                     // CORREÇÃO DO FUSO
                     dataInicioFiltro = LocalDateTime.ofInstant(Instant.parse(dataInicio), ZoneId.of("UTC"));
                     dataFimFiltro = LocalDateTime.ofInstant(Instant.parse(dataFim), ZoneId.of("UTC"));
 
                     aplicarFiltro = true;
-                    System.out.println("[CONTROLLER] Filtro de data UTC ativado de " + dataInicioFiltro + " até " + dataFimFiltro);
+                    Log.debug("CONTROLLER", "Filtro de data UTC ativado de {} até {}", dataInicioFiltro, dataFimFiltro);
 
                 } catch (Exception e) {
-                    System.err.println("Erro ao parsear datas de filtro (formato ISO 8601 com 'Z' esperado): " + e.getMessage());
+                    Log.aviso("CONTROLLER", "Erro ao parsear datas de filtro (formato ISO 8601 com 'Z' esperado): {}", e.getMessage());
                 }
             }
 
-            for (Transacao transacao : transacoesEncontradas) {
-                LocalDateTime dataOriginal = transacao.getDataTransacao();
-
-                if (dataOriginal == null) {
-                    continue;
+            // Paginação opcional (keyset): pede uma linha a mais só para saber se existe próxima página
+            int limite = req.limite();
+            TransacaoRepository.CursorExtrato apos = null;
+            if (req.cursor() != null) {
+                apos = TransacaoRepository.CursorExtrato.decodificar(req.cursor());
+                if (apos == null) {
+                    resposta.escrever(req.operacao(), false, "Cursor de paginação inválido.");
+                    return;
                 }
+            }
 
-                boolean estaNoPeriodo = false;
-
-                if (aplicarFiltro) {
-                    if (!dataOriginal.isBefore(dataInicioFiltro) && !dataOriginal.isAfter(dataFimFiltro)) {
-                        estaNoPeriodo = true;
-                    }
+            // Com o ledger em memória, as movimentações já confirmadas precisam estar no banco antes da consulta
+            Database.getLedger().sincronizar();
+
+            // O período é filtrado no próprio SQL (com índice); os nomes das partes já vêm da consulta (JOIN)
+            LocalDateTime inicio = aplicarFiltro ? dataInicioFiltro : null;
+            JsonGenerator g;
+            int quantidade = 0;
+            if (limite > 0) {
+                List<Transacao> pagina = transacaoRepository.findPaginaByCpf(cpf, inicio, dataFimFiltro, apos, limite + 1);
+                String proximoCursor = null;
+                if (pagina.size() > limite) {
+                    pagina = pagina.subList(0, limite);
+                    proximoCursor = TransacaoRepository.CursorExtrato.de(pagina.get(limite - 1)).codificar();
                 }
 
-                if (!aplicarFiltro || estaNoPeriodo) {
-
-                    ObjectNode transacaoNode = objectMapper.createObjectNode();
-
-                    // Formatar data da transação
-                    String dataFormatadaUTC = dataOriginal.toInstant(ZoneOffset.UTC).toString().substring(0, 19) + "Z";
-                    transacaoNode.put("data_transacao", dataFormatadaUTC);
-                    transacaoNode.put("criado_em", dataFormatadaUTC);
-                    transacaoNode.put("atualizado_em", dataFormatadaUTC);
-
-                    // Criar nós de usuário
-                    ObjectNode usuarioEnviadorNode = objectMapper.createObjectNode();
-                    ObjectNode usuarioRecebedorNode = objectMapper.createObjectNode();
-
-                    // Obter CPF da transação e nome do CPF
-                    String enviadorCpf = transacao.getCpfRemetente();
-                    String enviadorNome = "Usuário Inexistente";
-
-                    String recebedorCpf = transacao.getCpfDestinatario();
-                    String recebedorNome = "Usuário Inexistente";
-
-                    Optional<Usuario> recebedorOpt = usuarioRepository.findByCpf(recebedorCpf);
-                    Optional<Usuario> enviadorOpt = usuarioRepository.findByCpf(enviadorCpf);
-
-                    if (enviadorOpt.isPresent()) {
-                        enviadorNome = enviadorOpt.get().getNome();
-                    }
-
-                    if (recebedorOpt.isPresent()) {
-                        recebedorNome = recebedorOpt.get().getNome();
+                g = resposta.iniciar(req.operacao(), true, "Transações do usuário recuperados com sucesso.");
+                g.writeArrayFieldStart("transacoes");
+                quantidade += escreverTransacoes(g, pagina);
+                g.writeEndArray();
+                if (proximoCursor != null) {
+                    g.writeStringField("proximo_cursor", proximoCursor);
+                }
+            } else {
+                // Extrato completo: escrito em blocos, sem carregar todas as transações em memória de uma vez
+                g = resposta.iniciar(req.operacao(), true, "Transações do usuário recuperados com sucesso.");
+                g.writeArrayFieldStart("transacoes");
+                List<Transacao> bloco;
+                do {
+                    bloco = transacaoRepository.findPaginaByCpf(cpf, inicio, dataFimFiltro, apos, TAMANHO_BLOCO_EXTRATO);
+                    quantidade += escreverTransacoes(g, bloco);
+                    if (!bloco.isEmpty()) {
+                        apos = TransacaoRepository.CursorExtrato.de(bloco.get(bloco.size() - 1));
                     }
+                } while (bloco.size() == TAMANHO_BLOCO_EXTRATO);
+                g.writeEndArray();
+            }
+            resposta.concluir();
 
-                    usuarioEnviadorNode.put("cpf", enviadorCpf);
-                    usuarioEnviadorNode.put("nome", enviadorNome);
+            // O if evita o boxing da contagem quando o DEBUG está desligado
+            if (Log.ativo(Log.Nivel.DEBUG)) {
+                Log.debug("CONTROLLER", "Transações encontradas: {}", quantidade);
+            }
 
-                    usuarioRecebedorNode.put("cpf", recebedorCpf);
-                    usuarioRecebedorNode.put("nome", recebedorNome);
+        } catch (Exception e) {
+            Log.erro("CONTROLLER", "Erro ao recuperar transações: {}", e.getMessage(), e); // É bom ter o stack trace completo
+            // Substitui o que já tinha sido escrito da resposta
+            resposta.escrever(req.operacao(), false, "Erro ao recuperar transações do usuário.");
+        }
+    }
 
-                    transacaoNode.put("valor_enviado", transacao.getValor());
-                    transacaoNode.put("id", transacao.getId());
-                    transacaoNode.set("usuario_enviador", usuarioEnviadorNode);
-                    transacaoNode.set("usuario_recebedor", usuarioRecebedorNode);
+    /**
+     * Escreve as transações como elementos do array "transacoes".
+     * @return quantas foram escritas (as sem data são ignoradas).
+     */
+    private static int escreverTransacoes(JsonGenerator g, List<Transacao> transacoes) throws IOException {
+        int escritas = 0;
+        for (Transacao transacao : transacoes) {
+            LocalDateTime dataOriginal = transacao.getDataTransacao();
 
-                    transacoesArrayNode.add(transacaoNode);
-                }
+            if (dataOriginal == null) {
+                continue;
             }
 
-            System.out.println("[CONTROLLER] Transações encontradas: " + transacoesArrayNode.toString());
+            g.writeStartObject();
 
-            ObjectNode resposta = objectMapper.createObjectNode();
-            resposta.put("operacao", dados.get("operacao").asText());
-            resposta.put("status", true);
-            resposta.put("info", "Transações do usuário recuperados com sucesso.");
-            resposta.set("transacoes", transacoesArrayNode);
+            // Formatar data da transação
+            String dataFormatadaUTC = dataOriginal.toInstant(ZoneOffset.UTC).toString().substring(0, 19) + "Z";
+            g.writeStringField("data_transacao", dataFormatadaUTC);
+            g.writeStringField("criado_em", dataFormatadaUTC);
+            g.writeStringField("atualizado_em", dataFormatadaUTC);
 
-            return resposta.toString();
+            g.writeFieldName("valor_enviado");
+            g.writeNumber(Dinheiro.formatar(transacao.getValorCentavos()));
+            g.writeNumberField("id", transacao.getId());
 
-        } catch (Exception e) {
-            System.err.println(e.getMessage());
-            e.printStackTrace(); // É bom ter o stack trace completo
-            ObjectNode resposta = objectMapper.createObjectNode();
-            resposta.put("operacao", dados.get("operacao").asText());
-            resposta.put("status", false);
-            resposta.put("info", "Erro ao recuperar transações do usuário.");
-
-            return resposta.toString();
+            // Nomes vindos do JOIN; null quando a parte não existe mais
+            g.writeObjectFieldStart("usuario_enviador");
+            g.writeStringField("cpf", transacao.getCpfRemetente());
+            g.writeStringField("nome", transacao.getNomeRemetente() != null ? transacao.getNomeRemetente() : "Usuário Inexistente");
+            g.writeEndObject();
+
+            g.writeObjectFieldStart("usuario_recebedor");
+            g.writeStringField("cpf", transacao.getCpfDestinatario());
+            g.writeStringField("nome", transacao.getNomeDestinatario() != null ? transacao.getNomeDestinatario() : "Usuário Inexistente");
+            g.writeEndObject();
+
+            g.writeEndObject();
+            escritas++;
         }
+        return escritas;
     }
 
     /**
      * Processa a criação de uma nova transação (PIX).
      */
-    public static String criarTransacao(JsonNode dados) {
-        String token = dados.get("token").asText();
-        String cpfDestino = dados.get("cpf_destino").asText();
-        double valor = dados.get("valor").asDouble();
+    public static void criarTransacao(Requisicao.TransacaoCriar req, RespostaWriter resposta) {
+        String token = req.token();
+        String cpfDestino = req.cpfDestino();
+        long centavos = req.valorCentavos();
 
         String cpfRemetente = SessaoManager.getCpfPeloToken(token);
         if (cpfRemetente == null) {
-            return criarResposta(dados.get("operacao").asText(), false, "Token inválido ou sessão expirada.");
+            resposta.escrever(req.operacao(), false, "Token inválido ou sessão expirada.");
+            return;
         }
 
         if (cpfRemetente.equals(cpfDestino)) {
-            return criarResposta(dados.get("operacao").asText(), false, "Não é possível enviar dinheiro para si mesmo.");
+            resposta.escrever(req.operacao(), false, "Não é possível enviar dinheiro para si mesmo.");
+            return;
         }
 
-        Optional<Usuario> remetenteOpt = usuarioRepository.findByCpf(cpfRemetente);
-        Optional<Usuario> destinatarioOpt = usuarioRepository.findByCpf(cpfDestino);
-
-        if (remetenteOpt.isEmpty()) {
-            return criarResposta(dados.get("operacao").asText(), false, "Usuário remetente não encontrado.");
+        if (centavos <= 0) {
+            resposta.escrever(req.operacao(), false, "O valor da transação deve ser positivo.");
+            return;
         }
-        if (destinatarioOpt.isEmpty()) {
-            return criarResposta(dados.get("operacao").asText(), false, "Usuário de destino não encontrado.");
-        }
-
-        Usuario remetente = remetenteOpt.get();
-        if (remetente.getSaldo() < valor) {
-            return criarResposta(dados.get("operacao").asText(), false, "Saldo insuficiente.");
-        }
-
-        Usuario destinatario = destinatarioOpt.get();
-
-        remetente.sacar(valor);
-        destinatario.depositar(valor);
 
-        usuarioRepository.update(remetente);
-        usuarioRepository.update(destinatario);
+        // Débito, crédito e extrato em uma única transação no banco
+        ResultadoTransferencia resultado = Database.getLedger().transferir(cpfRemetente, cpfDestino, centavos);
 
-        Transacao novaTransacao = new Transacao(remetente.getCpf(), destinatario.getCpf(), valor);
-        transacaoRepository.save(novaTransacao);
-
-        return criarResposta(dados.get("operacao").asText(), true, "Transação realizada com sucesso.");
+        switch (resultado) {
+            case SUCESSO -> resposta.escrever(req.operacao(), true, "Transação realizada com sucesso.");
+            case REMETENTE_NAO_ENCONTRADO -> resposta.escrever(req.operacao(), false, "Usuário remetente não encontrado.");
+            case DESTINATARIO_NAO_ENCONTRADO -> resposta.escrever(req.operacao(), false, "Usuário de destino não encontrado.");
+            case SALDO_INSUFICIENTE -> resposta.escrever(req.operacao(), false, "Saldo insuficiente.");
+            case ERRO -> resposta.escrever(req.operacao(), false, "Erro ao processar a transação. Tente novamente.");
+        }
     }
 
     /**
      * Processa a operação de depósito na conta do usuário.
      */
-    public static String depositar(JsonNode dados) {
-        String token = dados.get("token").asText();
-        double valor = dados.get("valor_enviado").asDouble();
+    public static void depositar(Requisicao.Depositar req, RespostaWriter resposta) {
+        String token = req.token();
+        long centavos = req.valorCentavos();
         String cpf = SessaoManager.getCpfPeloToken(token);
 
         if (cpf == null) {
-            return criarResposta(dados.get("operacao").asText(), false, "Token inválido ou sessão expirada.");
+            resposta.escrever(req.operacao(), false, "Token inválido ou sessão expirada.");
+            return;
         }
 
-        Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
-        if (usuarioOpt.isEmpty()) {
-            return criarResposta(dados.get("operacao").asText(), false, "Usuário não encontrado.");
+        if (centavos <= 0) {
+            resposta.escrever(req.operacao(), false, "O valor do depósito deve ser positivo.");
+            return;
         }
 
-        Usuario usuario = usuarioOpt.get();
-        usuario.depositar(valor);
-        usuarioRepository.update(usuario);
+        // Crédito e extrato na mesma transação; só retorna depois de gravado
+        ResultadoTransferencia resultado = Database.getLedger().depositar(cpf, centavos);
 
-        Transacao novaTransacao = new Transacao(cpf, cpf, valor);
-        transacaoRepository.save(novaTransacao);
-
-        return criarResposta(dados.get("operacao").asText(), true, "Depósito realizado com sucesso.");
+        switch (resultado) {
+            case SUCESSO -> resposta.escrever(req.operacao(), true, "Depósito realizado com sucesso.");
+            case ERRO -> resposta.escrever(req.operacao(), false, "Erro ao processar o depósito. Tente novamente.");
+            default -> resposta.escrever(req.operacao(), false, "Usuário não encontrado.");
+        }
     }
 }
\ No newline at end of file
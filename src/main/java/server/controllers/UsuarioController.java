@@ -1,62 +1,95 @@
 package server.controllers;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonGenerator;
+import common.models.Requisicao;
 import common.models.Usuario;
+import common.util.Dinheiro;
+import common.util.Log;
+import common.util.RespostaWriter;
 import org.javatuples.Pair;
+import server.LockManager;
+import server.SenhaHasher;
+import server.VerificadorSenhas;
+import server.repository.Database;
 import server.repository.UsuarioRepository;
 import common.util.SessaoManager;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import static common.util.RespostaManager.*;
+import java.util.concurrent.RejectedExecutionException;
 
 public class UsuarioController {
 
     private static final UsuarioRepository usuarioRepository = new UsuarioRepository();
-    private static final ObjectMapper objectMapper = new ObjectMapper(); // Para construir respostas JSON
+    private static final LockManager locks = LockManager.contas();
+
+    private static final String SERVIDOR_OCUPADO = "Servidor ocupado, tente novamente em instantes.";
 
     public UsuarioController() {}
 
     /**
      * Processa a criação de um novo usuário.
      */
-    public static String criarUsuario(JsonNode dados) {
+    public static void criarUsuario(Requisicao.UsuarioCriar req, RespostaWriter resposta) {
         try {
-            String nome = dados.get("nome").asText();
-            String cpf = dados.get("cpf").asText();
-            String senha = dados.get("senha").asText();
+            String nome = req.nome();
+            String cpf = req.cpf();
+            String senha = req.senha();
 
             // Verifica se o usuário já existe
             if (usuarioRepository.findByCpf(cpf).isPresent()) {
-                return criarResposta(dados.get("operacao").asText(), false, "CPF já cadastrado.");
+                resposta.escrever(req.operacao(), false, "CPF já cadastrado.");
+                return;
             }
 
-            Usuario novoUsuario = new Usuario(nome, cpf, senha, 0); // Inicializa usuário novo com saldo 0
-            System.out.println("[CONTROLLER] Tentando criar usuário com CPF: " + novoUsuario.getCpf());
+            // A senha é gravada só como hash
+            Usuario novoUsuario = new Usuario(nome, cpf, VerificadorSenhas.gerarHash(senha), 0); // Inicializa usuário novo com saldo 0
+            Log.debug("CONTROLLER", "Tentando criar usuário com CPF: {}", cpf);
 
             usuarioRepository.save(novoUsuario);
+            Database.getLedger().abrirConta(cpf);
 
-            return criarResposta(dados.get("operacao").asText(), true, "Usuário criado com sucesso.");
+            resposta.escrever(req.operacao(), true, "Usuário criado com sucesso.");
+        }
+        catch (RejectedExecutionException e) {
+            resposta.escrever(req.operacao(), false, SERVIDOR_OCUPADO);
         }
         catch (Exception e) {
-            return criarResposta(dados.get("operacao").asText(), false, "Erro ao cadastrar o usuário.");
+            resposta.escrever(req.operacao(), false, "Erro ao cadastrar o usuário.");
         }
     }
 
     /**
      * Processa o login de um usuário.
      */
-    public static String login(JsonNode dados) {
-        String cpf = dados.get("cpf").asText();
-        String senha = dados.get("senha").asText();
+    public static void login(Requisicao.UsuarioLogin req, RespostaWriter resposta) {
+        String cpf = req.cpf();
+        String senha = req.senha();
 
         Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
+        if (usuarioOpt.isEmpty()) {
+            // Mesmo custo de uma senha errada, para o tempo de resposta não revelar se a conta existe
+            boolean ocupado = VerificadorSenhas.verificarInexistente(senha) == VerificadorSenhas.Resultado.OCUPADO;
+            resposta.escrever(req.operacao(), false, ocupado ? SERVIDOR_OCUPADO : "CPF ou senha inválidos.");
+            return;
+        }
 
-        if (usuarioOpt.isEmpty() || !usuarioOpt.get().getSenha().equals(senha)) {
-            return criarResposta(dados.get("operacao").asText(), false, "CPF ou senha inválidos.");
+        String armazenado = usuarioOpt.get().getSenha();
+        VerificadorSenhas.Resultado resultado = VerificadorSenhas.verificar(cpf, senha, armazenado);
+        if (resultado == VerificadorSenhas.Resultado.OCUPADO) {
+            resposta.escrever(req.operacao(), false, SERVIDOR_OCUPADO);
+            return;
+        }
+        if (resultado == VerificadorSenhas.Resultado.INVALIDA) {
+            resposta.escrever(req.operacao(), false, "CPF ou senha inválidos.");
+            return;
+        }
+
+        // Senha em texto puro ou com custo antigo: regravada em segundo plano, sem atrasar o login
+        if (SenhaHasher.precisaAtualizar(armazenado)) {
+            VerificadorSenhas.agendar(() -> regravarSenha(cpf, senha, armazenado));
         }
 
         String token = SessaoManager.criarSessao(cpf);
@@ -64,118 +97,153 @@ public class UsuarioController {
         List<Pair<String, String>> pairs = new ArrayList<>();
         pairs.add(Pair.with("token", token));
 
-        return criarResposta(dados.get("operacao").asText(), true, "Login bem-sucedido.", pairs);
+        resposta.escrever(req.operacao(), true, "Login bem-sucedido.", pairs);
+    }
+
+    /**
+     * Regrava a senha com o custo atual, desde que ela não tenha sido trocada desde o login. Roda no pool de senhas.
+     */
+    @SuppressWarnings("try") // A trava só existe para ser liberada no fim do bloco
+    private static void regravarSenha(String cpf, String senha, String armazenado) {
+        try {
+            String novo = SenhaHasher.gerar(senha);
+            try (LockManager.Trava trava = locks.bloquear(cpf)) {
+                Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
+                if (usuarioOpt.isPresent() && usuarioOpt.get().getSenha().equals(armazenado)) {
+                    Usuario usuario = usuarioOpt.get();
+                    usuario.setSenha(novo);
+                    usuarioRepository.update(usuario);
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.erro("CONTROLLER", "Erro ao regravar a senha do CPF {}: {}", cpf, e.getMessage(), e);
+        }
     }
 
     /**
      * Processa o logout de um usuário.
      */
-    public static String logout(JsonNode dados) {
-        String token = dados.get("token").asText();
+    public static void logout(Requisicao.UsuarioLogout req, RespostaWriter resposta) {
+        String token = req.token();
         SessaoManager.encerrarSessao(token);
-        return criarResposta(dados.get("operacao").asText(), true, "Logout realizado com sucesso.");
+        resposta.escrever(req.operacao(), true, "Logout realizado com sucesso.");
     }
 
     /**
      * Processa a leitura dos dados de um usuário logado.
      */
-    public static String lerUsuario(JsonNode dados) {
-        String token = dados.get("token").asText();
+    public static void lerUsuario(Requisicao.UsuarioLer req, RespostaWriter resposta) throws IOException {
+        String token = req.token();
         String cpf = SessaoManager.getCpfPeloToken(token);
 
         if (cpf == null) {
-            return criarResposta(dados.get("operacao").asText(), false, "Token inválido ou sessão expirada.");
+            resposta.escrever(req.operacao(), false, "Token inválido ou sessão expirada.");
+            return;
         }
 
         Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
         if (usuarioOpt.isEmpty()) {
-            return criarResposta(dados.get("operacao").asText(), false, "Usuário não encontrado.");
+            resposta.escrever(req.operacao(), false, "Usuário não encontrado.");
+            return;
         }
 
         Usuario usuario = usuarioOpt.get();
-        ObjectNode usuarioNode = objectMapper.createObjectNode();
-        usuarioNode.put("nome", usuario.getNome());
-        usuarioNode.put("cpf", usuario.getCpf());
-        usuarioNode.put("saldo", usuario.getSaldo());
-
-        ObjectNode resposta = objectMapper.createObjectNode();
-        resposta.put("operacao", dados.get("operacao").asText());
-        resposta.put("status", true);
-        resposta.put("info", "Dados do usuário recuperados com sucesso.");
-        resposta.set("usuario", usuarioNode);
-
-        return resposta.toString();
+        Database.getLedger().preencherSaldo(usuario);
+        JsonGenerator g = resposta.iniciar(req.operacao(), true, "Dados do usuário recuperados com sucesso.");
+        g.writeObjectFieldStart("usuario");
+        g.writeStringField("nome", usuario.getNome());
+        g.writeStringField("cpf", usuario.getCpf());
+        g.writeFieldName("saldo");
+        g.writeNumber(Dinheiro.formatar(usuario.getSaldoCentavos()));
+        g.writeEndObject();
+        resposta.concluir();
     }
 
     /**
      * Processa a operação de atualizar um usuário.
      * Espera um JSON com "token" no nível principal e um objeto "usuario" aninhado com os campos a serem alterados.
      */
-    public static String updateUsuario(JsonNode dados) {
+    @SuppressWarnings("try")
+    public static void updateUsuario(Requisicao.UsuarioAtualizar req, RespostaWriter resposta) {
         try {
-            // CORREÇÃO: Ler o token do objeto principal 'dados'
-            String token = dados.get("token").asText();
-            JsonNode usuarioNode = dados.get("usuario"); // O objeto com os novos dados (nome e/ou senha)
+            String token = req.token();
 
             String cpf = SessaoManager.getCpfPeloToken(token);
             if (cpf == null) {
-                return criarResposta(dados.get("operacao").asText(), false, "Token inválido ou sessão expirada.");
+                resposta.escrever(req.operacao(), false, "Token inválido ou sessão expirada.");
+                return;
             }
 
-            Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
-            if (usuarioOpt.isEmpty()) {
-                return criarResposta(dados.get("operacao").asText(), false, "Usuário não encontrado.");
+            // O hash (lento) é calculado antes de pegar o lock da conta
+            String novaSenha = req.senha() != null ? VerificadorSenhas.gerarHash(req.senha()) : null;
+
+            // Leitura e gravação do cadastro sob o lock da conta: duas atualizações simultâneas (ex: nome e senha)
+            // não podem partir da mesma leitura e uma desfazer a outra
+            try (LockManager.Trava trava = locks.bloquear(cpf)) {
+                Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
+                if (usuarioOpt.isEmpty()) {
+                    resposta.escrever(req.operacao(), false, "Usuário não encontrado.");
+                    return;
+                }
+
+                Usuario usuarioParaAtualizar = usuarioOpt.get(); // Pega o objeto de usuário existente do banco
+
+                // MELHORIA: Atualiza apenas os campos que foram fornecidos no JSON
+                boolean foiAtualizado = false;
+                if (req.nome() != null) {
+                    usuarioParaAtualizar.setNome(req.nome());
+                    foiAtualizado = true;
+                }
+                if (novaSenha != null) {
+                    usuarioParaAtualizar.setSenha(novaSenha);
+                    foiAtualizado = true;
+                }
+
+                if (!foiAtualizado) {
+                    resposta.escrever(req.operacao(), false, "Nenhum dado fornecido para atualização.");
+                    return;
+                }
+
+                Log.debug("CONTROLLER", "Atualizando usuário com CPF: {}", cpf);
+                usuarioRepository.update(usuarioParaAtualizar); // Envia o objeto modificado para o repositório
+
+                resposta.escrever(req.operacao(), true, "Usuário atualizado com sucesso.");
             }
 
-            Usuario usuarioParaAtualizar = usuarioOpt.get(); // Pega o objeto de usuário existente do banco
-
-            // MELHORIA: Atualiza apenas os campos que foram fornecidos no JSON
-            boolean foiAtualizado = false;
-            if (usuarioNode.has("nome")) {
-                usuarioParaAtualizar.setNome(usuarioNode.get("nome").asText());
-                foiAtualizado = true;
-            }
-            if (usuarioNode.has("senha")) {
-                usuarioParaAtualizar.setSenha(usuarioNode.get("senha").asText());
-                foiAtualizado = true;
-            }
-
-            if (!foiAtualizado) {
-                return criarResposta(dados.get("operacao").asText(), false, "Nenhum dado fornecido para atualização.");
-            }
-
-            System.out.println("[CONTROLLER] Atualizando usuário com CPF: " + cpf);
-            usuarioRepository.update(usuarioParaAtualizar); // Envia o objeto modificado para o repositório
-
-            return criarResposta(dados.get("operacao").asText(), true, "Usuário atualizado com sucesso.");
-
+        } catch (RejectedExecutionException e) {
+            resposta.escrever(req.operacao(), false, SERVIDOR_OCUPADO);
         } catch (Exception e) {
-            System.err.println("[CONTROLLER] Erro ao atualizar usuário: " + e.getMessage());
-            e.printStackTrace();
-            return criarResposta(dados.get("operacao").asText(), false, "Erro interno ao atualizar o usuário.");
+            Log.erro("CONTROLLER", "Erro ao atualizar usuário: {}", e.getMessage(), e);
+            resposta.escrever(req.operacao(), false, "Erro interno ao atualizar o usuário.");
         }
     }
     
     /**
      * Processa a operação de deletar um usuário.
      */
-    public static String deleteUsuario(JsonNode dados) {
-        String token = dados.get("token").asText();
+    @SuppressWarnings("try")
+    public static void deleteUsuario(Requisicao.UsuarioDeletar req, RespostaWriter resposta) {
+        String token = req.token();
 
         String cpf = SessaoManager.getCpfPeloToken(token);
-        System.out.println("[CONTROLLER] Tentando deletar usuário com CPF " + cpf);
+        Log.debug("CONTROLLER", "Tentando deletar usuário com CPF {}", cpf);
 
         if (cpf == null) {
-            return criarResposta(dados.get("operacao").asText(), false, "Token inválido ou sessão expirada.");
+            resposta.escrever(req.operacao(), false, "Token inválido ou sessão expirada.");
+            return;
         }
 
-        Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
-        if (usuarioOpt.isEmpty()) {
-            return criarResposta(dados.get("operacao").asText(), false, "Usuário não encontrado.");
-        }
+        try (LockManager.Trava trava = locks.bloquear(cpf)) {
+            Optional<Usuario> usuarioOpt = usuarioRepository.findByCpf(cpf);
+            if (usuarioOpt.isEmpty()) {
+                resposta.escrever(req.operacao(), false, "Usuário não encontrado.");
+                return;
+            }
 
-        usuarioRepository.delete(usuarioOpt.get().getCpf());
+            Database.getLedger().encerrarConta(cpf);
+            usuarioRepository.delete(usuarioOpt.get().getCpf());
+        }
 
-        return criarResposta(dados.get("operacao").asText(), true, "Usuário deletado com sucesso.");
+        resposta.escrever(req.operacao(), true, "Usuário deletado com sucesso.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores não negativos (latências em nanossegundos, tamanhos de lote etc.).
+ * Usa buckets log-lineares no estilo HDR: cada potência de dois é dividida em 32 sub-buckets,
+ * o que dá erro relativo de no máximo ~3% em qualquer percentil, com memória fixa.
+ * O registro é lock-free (um incremento atômico) e pode ser feito por várias threads ao mesmo tempo.
+ */
+public class Histograma {
+
+    private static final int BITS_SUB = 5;
+    private static final int SUB = 1 << BITS_SUB;
+    private static final int BUCKETS = (64 - BITS_SUB + 1) * SUB;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra um valor. Valores negativos são tratados como zero.
+     */
+    public void registrar(long valor) {
+        if (valor < 0) valor = 0;
+        contagens.incrementAndGet(indice(valor));
+        total.increment();
+        soma.add(valor);
+        if (valor > maximo.get()) {
+            maximo.accumulateAndGet(valor, Math::max);
+        }
+    }
+
+    public long getContagem() {
+        return total.sum();
+    }
+
+    public long getSoma() {
+        return soma.sum();
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    public double getMedia() {
+        long n = total.sum();
+        return n == 0 ? 0 : soma.sum() / (double) n;
+    }
+
+    /**
+     * Estima o percentil pedido.
+     * @param percentil Entre 0 e 100 (ex: 99.9).
+     * @return o limite superior do bucket que contém o percentil, ou 0 se não houver registros.
+     */
+    public long percentil(double percentil) {
+        long n = 0;
+        long[] copia = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copia[i] = contagens.get(i);
+            n += copia[i];
+        }
+        if (n == 0) return 0;
+
+        long alvo = Math.max(1, (long) Math.ceil(n * Math.min(100.0, Math.max(0.0, percentil)) / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= alvo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    static int indice(long valor) {
+        if (valor < SUB) return (int) valor;
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int deslocamento = expoente - BITS_SUB;
+        int mantissa = (int) (valor >>> deslocamento) & (SUB - 1);
+        return (deslocamento + 1) * SUB + mantissa;
+    }
+
+    static long limiteSuperior(int indice) {
+        if (indice < SUB) return indice;
+        int deslocamento = indice / SUB - 1;
+        long inferior = (long) (SUB + indice % SUB) << deslocamento;
+        return inferior + (1L << deslocamento) - 1;
+    }
+}
@@ -0,0 +1,119 @@
+package server.metrics;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Monta métricas no formato texto de exposição do Prometheus (versão 0.0.4), que o coletor lê direto:
+ * linhas "# HELP"/"# TYPE" uma vez por família, seguidas de "nome{rotulo="valor"} número".
+ * Histogramas viram um summary (percentis 50, 99 e 99.9, _sum e _count), com o máximo em uma família _max à parte.
+ * As linhas de uma família devem sair juntas: com rótulos, percorra os itens uma vez por família.
+ * Não é thread-safe: cada coleta monta o seu.
+ */
+public class TextoMetricas {
+
+    private static final double[] QUANTIS = {0.5, 0.99, 0.999};
+
+    private final StringBuilder sb = new StringBuilder(16 * 1024);
+    private final Set<String> familias = new HashSet<>();
+
+    public TextoMetricas contador(String nome, String ajuda, long valor) {
+        return contador(nome, ajuda, "", valor);
+    }
+
+    /**
+     * @param rotulos Rótulos já montados com {@link #rotulo}, ou "" para nenhum.
+     */
+    public TextoMetricas contador(String nome, String ajuda, String rotulos, long valor) {
+        familia(nome, "counter", ajuda);
+        linha(nome, rotulos, Long.toString(valor));
+        return this;
+    }
+
+    /**
+     * Contador em ponto flutuante (ex: tempo acumulado em segundos).
+     */
+    public TextoMetricas contador(String nome, String ajuda, double valor) {
+        familia(nome, "counter", ajuda);
+        linha(nome, "", numero(valor));
+        return this;
+    }
+
+    public TextoMetricas gauge(String nome, String ajuda, double valor) {
+        return gauge(nome, ajuda, "", valor);
+    }
+
+    public TextoMetricas gauge(String nome, String ajuda, String rotulos, double valor) {
+        familia(nome, "gauge", ajuda);
+        linha(nome, rotulos, numero(valor));
+        return this;
+    }
+
+    public TextoMetricas resumo(String nome, String ajuda, Histograma histograma, double divisor) {
+        return resumo(nome, ajuda, "", histograma, divisor);
+    }
+
+    /**
+     * Expõe um {@link Histograma} como summary.
+     * @param divisor Divide os valores registrados (ex: 1e9 para expor em segundos um histograma em ns).
+     */
+    public TextoMetricas resumo(String nome, String ajuda, String rotulos, Histograma histograma, double divisor) {
+        familia(nome, "summary", ajuda);
+        for (double quantil : QUANTIS) {
+            String comQuantil = juntar(rotulos, rotulo("quantile", numero(quantil)));
+            linha(nome, comQuantil, numero(histograma.percentil(quantil * 100) / divisor));
+        }
+        linha(nome + "_sum", rotulos, numero(histograma.getSoma() / divisor));
+        linha(nome + "_count", rotulos, Long.toString(histograma.getContagem()));
+        return this;
+    }
+
+    public TextoMetricas maximo(String nome, Histograma histograma, double divisor) {
+        return maximo(nome, "", histograma, divisor);
+    }
+
+    /**
+     * Expõe o maior valor do histograma como o gauge nome_max (o summary não tem campo para ele).
+     */
+    public TextoMetricas maximo(String nome, String rotulos, Histograma histograma, double divisor) {
+        return gauge(nome + "_max", "Maior valor registrado em " + nome + ".", rotulos, histograma.getMaximo() / divisor);
+    }
+
+    /**
+     * @return um rótulo no formato do texto (nome="valor"), com o valor escapado.
+     */
+    public static String rotulo(String nome, String valor) {
+        return nome + "=\"" + valor.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    public static String rotulos(String primeiro, String segundo) {
+        return juntar(primeiro, segundo);
+    }
+
+    private static String juntar(String rotulos, String extra) {
+        return rotulos.isEmpty() ? extra : rotulos + "," + extra;
+    }
+
+    private void familia(String nome, String tipo, String ajuda) {
+        if (familias.add(nome)) {
+            sb.append("# HELP ").append(nome).append(' ').append(ajuda.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            sb.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+        }
+    }
+
+    private void linha(String nome, String rotulos, String valor) {
+        sb.append(nome);
+        if (!rotulos.isEmpty()) sb.append('{').append(rotulos).append('}');
+        sb.append(' ').append(valor).append('\n');
+    }
+
+    private static String numero(double valor) {
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) return Long.toString((long) valor);
+        return Double.toString(valor);
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+}
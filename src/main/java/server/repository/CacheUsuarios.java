@@ -0,0 +1,180 @@
+package server.repository;
+
+import common.models.Usuario;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache limitado de contas (Usuario) por CPF, na frente do SQLite.
+ * Dividido em segmentos, cada um um LinkedHashMap em ordem de acesso (LRU) com o seu próprio lock,
+ * para que threads buscando CPFs diferentes raramente disputem o mesmo lock.
+ * <p>
+ * Consistência: toda escrita no banco que muda uma conta passa por aqui ({@link #gravar} ou {@link #invalidar})
+ * depois do commit, e incrementa a geração do segmento. Quem leu do banco só guarda o resultado se a geração
+ * não mudou desde antes da leitura ({@link #guardarSeAtual}), então uma leitura que correu com uma escrita
+ * nunca deixa um saldo antigo no cache.
+ * <p>
+ * Guarda e devolve cópias, já que Usuario é mutável (ex: o controller altera nome/senha antes do update).
+ */
+public class CacheUsuarios {
+
+    private static final int SEGMENTOS = 16;
+
+    private final Segmento[] segmentos;
+    private final boolean ativo;
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    private final LongAdder remocoes = new LongAdder();
+
+    /**
+     * @param capacidade Número máximo de contas em cache; 0 desativa o cache.
+     */
+    public CacheUsuarios(int capacidade) {
+        this.ativo = capacidade > 0;
+        int porSegmento = Math.max(1, (capacidade + SEGMENTOS - 1) / SEGMENTOS);
+        this.segmentos = new Segmento[SEGMENTOS];
+        for (int i = 0; i < SEGMENTOS; i++) {
+            segmentos[i] = new Segmento(porSegmento);
+        }
+    }
+
+    /**
+     * @return uma cópia da conta em cache, ou null se não estiver (conta como falta).
+     */
+    public Usuario buscar(String cpf) {
+        if (!ativo) return null;
+        Segmento segmento = segmento(cpf);
+        Usuario usuario;
+        synchronized (segmento) {
+            usuario = segmento.mapa.get(cpf);
+        }
+        if (usuario == null) {
+            faltas.increment();
+            return null;
+        }
+        acertos.increment();
+        return copiar(usuario);
+    }
+
+    /**
+     * Geração atual do segmento do CPF; deve ser lida antes de consultar o banco.
+     */
+    public long geracao(String cpf) {
+        Segmento segmento = segmento(cpf);
+        synchronized (segmento) {
+            return segmento.geracao;
+        }
+    }
+
+    /**
+     * Guarda o que foi lido do banco, a menos que alguma escrita no segmento tenha acontecido desde
+     * a geração informada (nesse caso a leitura pode estar desatualizada e é descartada).
+     */
+    public void guardarSeAtual(Usuario usuario, long geracaoLida) {
+        if (!ativo) return;
+        Segmento segmento = segmento(usuario.getCpf());
+        synchronized (segmento) {
+            if (segmento.geracao == geracaoLida) {
+                segmento.mapa.put(usuario.getCpf(), copiar(usuario));
+            }
+        }
+    }
+
+    /**
+     * Write-through: grava a versão que acabou de ser escrita no banco.
+     */
+    public void gravar(Usuario usuario) {
+        if (!ativo) return;
+        Segmento segmento = segmento(usuario.getCpf());
+        synchronized (segmento) {
+            segmento.geracao++;
+            segmento.mapa.put(usuario.getCpf(), copiar(usuario));
+        }
+    }
+
+    /**
+     * Write-through de dados cadastrais: atualiza nome e senha da conta em cache, mantendo o saldo
+     * que está nela (o saldo só muda por transferências e depósitos, que invalidam a entrada).
+     */
+    public void gravarCadastro(Usuario usuario) {
+        if (!ativo) return;
+        Segmento segmento = segmento(usuario.getCpf());
+        synchronized (segmento) {
+            segmento.geracao++;
+            Usuario atual = segmento.mapa.get(usuario.getCpf());
+            if (atual != null) {
+                segmento.mapa.put(usuario.getCpf(),
+                        new Usuario(usuario.getNome(), atual.getCpf(), usuario.getSenha(), atual.getSaldoCentavos()));
+            }
+        }
+    }
+
+    /**
+     * Remove as contas do cache (ex: saldo alterado ou conta apagada); a próxima busca vai ao banco.
+     */
+    public void invalidar(String... cpfs) {
+        if (!ativo) return;
+        for (String cpf : cpfs) {
+            Segmento segmento = segmento(cpf);
+            synchronized (segmento) {
+                segmento.geracao++;
+                segmento.mapa.remove(cpf);
+            }
+        }
+    }
+
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    public long getFaltas() {
+        return faltas.sum();
+    }
+
+    /**
+     * @return quantas contas foram descartadas por falta de espaço (LRU).
+     */
+    public long getRemocoes() {
+        return remocoes.sum();
+    }
+
+    public int getTamanho() {
+        int total = 0;
+        for (Segmento segmento : segmentos) {
+            synchronized (segmento) {
+                total += segmento.mapa.size();
+            }
+        }
+        return total;
+    }
+
+    private Segmento segmento(String cpf) {
+        int h = cpf.hashCode();
+        return segmentos[(h ^ (h >>> 16)) & (SEGMENTOS - 1)];
+    }
+
+    private static Usuario copiar(Usuario usuario) {
+        return new Usuario(usuario.getNome(), usuario.getCpf(), usuario.getSenha(), usuario.getSaldoCentavos());
+    }
+
+    private final class Segmento {
+        final LinkedHashMap<String, Usuario> mapa;
+        long geracao;
+
+        Segmento(int capacidade) {
+            this.mapa = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Usuario> maisAntigo) {
+                    if (size() > capacidade) {
+                        remocoes.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
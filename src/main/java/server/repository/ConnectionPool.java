@@ -0,0 +1,305 @@
+package server.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import common.util.Log;
+
+/**
+ * Pool de conexões JDBC reutilizáveis.
+ * As conexões entregues são proxies: chamar close() devolve a conexão física ao pool em vez de fechá-la,
+ * então os repositórios continuam usando try-with-resources normalmente.
+ */
+public class ConnectionPool {
+
+    /**
+     * Fotografia das métricas do pool em um instante.
+     */
+    public record Estatisticas(int ativas, int ociosas, int total, long emprestimos, long esperas,
+                               long tempoEsperaTotalNanos, long tempoEsperaMaximoNanos,
+                               long timeouts, long vazamentos) {
+
+        public double tempoEsperaMedioMs() {
+            return esperas == 0 ? 0 : (tempoEsperaTotalNanos / (double) esperas) / 1_000_000.0;
+        }
+    }
+
+    private final String url;
+    private final List<String> pragmas;
+    private final int minimo;
+    private final int maximo;
+    private final long timeoutAquisicaoMs;
+    private final long tempoOciosoMaximoMs;
+    private final long limiteVazamentoMs;
+
+    // Conexões físicas livres; usadas em ordem LIFO para manter as "quentes" em uso
+    private final LinkedBlockingDeque<ConexaoFisica> ociosas = new LinkedBlockingDeque<>();
+    private final Set<Emprestimo> emprestadas = ConcurrentHashMap.newKeySet();
+    private final Semaphore vagas;
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final LongAdder emprestimos = new LongAdder();
+    private final LongAdder esperas = new LongAdder();
+    private final LongAdder tempoEsperaTotal = new LongAdder();
+    private final AtomicLong tempoEsperaMaximo = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder vazamentos = new LongAdder();
+
+    private final ScheduledExecutorService manutencao;
+
+    /**
+     * @param url A URL JDBC do banco.
+     * @param pragmas Comandos executados em cada nova conexão física (ex: "PRAGMA busy_timeout = 5000").
+     * @param minimo Conexões mantidas abertas mesmo ociosas.
+     * @param maximo Limite de conexões físicas abertas ao mesmo tempo.
+     * @param timeoutAquisicaoMs Tempo máximo de espera por uma conexão livre.
+     * @param tempoOciosoMaximoMs Conexões ociosas há mais tempo que isso são fechadas (respeitando o mínimo).
+     * @param limiteVazamentoMs Empréstimos mais longos que isso são reportados com a pilha de quem pegou a
+     *                          conexão; 0 desativa a detecção (e a captura da pilha).
+     */
+    public ConnectionPool(String url, List<String> pragmas, int minimo, int maximo, long timeoutAquisicaoMs,
+                          long tempoOciosoMaximoMs, long limiteVazamentoMs) {
+        if (minimo < 0 || maximo <= 0 || minimo > maximo) {
+            throw new IllegalArgumentException("Tamanhos de pool inválidos: mínimo=" + minimo + ", máximo=" + maximo);
+        }
+        this.url = url;
+        this.pragmas = List.copyOf(pragmas);
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.timeoutAquisicaoMs = timeoutAquisicaoMs;
+        this.tempoOciosoMaximoMs = tempoOciosoMaximoMs;
+        this.limiteVazamentoMs = limiteVazamentoMs;
+        this.vagas = new Semaphore(maximo, true);
+
+        this.manutencao = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pix-db-pool-manutencao");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodo = Math.max(1000, Math.min(tempoOciosoMaximoMs, 30_000) / 2);
+        manutencao.scheduleWithFixedDelay(this::executarManutencao, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Abre as conexões mínimas antecipadamente.
+     */
+    public void aquecer() throws SQLException {
+        while (total.get() < minimo) {
+            ociosas.offerFirst(abrirConexaoFisica());
+        }
+    }
+
+    /**
+     * Empresta uma conexão do pool, esperando até o timeout configurado se todas estiverem em uso.
+     * @return uma conexão cujo close() a devolve ao pool.
+     * @throws SQLException se nenhuma conexão ficar livre a tempo ou se a abertura falhar.
+     */
+    public Connection getConnection() throws SQLException {
+        long inicio = System.nanoTime();
+        if (!vagas.tryAcquire()) {
+            try {
+                if (!vagas.tryAcquire(timeoutAquisicaoMs, TimeUnit.MILLISECONDS)) {
+                    timeouts.increment();
+                    throw new SQLException("Tempo esgotado aguardando conexão livre no pool (" + maximo + " em uso).");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrompido aguardando conexão do pool.", e);
+            }
+            registrarEspera(System.nanoTime() - inicio);
+        }
+
+        try {
+            ConexaoFisica fisica = obterConexaoValida();
+            emprestimos.increment();
+            Emprestimo emprestimo = new Emprestimo(fisica,
+                    limiteVazamentoMs > 0 ? new Throwable("Conexão emprestada aqui") : null);
+            emprestadas.add(emprestimo);
+            return emprestimo.proxy;
+        } catch (SQLException | RuntimeException e) {
+            vagas.release();
+            throw e;
+        }
+    }
+
+    private ConexaoFisica obterConexaoValida() throws SQLException {
+        ConexaoFisica fisica;
+        while ((fisica = ociosas.pollFirst()) != null) {
+            if (fisica.conexao.isValid(1)) {
+                return fisica;
+            }
+            descartar(fisica);
+        }
+        return abrirConexaoFisica();
+    }
+
+    private ConexaoFisica abrirConexaoFisica() throws SQLException {
+        Connection conexao = DriverManager.getConnection(url);
+        try (Statement stmt = conexao.createStatement()) {
+            for (String pragma : pragmas) {
+                stmt.execute(pragma);
+            }
+        } catch (SQLException e) {
+            conexao.close();
+            throw e;
+        }
+        total.incrementAndGet();
+        return new ConexaoFisica(conexao);
+    }
+
+    private void devolver(Emprestimo emprestimo) {
+        emprestadas.remove(emprestimo);
+        ConexaoFisica fisica = emprestimo.fisica;
+        try {
+            emprestimo.fecharStatementsAbertos();
+            if (!fisica.conexao.getAutoCommit()) {
+                // Transação esquecida aberta: desfaz para não contaminar o próximo empréstimo
+                fisica.conexao.rollback();
+                fisica.conexao.setAutoCommit(true);
+            }
+            fisica.ultimoUso = System.currentTimeMillis();
+            ociosas.offerFirst(fisica);
+        } catch (SQLException e) {
+            descartar(fisica);
+        } finally {
+            vagas.release();
+        }
+    }
+
+    private void descartar(ConexaoFisica fisica) {
+        total.decrementAndGet();
+        try {
+            fisica.conexao.close();
+        } catch (SQLException e) {
+            // Já estava inutilizável
+        }
+    }
+
+    private void registrarEspera(long nanos) {
+        esperas.increment();
+        tempoEsperaTotal.add(nanos);
+        tempoEsperaMaximo.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Fecha conexões ociosas há muito tempo (mantendo o mínimo) e reporta empréstimos suspeitos de vazamento.
+     */
+    private void executarManutencao() {
+        long agora = System.currentTimeMillis();
+
+        Iterator<ConexaoFisica> it = ociosas.descendingIterator(); // As mais antigas ficam no fim
+        while (it.hasNext() && total.get() > minimo) {
+            ConexaoFisica fisica = it.next();
+            if (agora - fisica.ultimoUso > tempoOciosoMaximoMs && ociosas.removeLastOccurrence(fisica)) {
+                descartar(fisica);
+            }
+        }
+
+        if (limiteVazamentoMs > 0) {
+            for (Emprestimo emprestimo : emprestadas) {
+                if (!emprestimo.reportado && agora - emprestimo.inicio > limiteVazamentoMs) {
+                    emprestimo.reportado = true;
+                    vazamentos.increment();
+                    Log.erro("POOL", "Possível vazamento: conexão emprestada há {} ms sem ser devolvida.",
+                            agora - emprestimo.inicio, emprestimo.origem);
+                }
+            }
+        }
+    }
+
+    public Estatisticas getEstatisticas() {
+        int ativas = emprestadas.size();
+        return new Estatisticas(ativas, ociosas.size(), total.get(), emprestimos.sum(), esperas.sum(),
+                tempoEsperaTotal.sum(), tempoEsperaMaximo.get(), timeouts.sum(), vazamentos.sum());
+    }
+
+    private static final class ConexaoFisica {
+        final Connection conexao;
+        volatile long ultimoUso = System.currentTimeMillis();
+
+        ConexaoFisica(Connection conexao) {
+            this.conexao = conexao;
+        }
+    }
+
+    /**
+     * Um empréstimo de conexão: dono do proxy entregue ao repositório e dos statements criados por ele.
+     */
+    private final class Emprestimo implements InvocationHandler {
+        final ConexaoFisica fisica;
+        final Throwable origem;
+        final long inicio = System.currentTimeMillis();
+        final Connection proxy;
+        final List<Statement> statements = new ArrayList<>(2);
+        volatile boolean reportado;
+        private boolean fechado;
+
+        Emprestimo(ConexaoFisica fisica, Throwable origem) {
+            this.fisica = fisica;
+            this.origem = origem;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!fechado) {
+                        fechado = true;
+                        devolver(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return fechado || fisica.conexao.isClosed();
+                case "equals":
+                    return p == args[0];
+                case "hashCode":
+                    return System.identityHashCode(p);
+                case "toString":
+                    return "PooledConnection[" + fisica.conexao + "]";
+                default:
+                    break;
+            }
+            if (fechado) {
+                throw new SQLException("Conexão já devolvida ao pool.");
+            }
+            try {
+                Object resultado = method.invoke(fisica.conexao, args);
+                if (resultado instanceof Statement statement) {
+                    statements.add(statement);
+                }
+                return resultado;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        void fecharStatementsAbertos() throws SQLException {
+            for (Statement statement : statements) {
+                if (!statement.isClosed()) {
+                    statement.close();
+                }
+            }
+        }
+    }
+}
@@ -1,76 +1,387 @@
 package server.repository;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+import common.util.Log;
+import common.util.SessaoManager;
+import server.ServerConfig;
 
 /**
- * Classe utilitária para gerenciar a conexão e a inicialização do banco de dados SQLite.
+ * Classe utilitária para gerenciar as conexões (via pool) e a inicialização do banco de dados SQLite.
  */
 public class Database {
 
     // Define o nome do arquivo do banco de dados. Ele será criado na raiz do projeto.
     private static final String DB_URL = "jdbc:sqlite:banco.db";
 
+    // Aplicados a cada conexão física aberta pelo pool, para que todas se comportem igual
+    private static final List<String> PRAGMAS = List.of(
+            "PRAGMA journal_mode = WAL",
+            "PRAGMA synchronous = " + synchronous(ServerConfig.DB_SYNCHRONOUS),
+            "PRAGMA busy_timeout = " + ServerConfig.DB_BUSY_TIMEOUT_MS,
+            "PRAGMA temp_store = MEMORY"
+    );
+
+    // Versão atual do esquema (PRAGMA user_version); bancos mais antigos são migrados no initialize()
+    private static final int VERSAO_ESQUEMA = 1;
+
+    // Quantas vezes uma transação é refeita quando o banco está ocupado
+    private static final int MAX_TENTATIVAS = 5;
+
+    private static final ConnectionPool pool;
+    private static final GroupCommitWriter groupCommit;
+    // Trocado pelo ledger em memória no initialize() quando pix.ledger=memoria; medido para as métricas por etapa
+    private static volatile Ledger ledger = new LedgerMedido(new SqliteLedger());
+    // Só para as métricas: o ledger em memória e o store de sessões, quando ativos
+    private static volatile MemoriaLedger memoriaLedger;
+    private static volatile SqliteSessaoStore sessaoStore;
+
+    static {
+        // Carrega o driver JDBC do SQLite (passo necessário em algumas configurações)
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            System.err.println("Driver JDBC do SQLite não encontrado.");
+            e.printStackTrace();
+        }
+        pool = new ConnectionPool(DB_URL, PRAGMAS,
+                ServerConfig.DB_POOL_MIN, ServerConfig.DB_POOL_MAX, ServerConfig.DB_POOL_TIMEOUT_MS,
+                ServerConfig.DB_POOL_OCIOSA_MS, ServerConfig.DB_POOL_VAZAMENTO_MS);
+        groupCommit = ServerConfig.DB_GROUP_COMMIT
+                ? new GroupCommitWriter(ServerConfig.DB_GROUP_COMMIT_JANELA_MS, ServerConfig.DB_GROUP_COMMIT_MAX_LOTE,
+                        ServerConfig.DB_GROUP_COMMIT_FILA)
+                : null;
+    }
+
     /**
      * Construtor privado para impedir a instanciação da classe.
      */
     private Database() {}
 
     /**
-     * Fornece uma nova conexão com o banco de dados.
+     * Valida o nível de pix.db.synchronous (ele entra no texto do PRAGMA).
+     */
+    private static String synchronous(String nivel) {
+        String valor = nivel.trim().toUpperCase(Locale.ROOT);
+        return switch (valor) {
+            case "FULL", "EXTRA", "NORMAL" -> valor;
+            default -> throw new IllegalArgumentException("pix.db.synchronous inválido: " + nivel);
+        };
+    }
+
+    /**
+     * Empresta uma conexão do pool. Fechar a conexão (try-with-resources) a devolve ao pool.
      * @return um objeto Connection com o banco.
-     * @throws SQLException se a conexão falhar.
+     * @throws SQLException se não houver conexão disponível a tempo ou a conexão falhar.
      */
     public static Connection getConnection() throws SQLException {
-        // Carrega o driver JDBC do SQLite (passo necessário em algumas configurações)
+        return pool.getConnection();
+    }
+
+    /**
+     * @return as métricas atuais do pool de conexões (ativas, ociosas, tempo de espera etc.).
+     */
+    public static ConnectionPool.Estatisticas getPoolStats() {
+        return pool.getEstatisticas();
+    }
+
+    /**
+     * @return o estágio de group commit, ou null se as operações são gravadas uma a uma.
+     */
+    public static GroupCommitWriter getGroupCommit() {
+        return groupCommit;
+    }
+
+    /**
+     * @return o ledger que executa as movimentações e informa os saldos (ver pix.ledger).
+     */
+    public static Ledger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * @return o ledger em memória, ou null se os saldos moram no SQLite (pix.ledger=sqlite).
+     */
+    public static MemoriaLedger getMemoriaLedger() {
+        return memoriaLedger;
+    }
+
+    /**
+     * @return o store que grava as sessões, ou null se elas ficam só em memória (pix.sessao.persistir=false).
+     */
+    public static SqliteSessaoStore getSessaoStore() {
+        return sessaoStore;
+    }
+
+    /**
+     * Executa uma operação de escrita dentro de uma transação.
+     * Com o group commit ativo (pix.db.groupCommit) a operação entra no próximo lote da thread escritora;
+     * caso contrário é executada e gravada individualmente nesta thread.
+     * Em ambos os casos o retorno só acontece depois que o commit foi feito,
+     * e a transação é refeita algumas vezes em caso de SQLITE_BUSY.
+     * @param operacao A operação a executar.
+     * @param confirmar Decide, pelo resultado, se os efeitos da operação são gravados ou desfeitos.
+     * @return o resultado da operação.
+     * @throws SQLException se a operação ou o commit falharem.
+     */
+    public static <T> T executarTransacao(OperacaoTransacional<T> operacao, Predicate<T> confirmar) throws SQLException {
+        if (groupCommit != null) {
+            try {
+                return groupCommit.submeter(operacao, confirmar).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrompido aguardando o commit do lote.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException sqlException) throw sqlException;
+                throw new SQLException("Falha ao gravar o lote.", e.getCause());
+            }
+        }
+
+        for (int tentativa = 1; ; tentativa++) {
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    T resultado = operacao.executar(conn);
+                    if (confirmar.test(resultado)) {
+                        conn.commit();
+                    } else {
+                        conn.rollback();
+                    }
+                    return resultado;
+                } catch (SQLException | RuntimeException e) {
+                    // Desfaz antes de restaurar o autocommit, que gravaria a transação aberta
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                if (isBusy(e) && tentativa < MAX_TENTATIVAS) {
+                    aguardarNovaTentativa(tentativa);
+                    continue;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Leva o esquema até {@link #VERSAO_ESQUEMA}, uma versão por vez, cada uma em uma transação.
+     */
+    private static void migrar(Connection conn) throws SQLException {
+        int versao;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            versao = rs.next() ? rs.getInt(1) : 0;
+        }
+
+        while (versao < VERSAO_ESQUEMA) {
+            versao++;
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                if (versao == 1) {
+                    migrarParaCentavos(conn, stmt);
+                }
+                stmt.execute("PRAGMA user_version = " + versao);
+                conn.commit();
+                Log.info("DB", "Esquema do banco migrado para a versão {}.", versao);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Versão 1: saldo e valor passam de REAL (reais) para INTEGER (centavos), com colunas renomeadas para
+     * saldo_centavos e valor_centavos. O SQLite não altera o tipo de uma coluna, então as tabelas são
+     * recriadas e os dados copiados (ids das transações preservados). Um banco criado já na versão nova
+     * não tem a coluna antiga e não é tocado.
+     */
+    private static void migrarParaCentavos(Connection conn, Statement stmt) throws SQLException {
+        if (temColuna(conn, "usuarios", "saldo")) {
+            stmt.execute("CREATE TABLE usuarios_nova (" +
+                    "  cpf TEXT PRIMARY KEY," +
+                    "  nome TEXT NOT NULL," +
+                    "  senha TEXT NOT NULL," +
+                    "  saldo_centavos INTEGER NOT NULL DEFAULT 0" +
+                    ")");
+            stmt.execute("INSERT INTO usuarios_nova(cpf, nome, senha, saldo_centavos)" +
+                    " SELECT cpf, nome, senha, CAST(ROUND(saldo * 100) AS INTEGER) FROM usuarios");
+            stmt.execute("DROP TABLE usuarios");
+            stmt.execute("ALTER TABLE usuarios_nova RENAME TO usuarios");
+        }
+        if (temColuna(conn, "transacoes", "valor")) {
+            stmt.execute("CREATE TABLE transacoes_nova (" +
+                    "  id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "  cpf_remetente TEXT NOT NULL," +
+                    "  cpf_destinatario TEXT NOT NULL," +
+                    "  valor_centavos INTEGER NOT NULL," +
+                    "  data_transacao TEXT NOT NULL," +
+                    "  FOREIGN KEY (cpf_remetente) REFERENCES usuarios(cpf)," +
+                    "  FOREIGN KEY (cpf_destinatario) REFERENCES usuarios(cpf)" +
+                    ")");
+            stmt.execute("INSERT INTO transacoes_nova(id, cpf_remetente, cpf_destinatario, valor_centavos, data_transacao)" +
+                    " SELECT id, cpf_remetente, cpf_destinatario, CAST(ROUND(valor * 100) AS INTEGER), data_transacao" +
+                    " FROM transacoes");
+            // Os índices da tabela antiga somem com ela; initialize() os recria
+            stmt.execute("DROP TABLE transacoes");
+            stmt.execute("ALTER TABLE transacoes_nova RENAME TO transacoes");
+        }
+    }
+
+    private static boolean temColuna(Connection conn, String tabela, String coluna) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tabela + ")")) {
+            while (rs.next()) {
+                if (coluna.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Verifica se a falha foi por banco ocupado/travado (SQLITE_BUSY ou SQLITE_LOCKED),
+     * casos em que refazer a transação costuma resolver.
+     */
+    static boolean isBusy(SQLException e) {
+        int codigoPrimario = e.getErrorCode() & 0xFF;
+        return codigoPrimario == 5 || codigoPrimario == 6;
+    }
+
+    static void aguardarNovaTentativa(int tentativa) {
         try {
-            Class.forName("org.sqlite.JDBC");
-        } catch (ClassNotFoundException e) {
-            System.err.println("Driver JDBC do SQLite não encontrado.");
-            e.printStackTrace();
+            // Backoff exponencial com jitter para que as transações em conflito não colidam de novo
+            long base = 5L << Math.min(tentativa, 6);
+            Thread.sleep(base + ThreadLocalRandom.current().nextLong(base));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
         }
-        return DriverManager.getConnection(DB_URL);
     }
 
     /**
-     * Cria as tabelas necessárias no banco de dados se elas não existirem.
+     * Grava no SQLite as movimentações que uma execução anterior com o ledger em memória deixou no journal,
+     * para o ledger do SQLite partir dos saldos certos. Se alguma não puder ser gravada, o servidor não sobe.
+     */
+    private static void aplicarJournalPendente(Path arquivoJournal) {
+        long pendentes;
+        try {
+            MemoriaLedger memoria = new MemoriaLedger(arquivoJournal, ServerConfig.LEDGER_JOURNAL_REGISTROS,
+                    ServerConfig.LEDGER_FLUSH_MS, ServerConfig.LEDGER_FLUSH_MAX_LOTE);
+            pendentes = memoria.getPendentes();
+            // O fechamento só termina depois de gravar tudo, ou na primeira falha do banco
+            memoria.fechar();
+            if (memoria.getPendentes() > 0) {
+                throw new IllegalStateException(memoria.getPendentes() + " movimentações do journal "
+                        + arquivoJournal + " não foram gravadas no banco.");
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Erro ao aplicar o journal " + arquivoJournal + " no banco: "
+                    + e.getMessage(), e);
+        }
+        if (pendentes > 0) {
+            Log.info("LEDGER", "{} movimentações pendentes do journal gravadas no banco.", pendentes);
+        }
+    }
+
+    /**
+     * Cria as tabelas necessárias no banco de dados se elas não existirem, e migra bancos de versões anteriores
+     * do esquema (controladas por PRAGMA user_version).
      * Este método deve ser chamado uma vez na inicialização do servidor.
+     * @throws IllegalStateException se o esquema não puder ser criado ou migrado, ou se houver movimentações
+     *         no journal do ledger que não puderam ser usadas.
      */
     public static void initialize() {
-        // SQL para criar a tabela de usuários
+        // SQL para criar a tabela de usuários (saldo em centavos)
         String sqlUsuario = "CREATE TABLE IF NOT EXISTS usuarios (" +
                 "  cpf TEXT PRIMARY KEY," +
                 "  nome TEXT NOT NULL," +
                 "  senha TEXT NOT NULL," +
-                "  saldo REAL NOT NULL DEFAULT 0.0" +
+                "  saldo_centavos INTEGER NOT NULL DEFAULT 0" +
                 ");";
 
-        // SQL para criar a tabela de transações
+        // SQL para criar a tabela de transações (valor em centavos)
         String sqlTransacao = "CREATE TABLE IF NOT EXISTS transacoes (" +
                 "  id INTEGER PRIMARY KEY AUTOINCREMENT," +
                 "  cpf_remetente TEXT NOT NULL," +
                 "  cpf_destinatario TEXT NOT NULL," +
-                "  valor REAL NOT NULL," +
+                "  valor_centavos INTEGER NOT NULL," +
                 "  data_transacao TEXT NOT NULL," +
                 "  FOREIGN KEY (cpf_remetente) REFERENCES usuarios(cpf)," +
                 "  FOREIGN KEY (cpf_destinatario) REFERENCES usuarios(cpf)" +
                 ");";
 
+        // Índices compostos para o extrato por período (um por lado da transação)
+        String sqlIndiceRemetente = "CREATE INDEX IF NOT EXISTS idx_transacoes_remetente_data" +
+                "  ON transacoes (cpf_remetente, data_transacao);";
+        String sqlIndiceDestinatario = "CREATE INDEX IF NOT EXISTS idx_transacoes_destinatario_data" +
+                "  ON transacoes (cpf_destinatario, data_transacao);";
+
         // Usamos try-with-resources para garantir que a conexão e o statement sejam fechados
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
 
-            // Executa os comandos SQL para criar as tabelas
+            // Executa os comandos SQL para criar as tabelas (em um banco antigo elas já existem e não mudam aqui)
             stmt.execute(sqlUsuario);
             stmt.execute(sqlTransacao);
+            migrar(conn);
+            stmt.execute(sqlIndiceRemetente);
+            stmt.execute(sqlIndiceDestinatario);
 
             System.out.println("Banco de dados verificado/inicializado com sucesso.");
+            if ("NORMAL".equals(synchronous(ServerConfig.DB_SYNCHRONOUS))) {
+                Log.aviso("DB", "PRAGMA synchronous = {}: uma queda de energia pode perder transações já confirmadas.",
+                        ServerConfig.DB_SYNCHRONOUS);
+            }
+
+            // Abre as conexões mínimas do pool já na inicialização
+            pool.aquecer();
 
         } catch (SQLException e) {
-            System.err.println("Erro ao inicializar o banco de dados: " + e.getMessage());
-            e.printStackTrace();
+            // Com o esquema antigo ou incompleto toda consulta a saldo_centavos falharia: o servidor não sobe
+            throw new IllegalStateException("Erro ao inicializar ou migrar o banco de dados: " + e.getMessage(), e);
+        }
+
+        Path arquivoJournal = Path.of(ServerConfig.LEDGER_JOURNAL);
+        if ("memoria".equalsIgnoreCase(ServerConfig.LEDGER)) {
+            try {
+                MemoriaLedger memoria = new MemoriaLedger(arquivoJournal,
+                        ServerConfig.LEDGER_JOURNAL_REGISTROS, ServerConfig.LEDGER_FLUSH_MS,
+                        ServerConfig.LEDGER_FLUSH_MAX_LOTE);
+                Runtime.getRuntime().addShutdownHook(new Thread(memoria::fechar, "pix-ledger-fechar"));
+                ledger = new LedgerMedido(memoria);
+                memoriaLedger = memoria;
+            } catch (SQLException | IOException e) {
+                // Sem o journal, movimentações já confirmadas aos clientes sumiriam: não sobe com o SQLite no lugar
+                throw new IllegalStateException("Erro ao iniciar o ledger em memória com o journal "
+                        + arquivoJournal + ": " + e.getMessage(), e);
+            }
+        } else if (Files.exists(arquivoJournal)) {
+            aplicarJournalPendente(arquivoJournal);
+        }
+
+        if (ServerConfig.SESSOES_PERSISTENTES) {
+            try {
+                SqliteSessaoStore sessoes = new SqliteSessaoStore(ServerConfig.SESSOES_FLUSH_MS);
+                Runtime.getRuntime().addShutdownHook(new Thread(sessoes::fechar, "pix-sessoes-fechar"));
+                SessaoManager.usarStore(sessoes);
+                sessaoStore = sessoes;
+            } catch (SQLException e) {
+                Log.erro("DB", "Erro ao iniciar a gravação de sessões; elas ficarão só em memória: {}", e.getMessage(), e);
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+package server.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import server.metrics.Histograma;
+
+import common.util.Log;
+
+/**
+ * Estágio de "group commit": as mutações de saldo e inserções no extrato enviadas pelos controllers
+ * entram em uma fila, e uma única thread escritora as executa em lotes, com um único commit por lote.
+ * Cada operação roda dentro de um savepoint próprio, então a falha de uma (ex: saldo insuficiente)
+ * não afeta as demais. O resultado de cada operação só é entregue depois do commit do seu lote.
+ */
+public class GroupCommitWriter {
+
+    private static final int MAX_TENTATIVAS = 5;
+
+    private final BlockingQueue<Pedido<?>> fila;
+    private final long janelaNanos;
+    private final int maxLote;
+
+    private final Histograma tamanhoLote = new Histograma();
+    private final Histograma duracaoLoteNanos = new Histograma();
+    private final Histograma esperaNanos = new Histograma();
+
+    /**
+     * @param janelaMs Tempo máximo que o primeiro pedido de um lote espera por outros antes do commit.
+     * @param maxLote Número máximo de operações em um mesmo commit.
+     * @param capacidadeFila Pedidos aguardando além disso bloqueiam quem submete (backpressure).
+     */
+    public GroupCommitWriter(long janelaMs, int maxLote, int capacidadeFila) {
+        this.janelaNanos = TimeUnit.MILLISECONDS.toNanos(janelaMs);
+        this.maxLote = maxLote;
+        this.fila = new LinkedBlockingQueue<>(capacidadeFila);
+
+        Thread escritor = new Thread(this::loop, "pix-db-group-commit");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Enfileira uma operação para o próximo lote.
+     * @param operacao A operação a executar.
+     * @param confirmar Decide, a partir do resultado, se os efeitos da operação são mantidos (true)
+     *                  ou desfeitos até o savepoint (false). O resultado é entregue em ambos os casos.
+     * @return um futuro completado após o commit do lote (ou com a exceção, se o lote falhar).
+     */
+    public <T> CompletableFuture<T> submeter(OperacaoTransacional<T> operacao, Predicate<T> confirmar)
+            throws InterruptedException {
+        Pedido<T> pedido = new Pedido<>(operacao, confirmar, new CompletableFuture<>(), System.nanoTime());
+        fila.put(pedido);
+        return pedido.futuro;
+    }
+
+    private void loop() {
+        List<Pedido<?>> lote = new ArrayList<>(maxLote);
+        while (true) {
+            try {
+                lote.add(fila.take());
+                long prazo = System.nanoTime() + janelaNanos;
+                while (lote.size() < maxLote) {
+                    // Primeiro pega o que já está na fila, depois espera o restante da janela
+                    if (fila.drainTo(lote, maxLote - lote.size()) > 0) continue;
+                    long restante = prazo - System.nanoTime();
+                    if (restante <= 0) break;
+                    Pedido<?> proximo = fila.poll(restante, TimeUnit.NANOSECONDS);
+                    if (proximo == null) break;
+                    lote.add(proximo);
+                }
+                executarLote(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Nunca deixa a thread escritora morrer: quem estava no lote recebe a falha
+                for (Pedido<?> pedido : lote) {
+                    pedido.futuro.completeExceptionally(e);
+                }
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void executarLote(List<Pedido<?>> lote) {
+        long inicio = System.nanoTime();
+        List<Object> resultados = new ArrayList<>(lote.size());
+
+        for (int tentativa = 1; ; tentativa++) {
+            resultados.clear();
+            try (Connection conn = Database.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    for (Pedido<?> pedido : lote) {
+                        resultados.add(executarNoSavepoint(conn, pedido));
+                    }
+                    conn.commit();
+                    break;
+                } catch (SQLException | RuntimeException e) {
+                    // Desfaz antes de restaurar o autocommit, que gravaria a transação aberta
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                if (Database.isBusy(e) && tentativa < MAX_TENTATIVAS) {
+                    Database.aguardarNovaTentativa(tentativa);
+                    continue;
+                }
+                Log.erro("DB", "Erro ao gravar lote de {} operações: {}", lote.size(), e.getMessage(), e);
+                for (Pedido<?> pedido : lote) {
+                    pedido.futuro.completeExceptionally(e);
+                }
+                return;
+            }
+        }
+
+        long fim = System.nanoTime();
+        tamanhoLote.registrar(lote.size());
+        duracaoLoteNanos.registrar(fim - inicio);
+        for (int i = 0; i < lote.size(); i++) {
+            Pedido<?> pedido = lote.get(i);
+            esperaNanos.registrar(fim - pedido.enfileiradoEm);
+            pedido.completar(resultados.get(i));
+        }
+    }
+
+    private static <T> T executarNoSavepoint(Connection conn, Pedido<T> pedido) throws SQLException {
+        pedido.erro = null;
+        Savepoint savepoint = conn.setSavepoint();
+        T resultado;
+        try {
+            resultado = pedido.operacao.executar(conn);
+        } catch (SQLException | RuntimeException e) {
+            if (e instanceof SQLException sqlException && Database.isBusy(sqlException)) {
+                throw sqlException; // Conflito de lock: refaz o lote inteiro
+            }
+            conn.rollback(savepoint);
+            conn.releaseSavepoint(savepoint);
+            // Erro isolado desta operação: o lote segue e o erro é entregue a quem a submeteu
+            return pedido.falha(e);
+        }
+        if (!pedido.confirmar.test(resultado)) {
+            conn.rollback(savepoint);
+        }
+        conn.releaseSavepoint(savepoint);
+        return resultado;
+    }
+
+    /**
+     * @return distribuição do número de operações por commit.
+     */
+    public Histograma getTamanhoLote() {
+        return tamanhoLote;
+    }
+
+    /**
+     * @return distribuição do tempo (ns) de execução + commit de cada lote.
+     */
+    public Histograma getDuracaoLoteNanos() {
+        return duracaoLoteNanos;
+    }
+
+    /**
+     * @return distribuição do tempo (ns) entre submeter uma operação e seu lote ficar gravado.
+     */
+    public Histograma getEsperaNanos() {
+        return esperaNanos;
+    }
+
+    public int getTamanhoFila() {
+        return fila.size();
+    }
+
+    private static final class Pedido<T> {
+        final OperacaoTransacional<T> operacao;
+        final Predicate<T> confirmar;
+        final CompletableFuture<T> futuro;
+        final long enfileiradoEm;
+        Exception erro;
+
+        Pedido(OperacaoTransacional<T> operacao, Predicate<T> confirmar, CompletableFuture<T> futuro, long enfileiradoEm) {
+            this.operacao = operacao;
+            this.confirmar = confirmar;
+            this.futuro = futuro;
+            this.enfileiradoEm = enfileiradoEm;
+        }
+
+        T falha(Exception e) {
+            this.erro = e;
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        void completar(Object resultado) {
+            if (erro != null) {
+                futuro.completeExceptionally(erro);
+            } else {
+                futuro.complete((T) resultado);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package server.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal das movimentações do {@link MemoriaLedger}: um arquivo mapeado em memória usado como buffer
+ * circular de registros de tamanho fixo, numerados por uma sequência crescente (o registro n fica na
+ * posição (n - 1) % capacidade).
+ * <p>
+ * Um registro é escrito antes de o saldo em memória mudar, e só pode ser sobrescrito depois de
+ * gravado no SQLite ({@link #marcarAplicado}); com o journal cheio, quem anexa espera o flusher.
+ * Como a escrita é no mapeamento, um registro sobrevive à queda do processo assim que {@link #anexar}
+ * retorna; sobreviver à queda da máquina depende de {@link #forcar}.
+ */
+final class JournalLedger implements Closeable {
+
+    static final int TIPO_TRANSFERENCIA = 1;
+    static final int TIPO_DEPOSITO = 2;
+
+    private static final int MAGICO = 0x50495831; // "PIX1"
+    private static final int TAMANHO_CABECALHO = 64;
+    private static final int TAMANHO_REGISTRO = 64;
+    // Bytes do registro cobertos pelo CRC, que fica logo em seguida
+    private static final int TAMANHO_DADOS = 56;
+
+    /**
+     * Uma movimentação; em depósitos remetente e destinatário são a mesma conta. CPFs como em {@link MapaSaldos#chave}.
+     */
+    record Registro(long seq, int tipo, long remetente, long destinatario, long centavos, LocalDateTime data) {}
+
+    private final FileChannel canal;
+    private final MappedByteBuffer mapa;
+    private final int capacidade;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition espacoLivre = lock.newCondition();
+    private final Condition aplicadoAvancou = lock.newCondition();
+    private final CRC32C crcEscrita = new CRC32C();
+
+    private long proximo;
+    private volatile long escrito;
+    private volatile long aplicado;
+
+    /**
+     * Abre (ou cria) o journal e recupera os registros ainda não gravados no SQLite.
+     * @param capacidadePadrao Número de registros de um journal novo; um arquivo existente mantém a sua.
+     * @param aplicado Último registro já refletido no SQLite; a recuperação começa no seguinte.
+     */
+    JournalLedger(Path arquivo, int capacidadePadrao, long aplicado) throws IOException {
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int capacidadeArquivo = 0;
+        if (canal.size() >= TAMANHO_CABECALHO) {
+            ByteBuffer cabecalho = ByteBuffer.allocate(8);
+            canal.read(cabecalho, 0);
+            if (cabecalho.getInt(0) == MAGICO) {
+                capacidadeArquivo = cabecalho.getInt(4);
+            }
+        }
+        boolean novo = capacidadeArquivo <= 0;
+        this.capacidade = novo ? capacidadePadrao : capacidadeArquivo;
+        this.mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, TAMANHO_CABECALHO + (long) capacidade * TAMANHO_REGISTRO);
+        if (novo) {
+            mapa.putInt(0, MAGICO);
+            mapa.putInt(4, capacidade);
+        }
+        recuperar(aplicado);
+    }
+
+    /**
+     * A partir de 'aplicado', segue os registros válidos e consecutivos; tudo o que vier depois de uma
+     * falha (registro corrompido ou de uma volta anterior) é apagado, para não ser confundido depois
+     * com um registro novo na mesma posição.
+     */
+    private void recuperar(long aplicado) {
+        CRC32C crc = new CRC32C();
+        long ultimo = aplicado;
+        while (ultimo - aplicado < capacidade && lerValido(ultimo + 1, crc) != null) {
+            ultimo++;
+        }
+        for (int i = 0; i < capacidade; i++) {
+            int posicao = TAMANHO_CABECALHO + i * TAMANHO_REGISTRO;
+            if (mapa.getLong(posicao) > ultimo) {
+                mapa.putLong(posicao, 0);
+            }
+        }
+        this.aplicado = aplicado;
+        this.escrito = ultimo;
+        this.proximo = ultimo + 1;
+    }
+
+    /**
+     * Anexa uma movimentação, esperando o flusher se o journal estiver cheio.
+     * @return o número de sequência do registro.
+     */
+    long anexar(int tipo, long remetente, long destinatario, long centavos, LocalDateTime data)
+            throws InterruptedException {
+        lock.lock();
+        try {
+            long seq = proximo;
+            while (seq - aplicado > capacidade) {
+                espacoLivre.await();
+            }
+            int posicao = posicao(seq);
+            mapa.putLong(posicao, seq);
+            mapa.putInt(posicao + 8, tipo);
+            mapa.putInt(posicao + 12, data.getNano());
+            mapa.putLong(posicao + 16, data.toEpochSecond(ZoneOffset.UTC));
+            mapa.putLong(posicao + 24, remetente);
+            mapa.putLong(posicao + 32, destinatario);
+            mapa.putLong(posicao + 40, centavos);
+            mapa.putLong(posicao + 48, 0);
+            crcEscrita.reset();
+            crcEscrita.update(mapa.slice(posicao, TAMANHO_DADOS));
+            mapa.putInt(posicao + TAMANHO_DADOS, (int) crcEscrita.getValue());
+            proximo = seq + 1;
+            escrito = seq;
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lê os registros de 'de' até 'ate' (inclusive), que devem estar escritos e ainda não aplicados.
+     */
+    List<Registro> ler(long de, long ate) {
+        CRC32C crc = new CRC32C();
+        List<Registro> registros = new ArrayList<>((int) (ate - de + 1));
+        for (long seq = de; seq <= ate; seq++) {
+            Registro registro = lerValido(seq, crc);
+            if (registro == null) {
+                throw new IllegalStateException("Registro " + seq + " do journal ausente ou corrompido.");
+            }
+            registros.add(registro);
+        }
+        return registros;
+    }
+
+    private Registro lerValido(long seq, CRC32C crc) {
+        int posicao = posicao(seq);
+        if (mapa.getLong(posicao) != seq) return null;
+        crc.reset();
+        crc.update(mapa.slice(posicao, TAMANHO_DADOS));
+        if ((int) crc.getValue() != mapa.getInt(posicao + TAMANHO_DADOS)) return null;
+        LocalDateTime data = LocalDateTime.ofEpochSecond(mapa.getLong(posicao + 16), mapa.getInt(posicao + 12), ZoneOffset.UTC);
+        return new Registro(seq, mapa.getInt(posicao + 8), mapa.getLong(posicao + 24), mapa.getLong(posicao + 32),
+                mapa.getLong(posicao + 40), data);
+    }
+
+    /**
+     * Informa que os registros até 'seq' já estão no SQLite; as posições deles podem ser reutilizadas.
+     */
+    void marcarAplicado(long seq) {
+        lock.lock();
+        try {
+            aplicado = seq;
+            espacoLivre.signalAll();
+            aplicadoAvancou.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Espera até que os registros até 'seq' estejam no SQLite.
+     */
+    void aguardarAplicado(long seq) throws InterruptedException {
+        lock.lock();
+        try {
+            while (aplicado < seq) {
+                aplicadoAvancou.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Força a escrita das páginas alteradas do mapeamento no disco.
+     */
+    void forcar() {
+        mapa.force();
+    }
+
+    long getEscrito() {
+        return escrito;
+    }
+
+    long getAplicado() {
+        return aplicado;
+    }
+
+    int getCapacidade() {
+        return capacidade;
+    }
+
+    private int posicao(long seq) {
+        return TAMANHO_CABECALHO + (int) ((seq - 1) % capacidade) * TAMANHO_REGISTRO;
+    }
+
+    @Override
+    public void close() throws IOException {
+        forcar();
+        canal.close();
+    }
+}
@@ -0,0 +1,52 @@
+package server.repository;
+
+import common.models.Usuario;
+
+/**
+ * Dono dos saldos: executa as movimentações (PIX e depósitos) e informa o saldo atual das contas.
+ * Há duas implementações, escolhidas por pix.ledger:
+ * <ul>
+ *     <li>"sqlite" (padrão): cada movimentação é uma transação no banco ({@link TransacaoRepository});</li>
+ *     <li>"memoria": saldos em memória com journal mapeado em arquivo e gravação assíncrona no SQLite
+ *     ({@link MemoriaLedger}).</li>
+ * </ul>
+ * Os dados cadastrais das contas continuam sempre no {@link UsuarioRepository}.
+ */
+public interface Ledger {
+
+    /**
+     * Transfere 'centavos' entre duas contas de forma atômica; em qualquer resultado diferente de SUCESSO nada muda.
+     */
+    ResultadoTransferencia transferir(String cpfRemetente, String cpfDestinatario, long centavos);
+
+    /**
+     * Credita 'centavos' na conta; aparece no extrato como uma transação da conta para ela mesma.
+     */
+    ResultadoTransferencia depositar(String cpf, long centavos);
+
+    /**
+     * Substitui o saldo do usuário (lido do UsuarioRepository) pelo saldo atual da conta no ledger.
+     */
+    void preencherSaldo(Usuario usuario);
+
+    /**
+     * Avisa que uma conta foi criada no UsuarioRepository (com saldo zero).
+     */
+    void abrirConta(String cpf);
+
+    /**
+     * Avisa que uma conta vai ser apagada do UsuarioRepository; deve ser chamado com o lock da conta.
+     */
+    void encerrarConta(String cpf);
+
+    /**
+     * Espera até que todas as movimentações já confirmadas estejam gravadas no SQLite
+     * (ex: antes de consultar o extrato).
+     */
+    void sincronizar();
+
+    /**
+     * Grava o que estiver pendente e libera os recursos.
+     */
+    void fechar();
+}
@@ -0,0 +1,82 @@
+package server.repository;
+
+import common.models.Usuario;
+import common.util.Etapas;
+
+/**
+ * Envolve o ledger em uso para que o tempo das movimentações e consultas de saldo conte na etapa
+ * de repositório das métricas por operação ({@link Etapas}). Não muda nenhum comportamento.
+ */
+final class LedgerMedido implements Ledger {
+
+    private final Ledger ledger;
+
+    LedgerMedido(Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    @Override
+    public ResultadoTransferencia transferir(String cpfRemetente, String cpfDestinatario, long centavos) {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            return ledger.transferir(cpfRemetente, cpfDestinatario, centavos);
+        } finally {
+            Etapas.concluir(marca);
+        }
+    }
+
+    @Override
+    public ResultadoTransferencia depositar(String cpf, long centavos) {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            return ledger.depositar(cpf, centavos);
+        } finally {
+            Etapas.concluir(marca);
+        }
+    }
+
+    @Override
+    public void preencherSaldo(Usuario usuario) {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            ledger.preencherSaldo(usuario);
+        } finally {
+            Etapas.concluir(marca);
+        }
+    }
+
+    @Override
+    public void abrirConta(String cpf) {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            ledger.abrirConta(cpf);
+        } finally {
+            Etapas.concluir(marca);
+        }
+    }
+
+    @Override
+    public void encerrarConta(String cpf) {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            ledger.encerrarConta(cpf);
+        } finally {
+            Etapas.concluir(marca);
+        }
+    }
+
+    @Override
+    public void sincronizar() {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            ledger.sincronizar();
+        } finally {
+            Etapas.concluir(marca);
+        }
+    }
+
+    @Override
+    public void fechar() {
+        ledger.fechar();
+    }
+}
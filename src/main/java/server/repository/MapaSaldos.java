@@ -0,0 +1,150 @@
+package server.repository;
+
+import java.util.Arrays;
+
+/**
+ * Mapa CPF -> saldo em centavos especializado em primitivos: o CPF é guardado como o número de 11 dígitos
+ * (long) e o saldo como long, em dois arrays com endereçamento aberto (sondagem linear), sem objetos por conta.
+ * <p>
+ * Não é sincronizado: quem usa controla o acesso (ver {@link MemoriaLedger}). Os métodos que alteram a
+ * estrutura ({@link #inserir}, {@link #remover}) não podem rodar junto com nenhum outro; {@link #indice},
+ * {@link #getSaldo} e {@link #setSaldo} podem rodar em paralelo desde que não mexam na mesma posição.
+ */
+final class MapaSaldos {
+
+    private static final long VAZIO = -1L;
+
+    private long[] chaves;
+    private long[] saldos;
+    private int mascara;
+    private int tamanho;
+
+    MapaSaldos(int capacidadeInicial) {
+        int n = Integer.highestOneBit(Math.max(16, capacidadeInicial * 2 - 1)) << 1;
+        alocar(n);
+    }
+
+    /**
+     * Converte um CPF '000.000.000-00' no número formado pelos seus dígitos.
+     * @return a chave, ou -1 se o texto não for um CPF formatado.
+     */
+    static long chave(String cpf) {
+        if (cpf == null || cpf.length() != 14) return VAZIO;
+        long chave = 0;
+        for (int i = 0; i < 14; i++) {
+            if (i == 3 || i == 7 || i == 11) continue;
+            char c = cpf.charAt(i);
+            if (c < '0' || c > '9') return VAZIO;
+            chave = chave * 10 + (c - '0');
+        }
+        return chave;
+    }
+
+    /**
+     * Inverso de {@link #chave}.
+     */
+    static String cpf(long chave) {
+        char[] c = new char[14];
+        for (int i = 13; i >= 0; i--) {
+            if (i == 3 || i == 7) {
+                c[i] = '.';
+            } else if (i == 11) {
+                c[i] = '-';
+            } else {
+                c[i] = (char) ('0' + chave % 10);
+                chave /= 10;
+            }
+        }
+        return new String(c);
+    }
+
+    /**
+     * @return a posição da conta nos arrays, ou -1 se ela não existir. Vale até a próxima alteração estrutural.
+     */
+    int indice(long chave) {
+        if (chave < 0) return -1;
+        for (int i = espalhar(chave) & mascara; ; i = (i + 1) & mascara) {
+            long k = chaves[i];
+            if (k == chave) return i;
+            if (k == VAZIO) return -1;
+        }
+    }
+
+    long getSaldo(int indice) {
+        return saldos[indice];
+    }
+
+    void setSaldo(int indice, long saldo) {
+        saldos[indice] = saldo;
+    }
+
+    /**
+     * Insere a conta, ou substitui o saldo se ela já existir.
+     */
+    void inserir(long chave, long saldo) {
+        if ((tamanho + 1) * 2 > chaves.length) {
+            redimensionar();
+        }
+        for (int i = espalhar(chave) & mascara; ; i = (i + 1) & mascara) {
+            long k = chaves[i];
+            if (k == chave) {
+                saldos[i] = saldo;
+                return;
+            }
+            if (k == VAZIO) {
+                chaves[i] = chave;
+                saldos[i] = saldo;
+                tamanho++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove a conta, puxando para trás as chaves seguintes da mesma sequência (sem marcadores de remoção).
+     */
+    void remover(long chave) {
+        int i = indice(chave);
+        if (i < 0) return;
+        tamanho--;
+        for (int j = (i + 1) & mascara; chaves[j] != VAZIO; j = (j + 1) & mascara) {
+            int ideal = espalhar(chaves[j]) & mascara;
+            // A chave em j pode ir para o buraco em i se i está entre a posição ideal dela e j (circularmente)
+            if (((j - ideal) & mascara) >= ((j - i) & mascara)) {
+                chaves[i] = chaves[j];
+                saldos[i] = saldos[j];
+                i = j;
+            }
+        }
+        chaves[i] = VAZIO;
+        saldos[i] = 0;
+    }
+
+    int tamanho() {
+        return tamanho;
+    }
+
+    private void redimensionar() {
+        long[] chavesAntigas = chaves;
+        long[] saldosAntigos = saldos;
+        alocar(chavesAntigas.length * 2);
+        for (int i = 0; i < chavesAntigas.length; i++) {
+            if (chavesAntigas[i] != VAZIO) {
+                inserir(chavesAntigas[i], saldosAntigos[i]);
+            }
+        }
+    }
+
+    private void alocar(int n) {
+        chaves = new long[n];
+        Arrays.fill(chaves, VAZIO);
+        saldos = new long[n];
+        mascara = n - 1;
+        tamanho = 0;
+    }
+
+    private static int espalhar(long chave) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,360 @@
+package server.repository;
+
+import common.models.Transacao;
+import common.models.Usuario;
+import common.util.Log;
+import server.LockManager;
+import server.metrics.Histograma;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ledger em memória, para os testes de vazão: os saldos ficam em um {@link MapaSaldos} (centavos),
+ * cada movimentação é anexada a um {@link JournalLedger} antes de mudar o saldo, e uma thread de fundo
+ * grava o journal no SQLite em lotes (saldos, extrato e até onde já foi gravado, na mesma transação).
+ * <p>
+ * Na inicialização os saldos do SQLite são o snapshot, e os registros do journal posteriores ao último
+ * lote gravado são reaplicados por cima. As movimentações de uma conta são serializadas pelo
+ * {@link LockManager}; o lock de leitura/escrita só protege a estrutura do mapa (contas criadas/apagadas).
+ */
+public final class MemoriaLedger implements Ledger {
+
+    private final MapaSaldos saldos;
+    private final ReentrantReadWriteLock estrutura = new ReentrantReadWriteLock();
+    private final LockManager locks = LockManager.contas();
+    private final JournalLedger journal;
+
+    private final long intervaloMs;
+    private final int maxLote;
+    private final Object sinal = new Object();
+    private final Thread flusher;
+    private volatile boolean ativo = true;
+
+    private final Histograma tamanhoLote = new Histograma();
+    private final Histograma duracaoFlushNanos = new Histograma();
+
+    /**
+     * Carrega o snapshot do SQLite, reaplica o journal e inicia o flusher. O banco já deve estar inicializado.
+     * @param arquivoJournal Arquivo do journal (criado se não existir).
+     * @param registrosJournal Capacidade de um journal novo, em movimentações.
+     * @param intervaloMs Intervalo entre as gravações no SQLite.
+     * @param maxLote Máximo de movimentações gravadas por transação do banco.
+     */
+    public MemoriaLedger(Path arquivoJournal, int registrosJournal, long intervaloMs, int maxLote)
+            throws SQLException, IOException {
+        this.intervaloMs = intervaloMs;
+        this.maxLote = maxLote;
+
+        long aplicado;
+        try (Connection conn = Database.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS ledger_estado (" +
+                    "  id INTEGER PRIMARY KEY CHECK (id = 1)," +
+                    "  seq_aplicado INTEGER NOT NULL" +
+                    ");");
+            stmt.execute("INSERT OR IGNORE INTO ledger_estado(id, seq_aplicado) VALUES (1, 0)");
+            try (ResultSet rs = stmt.executeQuery("SELECT seq_aplicado FROM ledger_estado WHERE id = 1")) {
+                rs.next();
+                aplicado = rs.getLong(1);
+            }
+
+            List<long[]> contas = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT cpf, saldo_centavos FROM usuarios")) {
+                while (rs.next()) {
+                    long chave = MapaSaldos.chave(rs.getString(1));
+                    if (chave >= 0) {
+                        contas.add(new long[]{chave, rs.getLong(2)});
+                    }
+                }
+            }
+            this.saldos = new MapaSaldos(Math.max(1024, contas.size()));
+            for (long[] conta : contas) {
+                saldos.inserir(conta[0], conta[1]);
+            }
+        }
+
+        this.journal = new JournalLedger(arquivoJournal, registrosJournal, aplicado);
+        long escrito = journal.getEscrito();
+        if (escrito > aplicado) {
+            for (JournalLedger.Registro registro : journal.ler(aplicado + 1, escrito)) {
+                reaplicar(registro);
+            }
+        }
+        Log.info("LEDGER", "Em memória: {} contas, {} movimentações reaplicadas do journal.", saldos.tamanho(),
+                escrito - aplicado);
+
+        this.flusher = new Thread(this::loop, "pix-ledger-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private void reaplicar(JournalLedger.Registro registro) {
+        // Contas apagadas depois da movimentação simplesmente não estão mais no snapshot
+        if (registro.tipo() == JournalLedger.TIPO_TRANSFERENCIA) {
+            int remetente = saldos.indice(registro.remetente());
+            if (remetente >= 0) saldos.setSaldo(remetente, saldos.getSaldo(remetente) - registro.centavos());
+        }
+        int destinatario = saldos.indice(registro.destinatario());
+        if (destinatario >= 0) saldos.setSaldo(destinatario, saldos.getSaldo(destinatario) + registro.centavos());
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    public ResultadoTransferencia transferir(String cpfRemetente, String cpfDestinatario, long centavos) {
+        long remetente = MapaSaldos.chave(cpfRemetente);
+        long destinatario = MapaSaldos.chave(cpfDestinatario);
+
+        try (LockManager.Trava trava = locks.bloquear(cpfRemetente, cpfDestinatario)) {
+            estrutura.readLock().lock();
+            try {
+                // Mesma ordem de verificação do SQLite: remetente, destinatário, saldo
+                int iRemetente = saldos.indice(remetente);
+                if (iRemetente < 0) return ResultadoTransferencia.REMETENTE_NAO_ENCONTRADO;
+                int iDestinatario = saldos.indice(destinatario);
+                if (iDestinatario < 0) return ResultadoTransferencia.DESTINATARIO_NAO_ENCONTRADO;
+                if (saldos.getSaldo(iRemetente) < centavos) return ResultadoTransferencia.SALDO_INSUFICIENTE;
+
+                journal.anexar(JournalLedger.TIPO_TRANSFERENCIA, remetente, destinatario, centavos, LocalDateTime.now());
+                saldos.setSaldo(iRemetente, saldos.getSaldo(iRemetente) - centavos);
+                saldos.setSaldo(iDestinatario, saldos.getSaldo(iDestinatario) + centavos);
+                return ResultadoTransferencia.SUCESSO;
+            } finally {
+                estrutura.readLock().unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResultadoTransferencia.ERRO;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    public ResultadoTransferencia depositar(String cpf, long centavos) {
+        long chave = MapaSaldos.chave(cpf);
+
+        try (LockManager.Trava trava = locks.bloquear(cpf)) {
+            estrutura.readLock().lock();
+            try {
+                int indice = saldos.indice(chave);
+                if (indice < 0) return ResultadoTransferencia.DESTINATARIO_NAO_ENCONTRADO;
+
+                journal.anexar(JournalLedger.TIPO_DEPOSITO, chave, chave, centavos, LocalDateTime.now());
+                saldos.setSaldo(indice, saldos.getSaldo(indice) + centavos);
+                return ResultadoTransferencia.SUCESSO;
+            } finally {
+                estrutura.readLock().unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResultadoTransferencia.ERRO;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    public void preencherSaldo(Usuario usuario) {
+        try (LockManager.Trava trava = locks.bloquear(usuario.getCpf())) {
+            estrutura.readLock().lock();
+            try {
+                int indice = saldos.indice(MapaSaldos.chave(usuario.getCpf()));
+                if (indice >= 0) {
+                    usuario.setSaldoCentavos(saldos.getSaldo(indice));
+                }
+            } finally {
+                estrutura.readLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void abrirConta(String cpf) {
+        long chave = MapaSaldos.chave(cpf);
+        if (chave < 0) return;
+        estrutura.writeLock().lock();
+        try {
+            if (saldos.indice(chave) < 0) {
+                saldos.inserir(chave, 0);
+            }
+        } finally {
+            estrutura.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void encerrarConta(String cpf) {
+        // Movimentações pendentes da conta vão para o banco antes de ela ser apagada de lá
+        sincronizar();
+        estrutura.writeLock().lock();
+        try {
+            saldos.remover(MapaSaldos.chave(cpf));
+        } finally {
+            estrutura.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void sincronizar() {
+        long alvo = journal.getEscrito();
+        if (journal.getAplicado() >= alvo) return;
+        synchronized (sinal) {
+            sinal.notifyAll();
+        }
+        try {
+            journal.aguardarAplicado(alvo);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void fechar() {
+        ativo = false;
+        synchronized (sinal) {
+            sinal.notifyAll();
+        }
+        try {
+            flusher.join();
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            Log.erro("LEDGER", "Erro ao fechar o journal: {}", e.getMessage(), e);
+        }
+    }
+
+    private void loop() {
+        int tentativa = 0;
+        while (ativo || journal.getAplicado() < journal.getEscrito()) {
+            try {
+                if (journal.getAplicado() >= journal.getEscrito()) {
+                    synchronized (sinal) {
+                        if (ativo) sinal.wait(intervaloMs);
+                    }
+                }
+                while (gravarLote()) {
+                    // continua enquanto houver registros pendentes
+                }
+                tentativa = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException | RuntimeException e) {
+                // Nada foi marcado como aplicado: o mesmo lote é refeito na próxima volta
+                Log.erro("LEDGER", "Erro ao gravar o journal no banco: {}", e.getMessage(), e);
+                // No encerramento o que faltou fica no journal e é reaplicado na próxima inicialização
+                if (!ativo) return;
+                Database.aguardarNovaTentativa(++tentativa);
+            }
+        }
+    }
+
+    /**
+     * Grava no SQLite o próximo lote de registros pendentes.
+     * @return true se gravou algo.
+     */
+    private boolean gravarLote() throws SQLException {
+        long de = journal.getAplicado() + 1;
+        long ate = Math.min(journal.getEscrito(), de + maxLote - 1);
+        if (ate < de) return false;
+
+        long inicio = System.nanoTime();
+        // O journal vai para o disco antes do banco: o que o SQLite tem, o journal nunca perde
+        journal.forcar();
+        List<JournalLedger.Registro> registros = journal.ler(de, ate);
+
+        // Uma atualização por conta no lote, com a soma das movimentações dela
+        Map<String, Long> deltas = new HashMap<>();
+        List<Transacao> transacoes = new ArrayList<>(registros.size());
+        for (JournalLedger.Registro registro : registros) {
+            String remetente = MapaSaldos.cpf(registro.remetente());
+            String destinatario = MapaSaldos.cpf(registro.destinatario());
+            if (registro.tipo() == JournalLedger.TIPO_TRANSFERENCIA) {
+                deltas.merge(remetente, -registro.centavos(), Long::sum);
+            }
+            deltas.merge(destinatario, registro.centavos(), Long::sum);
+
+            Transacao transacao = new Transacao(remetente, destinatario, registro.centavos());
+            transacao.setDataTransacao(registro.data());
+            transacoes.add(transacao);
+        }
+
+        try (Connection conn = Database.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement saldo = conn.prepareStatement(
+                        "UPDATE usuarios SET saldo_centavos = saldo_centavos + ? WHERE cpf = ?")) {
+                    for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+                        saldo.setLong(1, delta.getValue());
+                        saldo.setString(2, delta.getKey());
+                        saldo.addBatch();
+                    }
+                    saldo.executeBatch();
+                }
+                TransacaoRepository.inserirLote(conn, transacoes);
+                try (PreparedStatement estado = conn.prepareStatement("UPDATE ledger_estado SET seq_aplicado = ? WHERE id = 1")) {
+                    estado.setLong(1, ate);
+                    estado.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        journal.marcarAplicado(ate);
+        // O saldo em cache do UsuarioRepository reflete o banco; não é o que este ledger informa, mas fica coerente
+        UsuarioRepository.invalidarCache(deltas.keySet().toArray(new String[0]));
+        tamanhoLote.registrar(registros.size());
+        duracaoFlushNanos.registrar(System.nanoTime() - inicio);
+        return true;
+    }
+
+    /**
+     * @return movimentações confirmadas que ainda não foram gravadas no SQLite.
+     */
+    public long getPendentes() {
+        return journal.getEscrito() - journal.getAplicado();
+    }
+
+    public int getCapacidadeJournal() {
+        return journal.getCapacidade();
+    }
+
+    public int getContas() {
+        estrutura.readLock().lock();
+        try {
+            return saldos.tamanho();
+        } finally {
+            estrutura.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a distribuição do número de movimentações por transação do banco.
+     */
+    public Histograma getTamanhoLote() {
+        return tamanhoLote;
+    }
+
+    /**
+     * @return a distribuição do tempo (ns) de cada gravação de lote, incluindo o force do journal.
+     */
+    public Histograma getDuracaoFlushNanos() {
+        return duracaoFlushNanos;
+    }
+}
@@ -0,0 +1,15 @@
+package server.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Unidade de trabalho executada dentro de uma transação do banco.
+ * A conexão recebida já está com autocommit desligado; a operação não deve fazer commit nem rollback.
+ * @param <T> O tipo do resultado da operação.
+ */
+@FunctionalInterface
+public interface OperacaoTransacional<T> {
+
+    T executar(Connection conn) throws SQLException;
+}
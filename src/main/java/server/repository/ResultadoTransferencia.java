@@ -0,0 +1,13 @@
+package server.repository;
+
+/**
+ * Resultado de uma transferência executada no banco.
+ */
+public enum ResultadoTransferencia {
+    SUCESSO,
+    REMETENTE_NAO_ENCONTRADO,
+    DESTINATARIO_NAO_ENCONTRADO,
+    SALDO_INSUFICIENTE,
+    // Falha de banco (após esgotar as novas tentativas); nada foi alterado
+    ERRO
+}
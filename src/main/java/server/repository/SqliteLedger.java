@@ -0,0 +1,37 @@
+package server.repository;
+
+import common.models.Usuario;
+
+/**
+ * Ledger padrão: os saldos moram no SQLite e cada movimentação é uma transação do {@link TransacaoRepository}.
+ * O saldo já vem no Usuario lido do banco, então os avisos de conta e a sincronização não têm o que fazer.
+ */
+final class SqliteLedger implements Ledger {
+
+    private final TransacaoRepository transacaoRepository = new TransacaoRepository();
+
+    @Override
+    public ResultadoTransferencia transferir(String cpfRemetente, String cpfDestinatario, long centavos) {
+        return transacaoRepository.transferir(cpfRemetente, cpfDestinatario, centavos);
+    }
+
+    @Override
+    public ResultadoTransferencia depositar(String cpf, long centavos) {
+        return transacaoRepository.depositar(cpf, centavos);
+    }
+
+    @Override
+    public void preencherSaldo(Usuario usuario) {}
+
+    @Override
+    public void abrirConta(String cpf) {}
+
+    @Override
+    public void encerrarConta(String cpf) {}
+
+    @Override
+    public void sincronizar() {}
+
+    @Override
+    public void fechar() {}
+}
@@ -0,0 +1,254 @@
+package server.repository;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import common.util.Log;
+import common.util.SessaoStore;
+import common.util.TokenSessao;
+import server.metrics.Histograma;
+
+/**
+ * Sessões gravadas na tabela "sessoes" do SQLite, com gravação atrasada (write-behind): gravar e apagar só
+ * registram a última mudança de cada token em um mapa, e uma thread grava as pendentes a cada intervalo,
+ * todas em uma transação. Várias mudanças do mesmo token dentro de um intervalo viram uma só escrita.
+ * Um crash perde no máximo as mudanças do último intervalo (os clientes afetados fazem login de novo).
+ * <p>
+ * A tabela guarda só o resumo de cada token (os 128 primeiros bits do SHA-256 dos 16 bytes dele), não o token:
+ * quem ler o banco ou um backup não consegue usar as sessões. Como o token tem 128 bits aleatórios, não é
+ * possível achá-lo a partir do resumo testando valores.
+ */
+public final class SqliteSessaoStore implements SessaoStore {
+
+    // Última mudança de cada resumo ainda não gravada; cpf null indica que a sessão deve ser apagada
+    private final Map<TokenSessao, SessaoStore.Registro> pendentes = new ConcurrentHashMap<>();
+    private final long intervaloMs;
+    private final Object sinal = new Object();
+    private final Thread gravador;
+    private volatile boolean ativo = true;
+
+    private final Histograma tamanhoLote = new Histograma();
+
+    // O resumo do token fica como os dois longs de um TokenSessao
+    private static final String CRIAR_TABELA = "CREATE TABLE IF NOT EXISTS sessoes (" +
+            "  resumo_alto INTEGER NOT NULL," +
+            "  resumo_baixo INTEGER NOT NULL," +
+            "  cpf TEXT NOT NULL," +
+            "  expira_em INTEGER NOT NULL," +
+            "  PRIMARY KEY (resumo_alto, resumo_baixo)" +
+            ") WITHOUT ROWID;";
+
+    // MessageDigest não é thread-safe
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    });
+
+    /**
+     * Cria a tabela, se preciso, e inicia a thread de gravação. O banco já deve estar inicializado.
+     * @param intervaloMs Intervalo entre as gravações das mudanças pendentes.
+     */
+    public SqliteSessaoStore(long intervaloMs) throws SQLException {
+        this.intervaloMs = intervaloMs;
+        try (Connection conn = Database.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(CRIAR_TABELA);
+            migrarTokens(conn);
+        }
+
+        this.gravador = new Thread(this::loop, "pix-sessoes-gravacao");
+        gravador.setDaemon(true);
+        gravador.start();
+    }
+
+    /**
+     * Troca os tokens gravados por versões anteriores (colunas token_alto e token_baixo) pelos resumos,
+     * sem derrubar as sessões.
+     */
+    private void migrarTokens(Connection conn) throws SQLException {
+        boolean antiga = false;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(sessoes)")) {
+            while (rs.next()) {
+                if ("token_alto".equals(rs.getString("name"))) antiga = true;
+            }
+        }
+        if (!antiga) return;
+
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            List<SessaoStore.Registro> registros = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT token_alto, token_baixo, cpf, expira_em FROM sessoes")) {
+                while (rs.next()) {
+                    registros.add(new SessaoStore.Registro(resumo(new TokenSessao(rs.getLong(1), rs.getLong(2))),
+                            rs.getString(3), rs.getLong(4)));
+                }
+            }
+            stmt.execute("DROP TABLE sessoes");
+            stmt.execute(CRIAR_TABELA);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO sessoes(resumo_alto, resumo_baixo, cpf, expira_em) VALUES (?, ?, ?, ?)")) {
+                for (SessaoStore.Registro registro : registros) {
+                    pstmt.setLong(1, registro.resumo().alto());
+                    pstmt.setLong(2, registro.resumo().baixo());
+                    pstmt.setString(3, registro.cpf());
+                    pstmt.setLong(4, registro.expiraEm());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+            Log.info("SESSOES", "{} tokens gravados trocados pelos resumos.", registros.size());
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    @Override
+    public TokenSessao resumo(TokenSessao token) {
+        MessageDigest digest = sha256.get();
+        digest.update(ByteBuffer.allocate(16).putLong(token.alto()).putLong(token.baixo()).array());
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new TokenSessao(hash.getLong(), hash.getLong());
+    }
+
+    @Override
+    public List<SessaoStore.Registro> carregar(long agora) {
+        List<SessaoStore.Registro> registros = new ArrayList<>();
+        try (Connection conn = Database.getConnection()) {
+            // As que venceram com o servidor parado não voltam
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM sessoes WHERE expira_em <= ?")) {
+                pstmt.setLong(1, agora);
+                pstmt.executeUpdate();
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT resumo_alto, resumo_baixo, cpf, expira_em FROM sessoes")) {
+                while (rs.next()) {
+                    registros.add(new SessaoStore.Registro(new TokenSessao(rs.getLong(1), rs.getLong(2)),
+                            rs.getString(3), rs.getLong(4)));
+                }
+            }
+        } catch (SQLException e) {
+            Log.erro("SESSOES", "Erro ao ler as sessões gravadas: {}", e.getMessage(), e);
+        }
+        return registros;
+    }
+
+    @Override
+    public void gravar(SessaoStore.Registro registro) {
+        pendentes.put(registro.resumo(), registro);
+    }
+
+    @Override
+    public void apagar(TokenSessao resumo) {
+        pendentes.put(resumo, new SessaoStore.Registro(resumo, null, 0));
+    }
+
+    @Override
+    public void fechar() {
+        ativo = false;
+        synchronized (sinal) {
+            sinal.notifyAll();
+        }
+        try {
+            gravador.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        int tentativa = 0;
+        while (ativo || !pendentes.isEmpty()) {
+            try {
+                synchronized (sinal) {
+                    if (ativo) sinal.wait(intervaloMs);
+                }
+                gravarPendentes();
+                tentativa = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException | RuntimeException e) {
+                Log.erro("SESSOES", "Erro ao gravar as sessões no banco: {}", e.getMessage(), e);
+                if (!ativo) return;
+                Database.aguardarNovaTentativa(++tentativa);
+            }
+        }
+    }
+
+    private void gravarPendentes() throws SQLException {
+        if (pendentes.isEmpty()) return;
+
+        // Tira cada resumo do mapa com a última mudança dele; o que chegar depois fica para a próxima volta
+        List<SessaoStore.Registro> lote = new ArrayList<>(pendentes.size());
+        for (TokenSessao resumo : pendentes.keySet()) {
+            SessaoStore.Registro registro = pendentes.remove(resumo);
+            if (registro != null) lote.add(registro);
+        }
+
+        try (Connection conn = Database.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement gravar = conn.prepareStatement(
+                         "INSERT OR REPLACE INTO sessoes(resumo_alto, resumo_baixo, cpf, expira_em) VALUES (?, ?, ?, ?)");
+                 PreparedStatement apagar = conn.prepareStatement(
+                         "DELETE FROM sessoes WHERE resumo_alto = ? AND resumo_baixo = ?")) {
+                for (SessaoStore.Registro registro : lote) {
+                    if (registro.cpf() == null) {
+                        apagar.setLong(1, registro.resumo().alto());
+                        apagar.setLong(2, registro.resumo().baixo());
+                        apagar.addBatch();
+                    } else {
+                        gravar.setLong(1, registro.resumo().alto());
+                        gravar.setLong(2, registro.resumo().baixo());
+                        gravar.setString(3, registro.cpf());
+                        gravar.setLong(4, registro.expiraEm());
+                        gravar.addBatch();
+                    }
+                }
+                gravar.executeBatch();
+                apagar.executeBatch();
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Devolve o lote sem passar por cima de mudanças mais novas dos mesmos tokens
+            for (SessaoStore.Registro registro : lote) {
+                pendentes.putIfAbsent(registro.resumo(), registro);
+            }
+            throw e;
+        }
+        tamanhoLote.registrar(lote.size());
+    }
+
+    /**
+     * @return sessões com mudanças ainda não gravadas no banco.
+     */
+    public int getPendentes() {
+        return pendentes.size();
+    }
+
+    public Histograma getTamanhoLote() {
+        return tamanhoLote;
+    }
+}
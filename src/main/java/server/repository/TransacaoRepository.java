@@ -2,12 +2,17 @@ package server.repository;
 
 import common.models.Transacao;
 import common.models.Usuario;
+import common.util.Etapas;
+import common.util.Log;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,22 +30,145 @@ public class TransacaoRepository {
      * @param transacao O objeto Transacao a ser salvo.
      */
     public void save(Transacao transacao) {
-        String sql = "INSERT INTO transacoes(cpf_remetente, cpf_destinatario, valor, data_transacao) VALUES(?, ?, ?, ?)";
+        try (Connection conn = Database.getConnection()) {
+            inserir(conn, transacao);
+        } catch (SQLException e) {
+            Log.erro("REPOSITORY", "Erro ao salvar nova transação: {}", e.getMessage(), e);
+        }
+    }
 
-        try (Connection conn = Database.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * Executa um PIX de forma atômica: débito, crédito e registro no extrato em uma única transação JDBC.
+     * O débito é condicional ao saldo (saldo >= valor) no próprio UPDATE, então duas transferências
+     * concorrentes da mesma conta nunca deixam o saldo negativo nem perdem atualizações.
+     * Com o group commit ativo a operação entra no próximo lote e este método só retorna após o commit.
+     * @param cpfRemetente O CPF de quem envia.
+     * @param cpfDestinatario O CPF de quem recebe.
+     * @param centavos O valor transferido em centavos (positivo).
+     * @return o resultado da operação; em qualquer resultado diferente de SUCESSO nada é alterado.
+     */
+    public ResultadoTransferencia transferir(String cpfRemetente, String cpfDestinatario, long centavos) {
+        try {
+            ResultadoTransferencia resultado = Database.executarTransacao(
+                    conn -> transferir(conn, cpfRemetente, cpfDestinatario, centavos),
+                    r -> r == ResultadoTransferencia.SUCESSO);
+            if (resultado == ResultadoTransferencia.SUCESSO) {
+                // Já gravado: os saldos em cache das duas contas ficaram velhos
+                UsuarioRepository.invalidarCache(cpfRemetente, cpfDestinatario);
+            }
+            return resultado;
+        } catch (SQLException e) {
+            Log.erro("REPOSITORY", "Erro ao executar transferência: {}", e.getMessage(), e);
+            return ResultadoTransferencia.ERRO;
+        }
+    }
+
+    /**
+     * Executa um depósito de forma atômica: crédito no saldo e registro no extrato na mesma transação.
+     * @param cpf O CPF do usuário que recebe o depósito.
+     * @param centavos O valor depositado em centavos (positivo).
+     * @return SUCESSO, DESTINATARIO_NAO_ENCONTRADO ou ERRO; só SUCESSO altera o banco.
+     */
+    public ResultadoTransferencia depositar(String cpf, long centavos) {
+        try {
+            ResultadoTransferencia resultado = Database.executarTransacao(conn -> depositar(conn, cpf, centavos),
+                    r -> r == ResultadoTransferencia.SUCESSO);
+            if (resultado == ResultadoTransferencia.SUCESSO) {
+                UsuarioRepository.invalidarCache(cpf);
+            }
+            return resultado;
+        } catch (SQLException e) {
+            Log.erro("REPOSITORY", "Erro ao executar depósito: {}", e.getMessage(), e);
+            return ResultadoTransferencia.ERRO;
+        }
+    }
 
+    /**
+     * Passos da transferência sobre uma conexão já em transação; quem chama decide commit ou rollback.
+     */
+    static ResultadoTransferencia transferir(Connection conn, String cpfRemetente, String cpfDestinatario,
+                                             long centavos) throws SQLException {
+        // Débito primeiro, na ordem de verificação de antes do PIX atômico: remetente inexistente,
+        // depois destinatário inexistente, depois saldo insuficiente
+        try (PreparedStatement debito = conn.prepareStatement(
+                "UPDATE usuarios SET saldo_centavos = saldo_centavos - ? WHERE cpf = ? AND saldo_centavos >= ?")) {
+            debito.setLong(1, centavos);
+            debito.setString(2, cpfRemetente);
+            debito.setLong(3, centavos);
+            if (debito.executeUpdate() == 0) {
+                if (!existeUsuario(conn, cpfRemetente)) return ResultadoTransferencia.REMETENTE_NAO_ENCONTRADO;
+                if (!existeUsuario(conn, cpfDestinatario)) return ResultadoTransferencia.DESTINATARIO_NAO_ENCONTRADO;
+                return ResultadoTransferencia.SALDO_INSUFICIENTE;
+            }
+        }
+
+        try (PreparedStatement credito = conn.prepareStatement(
+                "UPDATE usuarios SET saldo_centavos = saldo_centavos + ? WHERE cpf = ?")) {
+            credito.setLong(1, centavos);
+            credito.setString(2, cpfDestinatario);
+            if (credito.executeUpdate() == 0) {
+                // O débito acima é desfeito pelo rollback de quem chama
+                return ResultadoTransferencia.DESTINATARIO_NAO_ENCONTRADO;
+            }
+        }
+
+        inserir(conn, new Transacao(cpfRemetente, cpfDestinatario, centavos));
+        return ResultadoTransferencia.SUCESSO;
+    }
+
+    private static ResultadoTransferencia depositar(Connection conn, String cpf, long centavos) throws SQLException {
+        try (PreparedStatement credito = conn.prepareStatement(
+                "UPDATE usuarios SET saldo_centavos = saldo_centavos + ? WHERE cpf = ?")) {
+            credito.setLong(1, centavos);
+            credito.setString(2, cpf);
+            if (credito.executeUpdate() == 0) {
+                return ResultadoTransferencia.DESTINATARIO_NAO_ENCONTRADO;
+            }
+        }
+
+        // Depósitos aparecem no extrato como uma transação da conta para ela mesma
+        inserir(conn, new Transacao(cpf, cpf, centavos));
+        return ResultadoTransferencia.SUCESSO;
+    }
+
+    private static void inserir(Connection conn, Transacao transacao) throws SQLException {
+        String sql = "INSERT INTO transacoes(cpf_remetente, cpf_destinatario, valor_centavos, data_transacao) VALUES(?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, transacao.getCpfRemetente());
             pstmt.setString(2, transacao.getCpfDestinatario());
-            pstmt.setDouble(3, transacao.getValor());
+            pstmt.setLong(3, transacao.getValorCentavos());
             // Converte o objeto LocalDateTime para uma String antes de salvar no banco
             pstmt.setString(4, transacao.getDataTransacao().format(formatter));
 
             pstmt.executeUpdate();
+        }
+    }
 
-        } catch (SQLException e) {
-            System.err.println("Erro ao salvar nova transação: " + e.getMessage());
-            e.printStackTrace();
+    /**
+     * Insere várias transações com um único statement em lote; quem chama controla a transação.
+     */
+    static void inserirLote(Connection conn, List<Transacao> transacoes) throws SQLException {
+        String sql = "INSERT INTO transacoes(cpf_remetente, cpf_destinatario, valor_centavos, data_transacao) VALUES(?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Transacao transacao : transacoes) {
+                pstmt.setString(1, transacao.getCpfRemetente());
+                pstmt.setString(2, transacao.getCpfDestinatario());
+                pstmt.setLong(3, transacao.getValorCentavos());
+                pstmt.setString(4, transacao.getDataTransacao().format(formatter));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static boolean existeUsuario(Connection conn, String cpf) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM usuarios WHERE cpf = ?")) {
+            pstmt.setString(1, cpf);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
         }
     }
 
@@ -58,7 +186,7 @@ public class TransacaoRepository {
             List<Transacao> transacoes = new ArrayList<>();
 
             while (rs.next()) {
-                double valor = rs.getDouble("valor");
+                long valorCentavos = rs.getLong("valor_centavos");
 
                 String dataComoString = rs.getString("data_transacao");
                 LocalDateTime data = LocalDateTime.parse(dataComoString);
@@ -72,7 +200,7 @@ public class TransacaoRepository {
                 transacao.setCpfDestinatario(destino);
                 transacao.setCpfRemetente(remetente);
 
-                transacao.setValor(valor);
+                transacao.setValorCentavos(valorCentavos);
 
                 transacoes.add(transacao);
             }
@@ -88,4 +216,149 @@ public class TransacaoRepository {
         // Retorna uma lista vazia se o 'try' falhar
         return new ArrayList<>();
     }
-}
\ No newline at end of file
+
+    /**
+     * Busca o extrato de um usuário já com os nomes do remetente e do destinatário,
+     * em uma única consulta (LEFT JOIN com usuarios) em vez de duas buscas por transação.
+     * @param cpf O CPF do usuário.
+     * @return as transações em que o usuário enviou ou recebeu, em ordem cronológica.
+     */
+    public List<Transacao> findExtratoByCpf(String cpf) {
+        return buscarExtrato(cpf, null, null, null, 0);
+    }
+
+    /**
+     * Busca o extrato de um usuário restrito a um período, filtrando no próprio banco.
+     * @param cpf O CPF do usuário.
+     * @param inicio Início do período (inclusivo).
+     * @param fim Fim do período (inclusivo).
+     * @return as transações do período, com os nomes das partes, em ordem cronológica.
+     */
+    public List<Transacao> findByCpfAndPeriod(String cpf, LocalDateTime inicio, LocalDateTime fim) {
+        return buscarExtrato(cpf, inicio, fim, null, 0);
+    }
+
+    /**
+     * Busca uma página do extrato por paginação keyset em (data_transacao, id):
+     * devolve as transações estritamente posteriores ao cursor, sem varrer as páginas anteriores.
+     * @param cpf O CPF do usuário.
+     * @param inicio Início do período (inclusivo), ou null para não filtrar por período.
+     * @param fim Fim do período (inclusivo); ignorado se inicio for null.
+     * @param apos Última transação da página anterior, ou null para a primeira página.
+     * @param limite Número máximo de transações devolvidas.
+     * @return até 'limite' transações, com os nomes das partes, em ordem cronológica.
+     */
+    public List<Transacao> findPaginaByCpf(String cpf, LocalDateTime inicio, LocalDateTime fim,
+                                           CursorExtrato apos, int limite) {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            return buscarExtrato(cpf, inicio, fim, apos, limite);
+        } finally {
+            Etapas.concluir(marca);
+        }
+    }
+
+    /**
+     * Posição no extrato (data e id da última transação entregue), usada para pedir a próxima página.
+     * No protocolo ela trafega como um texto opaco (Base64 URL-safe).
+     */
+    public record CursorExtrato(LocalDateTime dataTransacao, int id) {
+
+        public static CursorExtrato de(Transacao transacao) {
+            return new CursorExtrato(transacao.getDataTransacao(), transacao.getId());
+        }
+
+        public String codificar() {
+            String bruto = dataTransacao.format(formatter) + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bruto.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return o cursor decodificado, ou null se o texto não for um cursor válido.
+         */
+        public static CursorExtrato decodificar(String texto) {
+            try {
+                String bruto = new String(Base64.getUrlDecoder().decode(texto), StandardCharsets.UTF_8);
+                int separador = bruto.lastIndexOf('|');
+                if (separador < 0) return null;
+                return new CursorExtrato(LocalDateTime.parse(bruto.substring(0, separador), formatter),
+                        Integer.parseInt(bruto.substring(separador + 1)));
+            } catch (IllegalArgumentException | DateTimeException e) {
+                return null;
+            }
+        }
+    }
+
+    private List<Transacao> buscarExtrato(String cpf, LocalDateTime inicio, LocalDateTime fim,
+                                          CursorExtrato apos, int limite) {
+        // As datas são gravadas sempre no mesmo formato ISO-8601, então a comparação de texto segue a ordem cronológica
+        String periodo = inicio != null ? " AND data_transacao >= ? AND data_transacao <= ?" : "";
+        String posicao = apos != null ? " AND (data_transacao, id) > (?, ?)" : "";
+        // Com limite, cada ramo já para em 'limite' linhas (na ordem do índice) antes da junção
+        String ordemRamo = limite > 0 ? " ORDER BY data_transacao, id LIMIT " + limite : "";
+
+        // Um 'OR' entre as duas colunas impediria o uso dos índices; com UNION ALL cada ramo usa o seu.
+        // O segundo ramo exclui os depósitos (remetente = destinatário), que o primeiro já trouxe.
+        String sql = "SELECT t.id, t.cpf_remetente, t.cpf_destinatario, t.valor_centavos, t.data_transacao," +
+                "       r.nome AS nome_remetente, d.nome AS nome_destinatario" +
+                "  FROM (SELECT * FROM (SELECT id, cpf_remetente, cpf_destinatario, valor_centavos, data_transacao FROM transacoes" +
+                "         WHERE cpf_remetente = ?" + periodo + posicao + ordemRamo + ")" +
+                "        UNION ALL" +
+                "        SELECT * FROM (SELECT id, cpf_remetente, cpf_destinatario, valor_centavos, data_transacao FROM transacoes" +
+                "         WHERE cpf_destinatario = ? AND cpf_remetente <> ?" + periodo + posicao + ordemRamo + ")) t" +
+                "  LEFT JOIN usuarios r ON r.cpf = t.cpf_remetente" +
+                "  LEFT JOIN usuarios d ON d.cpf = t.cpf_destinatario" +
+                " ORDER BY t.data_transacao, t.id" +
+                (limite > 0 ? " LIMIT " + limite : "");
+
+        try (Connection conn = Database.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            pstmt.setString(i++, cpf);
+            i = definirFiltros(pstmt, i, inicio, fim, apos);
+            pstmt.setString(i++, cpf);
+            pstmt.setString(i++, cpf);
+            definirFiltros(pstmt, i, inicio, fim, apos);
+
+            List<Transacao> transacoes = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    transacoes.add(lerTransacaoComNomes(rs));
+                }
+            }
+            return transacoes;
+
+        } catch (SQLException e) {
+            Log.erro("REPOSITORY", "Erro ao buscar extrato por CPF: {}", e.getMessage(), e);
+        }
+
+        // Retorna uma lista vazia se o 'try' falhar
+        return new ArrayList<>();
+    }
+
+    private static int definirFiltros(PreparedStatement pstmt, int i, LocalDateTime inicio, LocalDateTime fim,
+                                      CursorExtrato apos) throws SQLException {
+        if (inicio != null) {
+            pstmt.setString(i++, inicio.format(formatter));
+            pstmt.setString(i++, fim.format(formatter));
+        }
+        if (apos != null) {
+            pstmt.setString(i++, apos.dataTransacao().format(formatter));
+            pstmt.setInt(i++, apos.id());
+        }
+        return i;
+    }
+
+    private static Transacao lerTransacaoComNomes(ResultSet rs) throws SQLException {
+        Transacao transacao = new Transacao();
+        transacao.setId(rs.getInt("id"));
+        transacao.setCpfRemetente(rs.getString("cpf_remetente"));
+        transacao.setCpfDestinatario(rs.getString("cpf_destinatario"));
+        transacao.setValorCentavos(rs.getLong("valor_centavos"));
+        transacao.setDataTransacao(LocalDateTime.parse(rs.getString("data_transacao")));
+        transacao.setNomeRemetente(rs.getString("nome_remetente"));
+        transacao.setNomeDestinatario(rs.getString("nome_destinatario"));
+        return transacao;
+    }
+}
@@ -1,43 +1,62 @@
 package server.repository;
 
 import common.models.Usuario;
+import common.util.Etapas;
+import common.util.Log;
+import server.ServerConfig;
+
 import java.sql.*;
 import java.util.Optional;
 
 /**
  * Responsável por todas as operações de banco de dados relacionadas à entidade Usuario.
+ * As buscas por CPF passam por um cache compartilhado por todas as instâncias ({@link CacheUsuarios}).
  */
 public class UsuarioRepository {
 
+    private static final CacheUsuarios cache = new CacheUsuarios(ServerConfig.CACHE_USUARIOS_MAX);
+
     /**
-     * Busca um usuário no banco de dados pelo seu CPF.
+     * Busca um usuário pelo seu CPF, no cache ou, se não estiver lá, no banco de dados.
      * @param cpf O CPF do usuário a ser procurado.
      * @return um Optional contendo o Usuario se encontrado, ou um Optional vazio caso contrário.
      */
     public Optional<Usuario> findByCpf(String cpf) {
-        String sql = "SELECT * FROM usuarios WHERE cpf = ?";
-
-        try (Connection conn = Database.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            Usuario emCache = cache.buscar(cpf);
+            if (emCache != null) {
+                return Optional.of(emCache);
+            }
 
-            pstmt.setString(1, cpf);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                Usuario usuario = new Usuario(
-                        rs.getString("nome"),
-                        rs.getString("cpf"),
-                        rs.getString("senha"),
-                        rs.getDouble("saldo")
-                );
-                usuario.setSaldo(rs.getDouble("saldo"));
-                return Optional.of(usuario);
+            // A geração é lida antes do banco: se uma escrita acontecer no meio, o resultado não vai para o cache
+            long geracao = cache.geracao(cpf);
+            String sql = "SELECT * FROM usuarios WHERE cpf = ?";
+
+            try (Connection conn = Database.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                pstmt.setString(1, cpf);
+                ResultSet rs = pstmt.executeQuery();
+
+                if (rs.next()) {
+                    Usuario usuario = new Usuario(
+                            rs.getString("nome"),
+                            rs.getString("cpf"),
+                            rs.getString("senha"),
+                            rs.getLong("saldo_centavos")
+                    );
+                    cache.guardarSeAtual(usuario, geracao);
+                    return Optional.of(usuario);
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao buscar usuário por CPF: " + e.getMessage());
+                e.printStackTrace();
             }
-        } catch (SQLException e) {
-            System.err.println("Erro ao buscar usuário por CPF: " + e.getMessage());
-            e.printStackTrace();
+            return Optional.empty();
+        } finally {
+            Etapas.concluir(marca);
         }
-        return Optional.empty();
     }
 
     /**
@@ -45,44 +64,57 @@ public class UsuarioRepository {
      * @param usuario O objeto Usuario a ser salvo.
      */
     public void save(Usuario usuario) {
-        String sql = "INSERT INTO usuarios(cpf, nome, senha, saldo) VALUES(?, ?, ?, ?)";
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            String sql = "INSERT INTO usuarios(cpf, nome, senha, saldo_centavos) VALUES(?, ?, ?, ?)";
 
-        System.out.println("[REPOSITORY] Tentando salvar o CPF " + usuario.getCpf() + " no banco de dados.");
+            Log.debug("REPOSITORY", "Tentando salvar o CPF {} no banco de dados.", usuario.getCpf());
 
-        try (Connection conn = Database.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            try (Connection conn = Database.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, usuario.getCpf());
-            pstmt.setString(2, usuario.getNome());
-            pstmt.setString(3, usuario.getSenha());
-            pstmt.setDouble(4, usuario.getSaldo());
-            pstmt.executeUpdate();
+                pstmt.setString(1, usuario.getCpf());
+                pstmt.setString(2, usuario.getNome());
+                pstmt.setString(3, usuario.getSenha());
+                pstmt.setLong(4, usuario.getSaldoCentavos());
+                pstmt.executeUpdate();
+                cache.gravar(usuario);
 
-        } catch (SQLException e) {
-            System.err.println("Erro ao salvar novo usuário: " + e.getMessage());
-            e.printStackTrace();
+            } catch (SQLException e) {
+                System.err.println("Erro ao salvar novo usuário: " + e.getMessage());
+                e.printStackTrace();
+            }
+        } finally {
+            Etapas.concluir(marca);
         }
     }
 
     /**
-     * Atualiza os dados de um usuário existente no banco de dados.
+     * Atualiza os dados cadastrais (nome e senha) de um usuário existente no banco de dados.
+     * O saldo não é gravado aqui: ele só muda pelas operações atômicas de TransacaoRepository,
+     * para que uma atualização cadastral nunca sobrescreva um depósito ou PIX concorrente.
      * @param usuario O objeto Usuario com os dados atualizados.
      */
     public void update(Usuario usuario) {
-        String sql = "UPDATE usuarios SET nome = ?, senha = ?, saldo = ? WHERE cpf = ?";
-
-        try (Connection conn = Database.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, usuario.getNome());
-            pstmt.setString(2, usuario.getSenha());
-            pstmt.setDouble(3, usuario.getSaldo());
-            pstmt.setString(4, usuario.getCpf());
-            pstmt.executeUpdate();
-
-        } catch (SQLException e) {
-            System.err.println("Erro ao atualizar usuário: " + e.getMessage());
-            e.printStackTrace();
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
+        try {
+            String sql = "UPDATE usuarios SET nome = ?, senha = ? WHERE cpf = ?";
+
+            try (Connection conn = Database.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                pstmt.setString(1, usuario.getNome());
+                pstmt.setString(2, usuario.getSenha());
+                pstmt.setString(3, usuario.getCpf());
+                pstmt.executeUpdate();
+                cache.gravarCadastro(usuario);
+
+            } catch (SQLException e) {
+                System.err.println("Erro ao atualizar usuário: " + e.getMessage());
+                e.printStackTrace();
+            }
+        } finally {
+            Etapas.concluir(marca);
         }
     }
 
@@ -91,6 +123,7 @@ public class UsuarioRepository {
      * @param cpf O CPF do usuário a ser deletado do banco.
      * */
     public void delete(String cpf) {
+        int marca = Etapas.iniciar(Etapas.Etapa.REPOSITORIO);
         String sql = "DELETE FROM usuarios WHERE cpf = ?";
 
         try (Connection conn = Database.getConnection();
@@ -102,6 +135,21 @@ public class UsuarioRepository {
         } catch (SQLException e) {
             System.err.println("Erro ao atualizar usuário: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            cache.invalidar(cpf);
+            Etapas.concluir(marca);
         }
     }
+
+    /**
+     * Descarta do cache contas cujo saldo foi alterado por fora deste repositório (transferências e depósitos).
+     * Deve ser chamado depois do commit.
+     */
+    static void invalidarCache(String... cpfs) {
+        cache.invalidar(cpfs);
+    }
+
+    public static CacheUsuarios getCache() {
+        return cache;
+    }
 }
\ No newline at end of file
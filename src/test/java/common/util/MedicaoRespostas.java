@@ -0,0 +1,229 @@
+package common.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import common.models.Transacao;
+import common.models.Usuario;
+
+/**
+ * Benchmark das respostas do servidor: mede os bytes alocados por resposta (e o tempo) ao montar uma árvore de
+ * ObjectNode e convertê-la com toString(), como os controllers faziam, e ao escrever com o {@link RespostaWriter}.
+ * As respostas medidas são a de usuario_ler e uma página de transacao_ler; antes de medir, confere que os dois
+ * caminhos produzem exatamente os mesmos bytes.
+ * Cada medição roda algumas vezes para aquecer a JVM; vale a última rodada.
+ * <p>
+ * Uso:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependências&gt; common.util.MedicaoRespostas \
+ *      [respostas=200000] [transacoesPorPagina=20]
+ * </pre>
+ * Os bytes vêm de {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes}, da própria thread.
+ * O RespostaWriter é medido nos dois transportes: enviarLinha (bloqueante, direto no stream do socket) e
+ * copiarLinha (NIO, uma cópia enfileirada por resposta).
+ */
+public class MedicaoRespostas {
+
+    private static final int RODADAS = 5;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Acumula os tamanhos para o JIT não descartar as respostas medidas
+    static long descarte;
+
+    public static void main(String[] args) throws Exception {
+        System.getProperties().putIfAbsent("pix.log.nivel", "AVISO");
+        int respostas = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int transacoesPorPagina = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        Usuario usuario = new Usuario("Maria da Silva Souza", "123.456.789-09", "hash", 1_234_56);
+        List<Transacao> pagina = pagina(transacoesPorPagina);
+        String cursor = "MTcwNDA2NzIwMDAwMDo0Mg";
+        RespostaWriter writer = new RespostaWriter();
+        OutputStream socket = OutputStream.nullOutputStream();
+
+        conferir("usuario_ler", usuarioLerAntigo(usuario), () -> usuarioLer(writer, usuario), writer);
+        conferir("transacao_ler", transacaoLerAntigo(pagina, cursor), () -> transacaoLer(writer, pagina, cursor), writer);
+
+        for (int rodada = 1; rodada <= RODADAS; rodada++) {
+            System.out.printf(Locale.ROOT, "Rodada %d de %d%n", rodada, RODADAS);
+            medir("usuario_ler    ObjectNode+toString      ", respostas,
+                    () -> usuarioLerAntigo(usuario).getBytes(StandardCharsets.UTF_8).length);
+            medir("usuario_ler    RespostaWriter (socket)  ", respostas, () -> {
+                usuarioLer(writer, usuario);
+                writer.enviarLinha(socket);
+                return writer.tamanho();
+            });
+            medir("usuario_ler    RespostaWriter (NIO)     ", respostas, () -> {
+                usuarioLer(writer, usuario);
+                return writer.copiarLinha().remaining();
+            });
+            int paginas = Math.max(1, respostas / transacoesPorPagina);
+            medir("transacao_ler  ObjectNode+toString      ", paginas,
+                    () -> transacaoLerAntigo(pagina, cursor).getBytes(StandardCharsets.UTF_8).length);
+            medir("transacao_ler  RespostaWriter (socket)  ", paginas, () -> {
+                transacaoLer(writer, pagina, cursor);
+                writer.enviarLinha(socket);
+                return writer.tamanho();
+            });
+            medir("transacao_ler  RespostaWriter (NIO)     ", paginas, () -> {
+                transacaoLer(writer, pagina, cursor);
+                return writer.copiarLinha().remaining();
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface Resposta {
+        int escrever() throws IOException;
+    }
+
+    private static void conferir(String nome, String antiga, Resposta escrita, RespostaWriter writer) throws IOException {
+        escrita.escrever();
+        ByteBuffer linha = writer.copiarLinha();
+        byte[] nova = new byte[linha.remaining() - 1];
+        linha.get(nova);
+        if (!Arrays.equals(antiga.getBytes(StandardCharsets.UTF_8), nova)) {
+            throw new IllegalStateException("As respostas de " + nome + " diferem:\n" + antiga + "\n"
+                    + new String(nova, StandardCharsets.UTF_8));
+        }
+        System.out.printf(Locale.ROOT, "Conferência de %s: %d bytes idênticos nos dois caminhos%n", nome, nova.length);
+    }
+
+    private static void medir(String nome, int respostas, Resposta resposta) throws IOException {
+        long thread = Thread.currentThread().threadId();
+        long bytesAntes = threads.getThreadAllocatedBytes(thread);
+        long inicio = System.nanoTime();
+        long tamanhos = 0;
+        for (int i = 0; i < respostas; i++) {
+            tamanhos += resposta.escrever();
+        }
+        long nanos = System.nanoTime() - inicio;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesAntes;
+        descarte += tamanhos;
+        System.out.printf(Locale.ROOT, "  %s %,9.0f ns/resposta  %,8.0f B/resposta%n",
+                nome, (double) nanos / respostas, (double) bytes / respostas);
+    }
+
+    private static List<Transacao> pagina(int quantidade) {
+        List<Transacao> pagina = new ArrayList<>(quantidade);
+        LocalDateTime data = LocalDateTime.of(2024, 5, 17, 13, 45, 0);
+        for (int i = 0; i < quantidade; i++) {
+            Transacao transacao = new Transacao("123.456.789-09", "987.654.321-00", 1_000 + i * 37L);
+            transacao.setId(10_000 + i);
+            transacao.setDataTransacao(data.minusMinutes(i));
+            transacao.setNomeRemetente("Maria da Silva Souza");
+            transacao.setNomeDestinatario("João Pereira Lima");
+            pagina.add(transacao);
+        }
+        return pagina;
+    }
+
+    // --- Caminho antigo: árvore de ObjectNode convertida com toString() (como os controllers antes do RespostaWriter) ---
+
+    private static String usuarioLerAntigo(Usuario usuario) {
+        ObjectNode usuarioNode = objectMapper.createObjectNode();
+        usuarioNode.put("nome", usuario.getNome());
+        usuarioNode.put("cpf", usuario.getCpf());
+        usuarioNode.put("saldo", Dinheiro.paraReais(usuario.getSaldoCentavos()));
+
+        ObjectNode resposta = objectMapper.createObjectNode();
+        resposta.put("operacao", "usuario_ler");
+        resposta.put("status", true);
+        resposta.put("info", "Dados do usuário recuperados com sucesso.");
+        resposta.set("usuario", usuarioNode);
+        return resposta.toString();
+    }
+
+    private static String transacaoLerAntigo(List<Transacao> transacoes, String proximoCursor) {
+        ArrayNode transacoesArrayNode = objectMapper.createArrayNode();
+        for (Transacao transacao : transacoes) {
+            ObjectNode transacaoNode = objectMapper.createObjectNode();
+            String dataFormatadaUTC = transacao.getDataTransacao().toInstant(ZoneOffset.UTC).toString().substring(0, 19) + "Z";
+            transacaoNode.put("data_transacao", dataFormatadaUTC);
+            transacaoNode.put("criado_em", dataFormatadaUTC);
+            transacaoNode.put("atualizado_em", dataFormatadaUTC);
+
+            ObjectNode usuarioEnviadorNode = objectMapper.createObjectNode();
+            usuarioEnviadorNode.put("cpf", transacao.getCpfRemetente());
+            usuarioEnviadorNode.put("nome", transacao.getNomeRemetente());
+            ObjectNode usuarioRecebedorNode = objectMapper.createObjectNode();
+            usuarioRecebedorNode.put("cpf", transacao.getCpfDestinatario());
+            usuarioRecebedorNode.put("nome", transacao.getNomeDestinatario());
+
+            transacaoNode.put("valor_enviado", Dinheiro.paraReais(transacao.getValorCentavos()));
+            transacaoNode.put("id", transacao.getId());
+            transacaoNode.set("usuario_enviador", usuarioEnviadorNode);
+            transacaoNode.set("usuario_recebedor", usuarioRecebedorNode);
+            transacoesArrayNode.add(transacaoNode);
+        }
+
+        ObjectNode resposta = objectMapper.createObjectNode();
+        resposta.put("operacao", "transacao_ler");
+        resposta.put("status", true);
+        resposta.put("info", "Transações do usuário recuperados com sucesso.");
+        resposta.set("transacoes", transacoesArrayNode);
+        resposta.put("proximo_cursor", proximoCursor);
+        return resposta.toString();
+    }
+
+    // --- Caminho atual: RespostaWriter, com os mesmos campos que UsuarioController e TransacaoController escrevem ---
+
+    private static int usuarioLer(RespostaWriter resposta, Usuario usuario) throws IOException {
+        JsonGenerator g = resposta.iniciar("usuario_ler", true, "Dados do usuário recuperados com sucesso.");
+        g.writeObjectFieldStart("usuario");
+        g.writeStringField("nome", usuario.getNome());
+        g.writeStringField("cpf", usuario.getCpf());
+        g.writeFieldName("saldo");
+        g.writeNumber(Dinheiro.formatar(usuario.getSaldoCentavos()));
+        g.writeEndObject();
+        resposta.concluir();
+        return resposta.tamanho();
+    }
+
+    private static int transacaoLer(RespostaWriter resposta, List<Transacao> transacoes, String proximoCursor)
+            throws IOException {
+        JsonGenerator g = resposta.iniciar("transacao_ler", true, "Transações do usuário recuperados com sucesso.");
+        g.writeArrayFieldStart("transacoes");
+        for (Transacao transacao : transacoes) {
+            g.writeStartObject();
+            String dataFormatadaUTC = transacao.getDataTransacao().toInstant(ZoneOffset.UTC).toString().substring(0, 19) + "Z";
+            g.writeStringField("data_transacao", dataFormatadaUTC);
+            g.writeStringField("criado_em", dataFormatadaUTC);
+            g.writeStringField("atualizado_em", dataFormatadaUTC);
+            g.writeFieldName("valor_enviado");
+            g.writeNumber(Dinheiro.formatar(transacao.getValorCentavos()));
+            g.writeNumberField("id", transacao.getId());
+            g.writeObjectFieldStart("usuario_enviador");
+            g.writeStringField("cpf", transacao.getCpfRemetente());
+            g.writeStringField("nome", transacao.getNomeRemetente());
+            g.writeEndObject();
+            g.writeObjectFieldStart("usuario_recebedor");
+            g.writeStringField("cpf", transacao.getCpfDestinatario());
+            g.writeStringField("nome", transacao.getNomeDestinatario());
+            g.writeEndObject();
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+        g.writeStringField("proximo_cursor", proximoCursor);
+        resposta.concluir();
+        return resposta.tamanho();
+    }
+}
@@ -0,0 +1,114 @@
+package common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Benchmark de um pico de logins: compara os tokens antigos (UUID.randomUUID() em texto, mapa indexado pela
+ * String) com os atuais ({@link GeradorTokens} e mapa indexado pelo {@link TokenSessao}), e mede o ciclo
+ * completo de uma sessão no {@link SessaoManager}.
+ * Cada medição roda algumas vezes para aquecer a JVM; vale a última rodada.
+ * <p>
+ * Uso:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependências&gt; common.util.TempestadeLogins \
+ *      [threads=16] [tokens=200000] [sessoes=100000]
+ * </pre>
+ * As threads são virtuais, como as conexões do servidor.
+ */
+public class TempestadeLogins {
+
+    private static final int RODADAS = 5;
+
+    public static void main(String[] args) throws Exception {
+        System.getProperties().putIfAbsent("pix.log.nivel", "AVISO");
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int tokens = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int sessoes = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        for (int rodada = 1; rodada <= RODADAS; rodada++) {
+            System.out.printf(Locale.ROOT, "Rodada %d de %d%n", rodada, RODADAS);
+
+            double uuid = porSegundo(threads, tokens, i -> UUID.randomUUID().toString());
+            double gerador = porSegundo(threads, tokens, i -> GeradorTokens.gerar().codificar());
+            System.out.printf(Locale.ROOT, "  geração:  UUID %,.0f tokens/s, GeradorTokens %,.0f tokens/s%n", uuid, gerador);
+
+            String[] textosUuid = new String[sessoes];
+            Map<String, String> mapaUuid = new ConcurrentHashMap<>();
+            String[] textosToken = new String[sessoes];
+            Map<TokenSessao, String> mapaToken = new ConcurrentHashMap<>();
+            for (int i = 0; i < sessoes; i++) {
+                textosUuid[i] = UUID.randomUUID().toString();
+                mapaUuid.put(textosUuid[i], "cpf");
+                TokenSessao token = GeradorTokens.gerar();
+                textosToken[i] = token.codificar();
+                mapaToken.put(token, "cpf");
+            }
+            // O texto chega do cliente a cada requisição: uma String nova, sem o hash calculado, e para o
+            // TokenSessao a busca inclui decodificá-lo
+            double buscaUuid = nanosPorOperacao(threads, tokens, i -> mapaUuid.get(new String(textosUuid[i % sessoes])));
+            double buscaToken = nanosPorOperacao(threads, tokens,
+                    i -> mapaToken.get(TokenSessao.decodificar(textosToken[i % sessoes])));
+            System.out.printf(Locale.ROOT, "  busca com %,d sessões: String %.0f ns, TokenSessao %.0f ns%n",
+                    sessoes, buscaUuid, buscaToken);
+
+            // Ciclo de uma sessão no SessaoManager; o encerramento evita que o mapa cresça a cada rodada
+            double logins = porSegundo(threads, tokens, i -> {
+                String token = SessaoManager.criarSessao(String.format("%03d.%03d.%03d-00",
+                        i % 1000, i / 1000 % 1000, i / 1_000_000 % 1000));
+                if (SessaoManager.getCpfPeloToken(token) == null) throw new IllegalStateException("Sessão perdida");
+                SessaoManager.encerrarSessao(token);
+                return token;
+            });
+            System.out.printf(Locale.ROOT, "  SessaoManager (criar, validar e encerrar): %,.0f logins/s%n", logins);
+        }
+    }
+
+    private static double porSegundo(int threads, int operacoes, IntFunction<Object> operacao) throws Exception {
+        long nanos = medir(threads, operacoes, operacao);
+        return operacoes * 1e9 / nanos;
+    }
+
+    private static double nanosPorOperacao(int threads, int operacoes, IntFunction<Object> operacao) throws Exception {
+        // Tempo de relógio vezes as CPUs em uso, para dar o custo de CPU de cada operação
+        long nanos = medir(threads, operacoes, operacao);
+        return (double) nanos * Math.min(threads, Runtime.getRuntime().availableProcessors()) / operacoes;
+    }
+
+    /**
+     * Divide as operações entre as threads, solta todas juntas e devolve o tempo até a última terminar.
+     */
+    private static long medir(int threads, int operacoes, IntFunction<Object> operacao) throws Exception {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Object>> futuros = new ArrayList<>();
+        long inicio;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < threads; t++) {
+                int primeira = t;
+                futuros.add(executor.submit(() -> {
+                    largada.await();
+                    Object ultimo = null;
+                    for (int i = primeira; i < operacoes; i += threads) {
+                        ultimo = operacao.apply(i);
+                    }
+                    return ultimo;
+                }));
+            }
+            inicio = System.nanoTime();
+            largada.countDown();
+            for (Future<Object> futuro : futuros) {
+                futuro.get();
+            }
+        }
+        return System.nanoTime() - inicio;
+    }
+}
@@ -0,0 +1,213 @@
+package common.validator;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import common.models.Requisicao;
+
+/**
+ * Benchmark da leitura das requisições do cliente: compara, em nanossegundos por requisição, o caminho antigo
+ * (árvore de JsonNode com ObjectMapper.readTree, validação com regex, nova busca da operação no RulesEnum e
+ * leitura dos campos com get(...).asText(), como faziam ClientHandler e os controllers) com o
+ * {@link RequisicaoDecoder}, que lê os tokens uma única vez e devolve o {@link Requisicao} tipado.
+ * Cada medição roda algumas vezes para aquecer a JVM; vale a última rodada.
+ * <p>
+ * Uso:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependências&gt; common.validator.MedicaoDecoder [requisicoes=500000]
+ * </pre>
+ */
+public class MedicaoDecoder {
+
+    private static final int RODADAS = 5;
+
+    private static final String[][] REQUISICOES = {
+            {"usuario_login", "{\"operacao\":\"usuario_login\",\"cpf\":\"123.456.789-09\",\"senha\":\"senha123\"}"},
+            {"transacao_criar", "{\"operacao\":\"transacao_criar\",\"token\":\"c2Vzc2FvLWRlLXRlc3RlLTAwMQ\","
+                    + "\"valor\":125.5,\"cpf_destino\":\"987.654.321-00\"}"},
+            {"transacao_ler", "{\"operacao\":\"transacao_ler\",\"token\":\"c2Vzc2FvLWRlLXRlc3RlLTAwMQ\","
+                    + "\"data_inicial\":\"2024-01-01T00:00:00Z\",\"data_final\":\"2024-12-31T23:59:59Z\","
+                    + "\"limite\":50,\"cursor\":\"MTcwNDA2NzIwMDAwMDo0Mg\"}"},
+    };
+
+    // Acumula os resultados para o JIT não descartar as chamadas medidas
+    static long descarte;
+
+    public static void main(String[] args) throws Exception {
+        System.getProperties().putIfAbsent("pix.log.nivel", "AVISO");
+        int requisicoes = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        for (int rodada = 1; rodada <= RODADAS; rodada++) {
+            System.out.printf(Locale.ROOT, "Rodada %d de %d%n", rodada, RODADAS);
+            for (String[] requisicao : REQUISICOES) {
+                String linha = requisicao[1];
+                double antes = nanosPorRequisicao(requisicoes, () -> CaminhoAntigo.ler(linha));
+                double depois = nanosPorRequisicao(requisicoes, () -> ler(RequisicaoDecoder.decodificar(linha)));
+                System.out.printf(Locale.ROOT, "  %-16s antes %,7.0f ns, depois %,7.0f ns (%.1fx)%n",
+                        requisicao[0], antes, depois, antes / depois);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Leitura {
+        int ler() throws Exception;
+    }
+
+    private static double nanosPorRequisicao(int requisicoes, Leitura leitura) throws Exception {
+        long inicio = System.nanoTime();
+        long soma = 0;
+        for (int i = 0; i < requisicoes; i++) {
+            soma += leitura.ler();
+        }
+        long nanos = System.nanoTime() - inicio;
+        descarte += soma;
+        return (double) nanos / requisicoes;
+    }
+
+    /**
+     * Usa os campos da requisição como o ClientHandler atual, para os dois caminhos terminarem no mesmo ponto.
+     */
+    private static int ler(Requisicao requisicao) {
+        return switch (requisicao) {
+            case Requisicao.UsuarioLogin r -> r.cpf().length() + r.senha().length();
+            case Requisicao.TransacaoCriar r -> r.token().length() + r.cpfDestino().length() + (int) r.valorCentavos();
+            case Requisicao.TransacaoLer r -> r.token().length() + r.dataInicial().length() + r.dataFinal().length()
+                    + r.limite() + r.cursor().length();
+            default -> throw new IllegalStateException("Operação fora do benchmark: " + requisicao.operacao());
+        };
+    }
+
+    /**
+     * Cópia do caminho anterior ao RequisicaoDecoder (Validator.validateClient com JsonNode, ClientHandler e
+     * controllers), restrita às operações medidas e com as mesmas regras e mensagens.
+     */
+    private static final class CaminhoAntigo {
+
+        private static final ObjectMapper mapper = new ObjectMapper();
+
+        private static final Map<RulesEnum, Set<String>> CHAVES = Map.of(
+                RulesEnum.USUARIO_LOGIN, Set.of("operacao", "cpf", "senha"),
+                RulesEnum.TRANSACAO_CRIAR, Set.of("operacao", "token", "valor", "cpf_destino"),
+                RulesEnum.TRANSACAO_LER, Set.of("operacao", "token", "data_inicial", "data_final", "limite", "cursor"));
+
+        static int ler(String linha) throws Exception {
+            JsonNode json = validar(linha);
+            // O ClientHandler buscava a operação de novo e os controllers liam os campos da árvore
+            return switch (RulesEnum.getEnum(json.get("operacao").asText())) {
+                case USUARIO_LOGIN -> json.get("cpf").asText().length() + json.get("senha").asText().length();
+                case TRANSACAO_CRIAR -> json.get("token").asText().length() + json.get("cpf_destino").asText().length()
+                        + (int) Math.round(json.get("valor").asDouble() * 100);
+                case TRANSACAO_LER -> json.get("token").asText().length() + json.get("data_inicial").asText().length()
+                        + json.get("data_final").asText().length() + json.get("limite").asInt()
+                        + json.get("cursor").asText().length();
+                default -> throw new IllegalStateException("Operação fora do benchmark");
+            };
+        }
+
+        private static JsonNode validar(String linha) throws Exception {
+            if (linha == null || linha.trim().isEmpty()) {
+                throw new Exception("A mensagem JSON não pode ser nula ou vazia.");
+            }
+            JsonNode raiz;
+            try {
+                raiz = mapper.readTree(linha);
+            } catch (Exception e) {
+                throw new Exception("Erro de sintaxe. A mensagem não é um JSON válido.", e);
+            }
+            campo(raiz, "operacao");
+            tamanho(raiz, "operacao", 3, 200);
+            RulesEnum operacao = RulesEnum.getEnum(raiz.get("operacao").asText());
+
+            Set<String> esperadas = CHAVES.get(operacao);
+            Iterator<String> chaves = raiz.fieldNames();
+            while (chaves.hasNext()) {
+                String chave = chaves.next();
+                if (!esperadas.contains(chave)) {
+                    throw new IllegalArgumentException("Chave inesperada '" + chave + "' encontrada para a operação '"
+                            + operacao + "'.");
+                }
+            }
+
+            switch (operacao) {
+                case USUARIO_LOGIN -> {
+                    cpf(raiz, "cpf");
+                    tamanho(raiz, "senha", 6, 120);
+                }
+                case TRANSACAO_CRIAR -> {
+                    tamanho(raiz, "token", 3, 200);
+                    cpf(raiz, "cpf_destino");
+                    if (!campo(raiz, "valor").isNumber()) {
+                        throw new IllegalArgumentException("O campo 'valor' deve ser do tipo numérico (int, double, etc).");
+                    }
+                }
+                case TRANSACAO_LER -> {
+                    tamanho(raiz, "token", 3, 200);
+                    data(raiz, "data_inicial");
+                    data(raiz, "data_final");
+                    if (raiz.has("limite")) {
+                        if (!campo(raiz, "limite").isInt()) {
+                            throw new IllegalArgumentException("O campo 'limite' deve ser do tipo int.");
+                        }
+                        int limite = raiz.get("limite").asInt();
+                        if (limite < 1 || limite > Validator.LIMITE_MAXIMO_EXTRATO) {
+                            throw new IllegalArgumentException("O campo 'limite' deve estar entre 1 e "
+                                    + Validator.LIMITE_MAXIMO_EXTRATO + ".");
+                        }
+                    }
+                    if (raiz.has("cursor")) {
+                        if (!raiz.has("limite")) {
+                            throw new IllegalArgumentException("O campo 'cursor' só pode ser usado junto com 'limite'.");
+                        }
+                        tamanho(raiz, "cursor", 1, 200);
+                    }
+                }
+                default -> throw new IllegalArgumentException("Operação fora do benchmark: " + operacao);
+            }
+            return raiz;
+        }
+
+        private static JsonNode campo(JsonNode pai, String nome) {
+            if (pai.has(nome) && !pai.get(nome).isNull()) {
+                return pai.get(nome);
+            }
+            throw new IllegalArgumentException("O campo obrigatório '" + nome + "' não foi encontrado ou é nulo.");
+        }
+
+        private static String texto(JsonNode pai, String nome) {
+            JsonNode campo = campo(pai, nome);
+            if (!campo.isTextual()) {
+                throw new IllegalArgumentException("O campo '" + nome + "' deve ser do tipo String.");
+            }
+            return campo.asText();
+        }
+
+        private static void tamanho(JsonNode pai, String nome, int minimo, int maximo) {
+            String valor = texto(pai, nome).trim();
+            if (valor.length() < minimo) {
+                throw new IllegalArgumentException("O campo '" + nome + "' deve ter no mínimo " + minimo + " caracteres.");
+            }
+            if (valor.length() > maximo) {
+                throw new IllegalArgumentException("O campo '" + nome + "' deve ter no máximo " + maximo + " caracteres.");
+            }
+        }
+
+        private static void cpf(JsonNode pai, String nome) {
+            if (!texto(pai, nome).matches("\\d{3}\\.\\d{3}\\.\\d{3}-\\d{2}")) {
+                throw new IllegalArgumentException("O campo '" + nome + "' deve estar no formato '000.000.000-00'.");
+            }
+        }
+
+        private static void data(JsonNode pai, String nome) {
+            if (!texto(pai, nome).matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z")) {
+                throw new IllegalArgumentException("O campo '" + nome
+                        + "' deve estar no formato ISO 8601 UTC 'yyyy-MM-dd'T'HH:mm:ss'Z'.");
+            }
+        }
+    }
+}
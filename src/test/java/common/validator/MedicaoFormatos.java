@@ -0,0 +1,112 @@
+package common.validator;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark das verificações de formato: compara o {@link FormatoValidator} com as regex que ele substituiu
+ * ({@code String.matches} e {@code Pattern} pré-compilado), em nanossegundos e bytes alocados por chamada.
+ * Antes de medir, confere em textos sorteados que as duas versões aceitam e recusam exatamente os mesmos valores.
+ * Cada medição roda algumas vezes para aquecer a JVM; vale a última rodada.
+ * <p>
+ * Uso:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependências&gt; common.validator.MedicaoFormatos \
+ *      [chamadas=2000000] [comparacoes=1000000]
+ * </pre>
+ * Os bytes vêm de {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes}, da própria thread.
+ */
+public class MedicaoFormatos {
+
+    private static final int RODADAS = 5;
+    private static final String REGEX_CPF = "\\d{3}\\.\\d{3}\\.\\d{3}-\\d{2}";
+    private static final String REGEX_DATA = "\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z";
+    private static final Pattern PADRAO_CPF = Pattern.compile(REGEX_CPF);
+    private static final Pattern PADRAO_DATA = Pattern.compile(REGEX_DATA);
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Acumula os resultados para o JIT não descartar as chamadas medidas
+    static long descarte;
+
+    public static void main(String[] args) {
+        int chamadas = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int comparacoes = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        conferir("CPF", comparacoes, "123.456.789-09", "0123456789.-x",
+                s -> s.matches(REGEX_CPF), FormatoValidator::isCpfFormatado);
+        conferir("data", comparacoes, "2024-05-17T13:45:00Z", "0123456789-T:Zx",
+                s -> s.matches(REGEX_DATA), FormatoValidator::isDataIsoUtc);
+
+        // Metade válidos e metade com um caractere trocado, como chegariam de clientes
+        String[] cpfs = amostras(1024, "123.456.789-09");
+        String[] datas = amostras(1024, "2024-05-17T13:45:00Z");
+
+        for (int rodada = 1; rodada <= RODADAS; rodada++) {
+            System.out.printf(Locale.ROOT, "Rodada %d de %d%n", rodada, RODADAS);
+            medir("CPF   String.matches ", chamadas, cpfs, s -> s.matches(REGEX_CPF));
+            medir("CPF   Pattern        ", chamadas, cpfs, s -> PADRAO_CPF.matcher(s).matches());
+            medir("CPF   isCpfFormatado ", chamadas, cpfs, FormatoValidator::isCpfFormatado);
+            medir("CPF   isCpfValido    ", chamadas, cpfs, FormatoValidator::isCpfValido);
+            medir("data  String.matches ", chamadas, datas, s -> s.matches(REGEX_DATA));
+            medir("data  Pattern        ", chamadas, datas, s -> PADRAO_DATA.matcher(s).matches());
+            medir("data  isDataIsoUtc   ", chamadas, datas, FormatoValidator::isDataIsoUtc);
+        }
+    }
+
+    /**
+     * Sorteia textos perto do modelo (algumas posições trocadas por caracteres do alfabeto, às vezes um
+     * caractere a menos) e falha se a regex e o FormatoValidator discordarem em algum.
+     */
+    private static void conferir(String nome, int quantidade, String modelo, String alfabeto,
+                                 Predicate<String> regex, Predicate<String> validador) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        int tamanho = modelo.length();
+        int aceitos = 0;
+        for (int i = 0; i < quantidade; i++) {
+            StringBuilder texto = new StringBuilder(modelo);
+            // Poucas trocas, para boa parte dos textos ainda ser válida
+            for (int trocas = aleatorio.nextInt(3); trocas > 0; trocas--) {
+                texto.setCharAt(aleatorio.nextInt(tamanho), alfabeto.charAt(aleatorio.nextInt(alfabeto.length())));
+            }
+            if (aleatorio.nextInt(50) == 0) texto.setLength(tamanho - 1);
+            String s = texto.toString();
+            boolean esperado = regex.test(s);
+            if (esperado != validador.test(s)) {
+                throw new IllegalStateException("Divergência no formato de " + nome + " para '" + s + "'");
+            }
+            if (esperado) aceitos++;
+        }
+        System.out.printf(Locale.ROOT, "Conferência de %s: %,d textos (%,d aceitos), nenhuma divergência%n",
+                nome, quantidade, aceitos);
+    }
+
+    private static String[] amostras(int quantidade, String valido) {
+        String[] amostras = new String[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            char[] texto = valido.toCharArray();
+            if (i % 2 == 1) texto[i % texto.length] = 'x';
+            amostras[i] = new String(texto);
+        }
+        return amostras;
+    }
+
+    private static void medir(String nome, int chamadas, String[] textos, Predicate<String> verificacao) {
+        long thread = Thread.currentThread().threadId();
+        long bytesAntes = threads.getThreadAllocatedBytes(thread);
+        long inicio = System.nanoTime();
+        long aceitos = 0;
+        for (int i = 0; i < chamadas; i++) {
+            if (verificacao.test(textos[i & (textos.length - 1)])) aceitos++;
+        }
+        long nanos = System.nanoTime() - inicio;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesAntes;
+        descarte += aceitos;
+        System.out.printf(Locale.ROOT, "  %s %7.1f ns/chamada  %6.0f B/chamada%n",
+                nome, (double) nanos / chamadas, (double) bytes / chamadas);
+    }
+}
@@ -0,0 +1,176 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import common.models.Transacao;
+import common.models.Usuario;
+import server.repository.Database;
+import server.repository.TransacaoRepository;
+import server.repository.UsuarioRepository;
+
+/**
+ * Benchmark da busca do extrato completo de uma conta com muitas transações. Compara o caminho antigo (findByCpf
+ * e depois duas buscas de usuário por transação, para os nomes do remetente e do destinatário) com o atual
+ * ({@link TransacaoRepository#findExtratoByCpf}, uma única consulta com LEFT JOIN em usuarios).
+ * O caminho antigo é medido de duas formas: com uma consulta ao banco por busca, como era antes, e pelo
+ * {@link UsuarioRepository} atual, em que o cache de contas responde às buscas repetidas.
+ * Cada medição roda algumas vezes para aquecer a JVM; vale a última rodada.
+ * <p>
+ * Uso (em um diretório vazio, porque o banco é o banco.db do diretório atual):
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependências&gt; server.MedicaoExtrato \
+ *      [transacoes=5000] [contrapartes=50] [buscas=10]
+ * </pre>
+ * A conta e as contrapartes são criadas direto no banco, com um prefixo de CPF aleatório para não colidir com
+ * execuções anteriores.
+ */
+public class MedicaoExtrato {
+
+    private static final int RODADAS = 5;
+
+    public static void main(String[] args) throws Exception {
+        System.getProperties().putIfAbsent("pix.log.nivel", "AVISO");
+        int transacoes = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int contrapartes = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int buscas = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Database.initialize();
+        String cpf = semear(transacoes, contrapartes);
+        TransacaoRepository transacaoRepository = new TransacaoRepository();
+        UsuarioRepository usuarioRepository = new UsuarioRepository();
+
+        int esperadas = transacaoRepository.findExtratoByCpf(cpf).size();
+        if (esperadas != transacoes) {
+            throw new IllegalStateException("Extrato com " + esperadas + " transações, esperadas " + transacoes);
+        }
+
+        for (int rodada = 1; rodada <= RODADAS; rodada++) {
+            System.out.printf(Locale.ROOT, "Rodada %d de %d (%,d transações no extrato)%n", rodada, RODADAS, transacoes);
+            double semCache = milissegundosPorBusca(buscas, () -> nomesPorConsulta(transacaoRepository.findByCpf(cpf)));
+            double comCache = milissegundosPorBusca(buscas,
+                    () -> nomesPeloRepositorio(usuarioRepository, transacaoRepository.findByCpf(cpf)));
+            double juncao = milissegundosPorBusca(buscas, () -> nomesDaJuncao(transacaoRepository.findExtratoByCpf(cpf)));
+            System.out.printf(Locale.ROOT, "  N+1 (consulta por nome)      %8.1f ms%n", semCache);
+            System.out.printf(Locale.ROOT, "  N+1 (UsuarioRepository)      %8.1f ms%n", comCache);
+            System.out.printf(Locale.ROOT,
+                    "  findExtratoByCpf (LEFT JOIN) %8.1f ms (%.1fx mais rápido que a consulta por nome)%n",
+                    juncao, semCache / juncao);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Busca {
+        int buscar() throws SQLException;
+    }
+
+    private static double milissegundosPorBusca(int buscas, Busca busca) throws SQLException {
+        long inicio = System.nanoTime();
+        long nomes = 0;
+        for (int i = 0; i < buscas; i++) {
+            nomes += busca.buscar();
+        }
+        if (nomes == 0) throw new IllegalStateException("Nenhum nome encontrado");
+        return (System.nanoTime() - inicio) / 1e6 / buscas;
+    }
+
+    /**
+     * Caminho antigo como era: cada nome é uma consulta, com uma conexão do pool por busca.
+     */
+    private static int nomesPorConsulta(List<Transacao> transacoes) throws SQLException {
+        int nomes = 0;
+        for (Transacao transacao : transacoes) {
+            nomes += buscarNome(transacao.getCpfRemetente()) != null ? 1 : 0;
+            nomes += buscarNome(transacao.getCpfDestinatario()) != null ? 1 : 0;
+        }
+        return nomes;
+    }
+
+    private static String buscarNome(String cpf) throws SQLException {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM usuarios WHERE cpf = ?")) {
+            pstmt.setString(1, cpf);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString("nome") : null;
+            }
+        }
+    }
+
+    private static int nomesPeloRepositorio(UsuarioRepository usuarioRepository, List<Transacao> transacoes) {
+        int nomes = 0;
+        for (Transacao transacao : transacoes) {
+            Optional<Usuario> enviador = usuarioRepository.findByCpf(transacao.getCpfRemetente());
+            Optional<Usuario> recebedor = usuarioRepository.findByCpf(transacao.getCpfDestinatario());
+            nomes += enviador.isPresent() ? 1 : 0;
+            nomes += recebedor.isPresent() ? 1 : 0;
+        }
+        return nomes;
+    }
+
+    private static int nomesDaJuncao(List<Transacao> transacoes) {
+        int nomes = 0;
+        for (Transacao transacao : transacoes) {
+            nomes += transacao.getNomeRemetente() != null ? 1 : 0;
+            nomes += transacao.getNomeDestinatario() != null ? 1 : 0;
+        }
+        return nomes;
+    }
+
+    /**
+     * Cria a conta medida, as contrapartes e as transações (metade enviadas, metade recebidas) em uma transação.
+     * @return o CPF da conta medida.
+     */
+    private static String semear(int transacoes, int contrapartes) throws SQLException {
+        int prefixo = ThreadLocalRandom.current().nextInt(1000);
+        String cpf = String.format("%03d.999.999-99", prefixo);
+        String[] outros = new String[contrapartes];
+        for (int i = 0; i < contrapartes; i++) {
+            outros[i] = String.format("%03d.%03d.%03d-00", prefixo, i / 1000, i % 1000);
+        }
+
+        try (Connection conn = Database.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement usuario = conn.prepareStatement(
+                         "INSERT INTO usuarios(cpf, nome, senha, saldo_centavos) VALUES(?, ?, 'x', 0)");
+                 PreparedStatement transacao = conn.prepareStatement(
+                         "INSERT INTO transacoes(cpf_remetente, cpf_destinatario, valor_centavos, data_transacao)"
+                                 + " VALUES(?, ?, ?, ?)")) {
+                usuario.setString(1, cpf);
+                usuario.setString(2, "Conta do Extrato");
+                usuario.addBatch();
+                for (int i = 0; i < contrapartes; i++) {
+                    usuario.setString(1, outros[i]);
+                    usuario.setString(2, "Contraparte " + i);
+                    usuario.addBatch();
+                }
+                usuario.executeBatch();
+
+                LocalDateTime data = LocalDateTime.of(2024, 1, 1, 0, 0);
+                for (int i = 0; i < transacoes; i++) {
+                    String outro = outros[i % contrapartes];
+                    transacao.setString(1, i % 2 == 0 ? cpf : outro);
+                    transacao.setString(2, i % 2 == 0 ? outro : cpf);
+                    transacao.setLong(3, 100 + i);
+                    transacao.setString(4, data.plusMinutes(i).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+                    transacao.addBatch();
+                }
+                transacao.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return cpf;
+    }
+}
@@ -0,0 +1,166 @@
+package server;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import common.util.RespostaWriter;
+import server.repository.Database;
+
+/**
+ * Teste de estresse das transferências: cria contas, dispara milhares de PIX concorrentes entre elas (pelo mesmo
+ * {@link ClientHandler#processar} dos transportes, então passa por sessão, locks, ledger, cache e group commit)
+ * e confere que o saldo total não mudou, tanto lido pelo protocolo (usuario_ler) quanto direto no SQLite.
+ * Enquanto as transferências rodam, outras threads leem as contas com usuario_ler sem parar, para que leituras
+ * concorrentes tentem deixar saldos antigos no cache de contas; a soma final pelo protocolo passa pelo cache.
+ * Termina com código 1 se o total não for conservado ou se alguma leitura falhar.
+ * <p>
+ * Uso (em um diretório vazio, porque o banco é o banco.db do diretório atual):
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependências&gt; [-Dpix.ledger=memoria] server.StressTransferencias \
+ *      [contas=50] [threads=32] [transferencias=4000] [leitores=5]
+ * </pre>
+ * As senhas usam pix.senha.iteracoes=1000, a menos que outro valor seja passado, para o cadastro não dominar o tempo.
+ */
+public class StressTransferencias {
+
+    private static final ObjectMapper json = new ObjectMapper();
+    private static final long SALDO_INICIAL_CENTAVOS = 1_000_00;
+
+    public static void main(String[] args) throws Exception {
+        System.getProperties().putIfAbsent("pix.senha.iteracoes", "1000");
+        System.getProperties().putIfAbsent("pix.log.nivel", "AVISO");
+        int contas = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int transferencias = args.length > 2 ? Integer.parseInt(args[2]) : 4000;
+        int leitores = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Database.initialize();
+        RespostaWriter resposta = new RespostaWriter();
+
+        // CPFs com um prefixo aleatório, para não colidir com contas de execuções anteriores no mesmo banco
+        int prefixo = ThreadLocalRandom.current().nextInt(1000);
+        String[] cpfs = new String[contas];
+        String[] tokens = new String[contas];
+        for (int i = 0; i < contas; i++) {
+            cpfs[i] = String.format("%03d.%03d.%03d-00", prefixo, i / 1000, i % 1000);
+            chamar(resposta, "{\"operacao\":\"usuario_criar\",\"nome\":\"Conta Estresse\",\"cpf\":\"" + cpfs[i]
+                    + "\",\"senha\":\"senha123\"}");
+            tokens[i] = chamar(resposta, "{\"operacao\":\"usuario_login\",\"cpf\":\"" + cpfs[i]
+                    + "\",\"senha\":\"senha123\"}").path("token").asText();
+            JsonNode deposito = chamar(resposta, "{\"operacao\":\"depositar\",\"token\":\"" + tokens[i]
+                    + "\",\"valor_enviado\":" + BigDecimal.valueOf(SALDO_INICIAL_CENTAVOS, 2) + "}");
+            if (!deposito.path("status").asBoolean()) {
+                throw new IllegalStateException("Falha ao preparar a conta " + cpfs[i] + ": " + deposito);
+            }
+        }
+        long totalEsperado = contas * SALDO_INICIAL_CENTAVOS;
+
+        AtomicLong sucessos = new AtomicLong();
+        AtomicLong recusadas = new AtomicLong();
+        AtomicLong leituras = new AtomicLong();
+        AtomicLong leiturasFalhas = new AtomicLong();
+        AtomicBoolean transferindo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + leitores);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> futuros = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int quantidade = transferencias / threads + (t < transferencias % threads ? 1 : 0);
+            futuros.add(executor.submit(() -> {
+                RespostaWriter r = new RespostaWriter();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                largada.await();
+                for (int i = 0; i < quantidade; i++) {
+                    int origem = random.nextInt(contas);
+                    int destino = (origem + 1 + random.nextInt(contas - 1)) % contas;
+                    BigDecimal valor = BigDecimal.valueOf(random.nextLong(1, 50_000), 2);
+                    JsonNode pix = chamar(r, "{\"operacao\":\"transacao_criar\",\"token\":\"" + tokens[origem]
+                            + "\",\"valor\":" + valor + ",\"cpf_destino\":\"" + cpfs[destino] + "\"}");
+                    (pix.path("status").asBoolean() ? sucessos : recusadas).incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> futurosLeitores = new ArrayList<>();
+        for (int t = 0; t < leitores; t++) {
+            futurosLeitores.add(executor.submit(() -> {
+                RespostaWriter r = new RespostaWriter();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                largada.await();
+                while (transferindo.get()) {
+                    JsonNode leitura = chamar(r, "{\"operacao\":\"usuario_ler\",\"token\":\""
+                            + tokens[random.nextInt(contas)] + "\"}");
+                    leituras.incrementAndGet();
+                    boolean saldoNegativo = leitura.path("usuario").path("saldo").decimalValue().signum() < 0;
+                    if (!leitura.path("status").asBoolean() || saldoNegativo) {
+                        leiturasFalhas.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Future<?> futuro : futuros) {
+            futuro.get();
+        }
+        long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+        transferindo.set(false);
+        for (Future<?> futuro : futurosLeitores) {
+            futuro.get();
+        }
+        executor.shutdown();
+
+        Database.getLedger().sincronizar();
+        long totalProtocolo = 0;
+        for (String token : tokens) {
+            JsonNode usuario = chamar(resposta, "{\"operacao\":\"usuario_ler\",\"token\":\"" + token + "\"}").path("usuario");
+            totalProtocolo += usuario.path("saldo").decimalValue().movePointRight(2).longValueExact();
+        }
+        long totalBanco = somarNoBanco(cpfs);
+
+        System.out.printf(Locale.ROOT, "%d transferências em %d ms (%d confirmadas, %d recusadas), %d contas, %d threads%n",
+                transferencias, duracaoMs, sucessos.get(), recusadas.get(), contas, threads);
+        System.out.printf(Locale.ROOT, "%d leituras concorrentes (%d falhas), %d leitores%n",
+                leituras.get(), leiturasFalhas.get(), leitores);
+        System.out.printf(Locale.ROOT, "Total esperado %d, pelo protocolo %d, no banco %d (centavos)%n",
+                totalEsperado, totalProtocolo, totalBanco);
+        boolean conservado = totalProtocolo == totalEsperado && totalBanco == totalEsperado;
+        System.out.println(conservado ? "OK: saldo total conservado." : "FALHA: saldo total não conservado.");
+        System.exit(conservado && leiturasFalhas.get() == 0 ? 0 : 1);
+    }
+
+    private static JsonNode chamar(RespostaWriter resposta, String requisicao) throws Exception {
+        ClientHandler.processar("127.0.0.1", requisicao, resposta);
+        return json.readTree(resposta.toString());
+    }
+
+    private static long somarNoBanco(String[] cpfs) throws SQLException {
+        long total = 0;
+        try (Connection conn = Database.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT saldo_centavos FROM usuarios WHERE cpf = ?")) {
+            for (String cpf : cpfs) {
+                pstmt.setString(1, cpf);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) total += rs.getLong(1);
+                }
+            }
+        }
+        return total;
+    }
+}